@@ -25,6 +25,7 @@ import org.ttrssreader.controllers.Controller;
 import org.ttrssreader.controllers.DBHelper;
 import org.ttrssreader.controllers.Data;
 import org.ttrssreader.controllers.ProgressBarManager;
+import org.ttrssreader.imageCache.FeedIconCache;
 import org.ttrssreader.utils.PRNGFixes;
 
 public class MyApplication extends Application {
@@ -63,7 +64,7 @@ public class MyApplication extends Application {
 
 	@Override
 	public void onLowMemory() {
-		Controller.getInstance().lowMemory(true);
+		FeedIconCache.getInstance().clear();
 		super.onLowMemory();
 	}
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import org.ttrssreader.model.pojos.Article;
+import org.ttrssreader.net.IArticleSink;
+import org.ttrssreader.utils.IntSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives articles while they are parsed from the server response and writes them to the DB in small transactions,
+ * so only one batch of articles (including their content) has to be held in memory at any time. Only the IDs of the
+ * stored articles are kept for later bookkeeping.
+ */
+class ArticleBatchInserter implements IArticleSink {
+
+	static final int BATCH_SIZE = 100;
+
+	private final List<Article> batch = new ArrayList<>(BATCH_SIZE);
+
+	private final IntSet ids = new IntSet();
+	private final IntSet unreadIds = new IntSet();
+
+	private final DBHelper.UpsertResult result = new DBHelper.UpsertResult();
+
+	private int count = 0;
+	private int minId = Integer.MAX_VALUE;
+	private int maxId = Integer.MIN_VALUE;
+
+	@Override
+	public void put(Article a) {
+		count++;
+		ids.add(a.id);
+		if (a.isUnread)
+			unreadIds.add(a.id);
+		if (a.id < minId)
+			minId = a.id;
+		if (a.id > maxId)
+			maxId = a.id;
+
+		batch.add(a);
+		if (batch.size() >= BATCH_SIZE)
+			flush();
+	}
+
+	@Override
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * write all pending articles to the DB
+	 */
+	void flush() {
+		if (batch.isEmpty())
+			return;
+
+		result.add(DBHelper.getInstance().insertArticles(batch));
+		batch.clear();
+	}
+
+	boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * @return IDs of all articles handed to this sink
+	 */
+	IntSet getIds() {
+		return ids;
+	}
+
+	/**
+	 * @return IDs of all articles handed to this sink which were unread
+	 */
+	IntSet getUnreadIds() {
+		return unreadIds;
+	}
+
+	/**
+	 * @return amounts of inserted, updated and skipped articles so far
+	 */
+	DBHelper.UpsertResult getResult() {
+		return result;
+	}
+
+	int getMinId() {
+		return minId;
+	}
+
+	int getMaxId() {
+		return maxId;
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import android.util.Log;
+
+import org.ttrssreader.utils.Utils;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Removes old articles in the background so inserting new articles never has to wait for it. For every policy a
+ * watermark on {@code updateDate} is determined first, everything older than the watermark is then deleted in small
+ * chunks, each in its own transaction. Published and starred articles are always kept.
+ * <p>
+ * Policies:
+ * <ul>
+ * <li>at most {@link Utils#ARTICLE_LIMIT} articles overall</li>
+ * <li>at most {@link Controller#articleLimitPerFeed()} articles per feed (if set)</li>
+ * <li>no articles older than {@link Controller#articleMaxAge()} days (if set)</li>
+ * </ul>
+ */
+class ArticleRetention {
+
+	private static final String TAG = ArticleRetention.class.getSimpleName();
+
+	private static final int CHUNK_SIZE = 200;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final Object lock = new Object();
+	private boolean scheduled = false;
+
+	// Singleton (see http://stackoverflow.com/a/11165926)
+	private ArticleRetention() {
+	}
+
+	private static class InstanceHolder {
+		private static final ArticleRetention instance = new ArticleRetention();
+	}
+
+	static ArticleRetention getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	/**
+	 * Run the retention policies once in the background. Calls made while a run is still pending are ignored, the
+	 * pending run will take their articles into account anyway.
+	 */
+	void schedule() {
+		synchronized (lock) {
+			if (scheduled)
+				return;
+			scheduled = true;
+		}
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					scheduled = false;
+				}
+				try {
+					purge();
+				} catch (Exception e) {
+					Log.e(TAG, "Purging old articles failed", e);
+				}
+			}
+		});
+	}
+
+	private void purge() {
+		long time = System.currentTimeMillis();
+		DBHelper db = DBHelper.getInstance();
+		int deleted = 0;
+
+		int maxAge = Controller.getInstance().articleMaxAge();
+		if (maxAge > 0)
+			deleted += purgeBefore(null, time - maxAge * Utils.DAY);
+
+		int perFeed = Controller.getInstance().articleLimitPerFeed();
+		if (perFeed > 0) {
+			Set<Integer> feedIds = db.getFeedsExceedingLimit(perFeed);
+			for (int feedId : feedIds) {
+				deleted += purgeBefore(feedId, db.getRetentionWatermark(feedId, perFeed));
+			}
+		}
+
+		deleted += purgeBefore(null, db.getRetentionWatermark(null, Utils.ARTICLE_LIMIT));
+
+		if (deleted > 0) {
+			Log.d(TAG, String.format("Purged %s articles (took %sms)", deleted, (System.currentTimeMillis() - time)));
+		}
+	}
+
+	/**
+	 * Delete articles older than the watermark chunk by chunk, releasing the write lock in between.
+	 */
+	private int purgeBefore(Integer feedId, long watermark) {
+		if (watermark < 0)
+			return 0;
+
+		int total = 0;
+		int count;
+		do {
+			count = DBHelper.getInstance().purgeArticlesBefore(feedId, watermark, CHUNK_SIZE);
+			total += count;
+		} while (count >= CHUNK_SIZE);
+		return total;
+	}
+
+}
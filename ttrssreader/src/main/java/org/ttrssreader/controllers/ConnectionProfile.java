@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.ttrssreader.preferences.Constants;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Immutable snapshot of all connection related preferences, resolved once for the SSID of the current wifi network
+ * (if wifi-based preferences are enabled for it). The snapshot is dropped by {@link Controller} when preferences are
+ * changed or the network changes, so reading e.g. the server URL does not need a WifiManager call and several
+ * preference lookups on every API request.
+ */
+public final class ConnectionProfile {
+
+	private static final String TAG = ConnectionProfile.class.getSimpleName();
+
+	// The preferences read into a profile, each of them may also be stored with the SSID of a wifi network as prefix
+	private static final String[] KEYS = {Constants.ENABLE_WIFI_BASED_SUFFIX, Constants.URL, Constants.USERNAME,
+			Constants.PASSWORD, Constants.USE_OF_A_LAZY_SERVER, Constants.URL_FEEDICONS, Constants.USE_PROXY,
+			Constants.PROXY_HOST, Constants.PROXY_PORT, Constants.USE_HTTP_AUTH, Constants.HTTP_USERNAME,
+			Constants.HTTP_PASSWORD, Constants.USE_KEYSTORE, Constants.USE_PROVIDER_INSTALLER, Constants.USE_CLIENT_CERT,
+			Constants.TRUST_ALL_SSL, Constants.TRUST_ALL_HOSTS, Constants.KEYSTORE_PASSWORD, Constants.CLIENT_CERTIFICATE};
+
+	public final String ssid;
+	public final boolean wifibasedPrefsEnabled;
+
+	public final String base;
+	public final String hostname;
+	public final URL url; // null if the configured URL is malformed
+	public final String username;
+	public final String password;
+	public final boolean lazyServer;
+	public final String baseFeedIconPath;
+
+	public final boolean useProxy;
+	public final String proxyHost;
+	public final int proxyPort;
+
+	public final boolean useHttpAuth;
+	public final String httpUsername;
+	public final String httpPassword;
+
+	public final boolean useKeystore;
+	public final boolean useProviderInstaller;
+	public final boolean useClientCertificate;
+	public final boolean trustAllSsl;
+	public final boolean trustAllHosts;
+	public final String keystorePassword;
+	public final String clientCertificateAlias;
+
+	ConnectionProfile(SharedPreferences prefs, String ssid) {
+		this.ssid = ssid;
+		this.wifibasedPrefsEnabled = prefs.getBoolean(getStringWithSSID(Constants.ENABLE_WIFI_BASED_SUFFIX, true), false);
+
+		base = getString(prefs, Constants.URL, Constants.URL_DEFAULT);
+		hostname = buildHostname(base);
+		url = parseUrl(hostname);
+		username = getString(prefs, Constants.USERNAME, Constants.EMPTY);
+		password = getString(prefs, Constants.PASSWORD, Constants.EMPTY);
+		lazyServer = getBoolean(prefs, Constants.USE_OF_A_LAZY_SERVER, Constants.USE_OF_A_LAZY_SERVER_DEFAULT);
+		baseFeedIconPath = getString(prefs, Constants.URL_FEEDICONS, Constants.URL_DEFAULT_FEEDICONS);
+
+		useProxy = getBoolean(prefs, Constants.USE_PROXY, false);
+		proxyHost = getString(prefs, Constants.PROXY_HOST, Constants.EMPTY);
+		proxyPort = getInt(prefs, Constants.PROXY_PORT, Constants.PROXY_PORT_DEFAULT);
+
+		useHttpAuth = getBoolean(prefs, Constants.USE_HTTP_AUTH, Constants.USE_HTTP_AUTH_DEFAULT);
+		httpUsername = getString(prefs, Constants.HTTP_USERNAME, Constants.EMPTY);
+		httpPassword = getString(prefs, Constants.HTTP_PASSWORD, Constants.EMPTY);
+
+		useKeystore = getBoolean(prefs, Constants.USE_KEYSTORE, Constants.USE_KEYSTORE_DEFAULT);
+		useProviderInstaller = getBoolean(prefs, Constants.USE_PROVIDER_INSTALLER, Constants.USE_PROVIDER_INSTALLER_DEFAULT);
+		useClientCertificate = getBoolean(prefs, Constants.USE_CLIENT_CERT, Constants.USE_CLIENT_CERT_DEFAULT);
+		trustAllSsl = getBoolean(prefs, Constants.TRUST_ALL_SSL, Constants.TRUST_ALL_SSL_DEFAULT);
+		trustAllHosts = getBoolean(prefs, Constants.TRUST_ALL_HOSTS, Constants.TRUST_ALL_HOSTS_DEFAULT);
+		keystorePassword = getString(prefs, Constants.KEYSTORE_PASSWORD, Constants.EMPTY);
+		clientCertificateAlias = getString(prefs, Constants.CLIENT_CERTIFICATE, Constants.EMPTY);
+	}
+
+	/**
+	 * @param key the key of a changed preference
+	 * @return true if the preference is part of the profile, globally or for a wifi network
+	 */
+	static boolean isConnectionKey(String key) {
+		for (String k : KEYS) {
+			if (key.endsWith(k))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if both profiles need the same settings of the http client: proxy and timeouts
+	 */
+	public boolean hasSameClientSettings(ConnectionProfile other) {
+		return other != null && lazyServer == other.lazyServer && useProxy == other.useProxy
+				&& proxyHost.equals(other.proxyHost) && proxyPort == other.proxyPort;
+	}
+
+	private static String buildHostname(String base) {
+		String url = base;
+		if (!url.endsWith(Controller.JSON_END_URL)) {
+			if (!url.endsWith("/")) {
+				url += "/";
+			}
+			url += Controller.JSON_END_URL;
+		}
+		return url;
+	}
+
+	private static URL parseUrl(String hostname) {
+		try {
+			return new URL(hostname);
+		} catch (MalformedURLException e) {
+			Log.e(TAG, "Malformed URL: " + e.toString());
+			return null;
+		}
+	}
+
+	private String getStringWithSSID(String param, boolean wifibasedPrefsEnabled) {
+		if (ssid == null || !wifibasedPrefsEnabled)
+			return param;
+		else
+			return ssid + param;
+	}
+
+	// Load from Wifi-Preferences, fall back to the global preference if there is no wifi-specific value:
+
+	private String getString(SharedPreferences prefs, String param, String defaultValue) {
+		String key = getStringWithSSID(param, wifibasedPrefsEnabled);
+		if (prefs.contains(key))
+			return prefs.getString(key, defaultValue);
+		else
+			return prefs.getString(param, defaultValue);
+	}
+
+	private boolean getBoolean(SharedPreferences prefs, String param, boolean defaultValue) {
+		String key = getStringWithSSID(param, wifibasedPrefsEnabled);
+		if (prefs.contains(key))
+			return prefs.getBoolean(key, defaultValue);
+		else
+			return prefs.getBoolean(param, defaultValue);
+	}
+
+	private int getInt(SharedPreferences prefs, String param, int defaultValue) {
+		String key = getStringWithSSID(param, wifibasedPrefsEnabled);
+		if (prefs.contains(key))
+			return prefs.getInt(key, defaultValue);
+		else
+			return prefs.getInt(param, defaultValue);
+	}
+
+}
@@ -18,7 +18,10 @@
 package org.ttrssreader.controllers;
 
 import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.pm.ApplicationInfo;
@@ -26,6 +29,7 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.Signature;
 import android.content.res.Configuration;
+import android.net.ConnectivityManager;
 import android.net.http.HttpResponseCache;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
@@ -38,7 +42,6 @@ import android.view.Display;
 import android.view.WindowManager;
 import android.widget.Toast;
 
-import org.stringtemplate.v4.ST;
 import org.ttrssreader.MyApplication;
 import org.ttrssreader.R;
 import org.ttrssreader.gui.CategoryActivity;
@@ -59,9 +62,6 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -90,6 +90,7 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	private final static char TEMPLATE_DELIMITER_END = '$';
 
 	private WifiManager wifiManager;
+	private volatile ConnectionProfile connectionProfile = null;
 
 	private volatile JSONConnector ttrssConnector;
 	private static final Object lockConnector = new Object();
@@ -144,6 +145,9 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	private Integer cacheFolderMaxSize = null;
 	private Integer cacheImageMaxSize = null;
 	private Integer cacheImageMinSize = null;
+	private Integer cacheImageThreads = null;
+	private Integer articleMaxAge = null;
+	private Integer articleLimitPerFeed = null;
 	private Boolean deleteDbScheduled = null;
 	private Boolean cacheImagesOnStartup = null;
 	private Boolean cacheImagesOnlyWifi = null;
@@ -162,15 +166,11 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	private Integer sinceId = null;
 	private Long lastSync = null;
 	private Long lastCleanup = null;
-	private Boolean lowMemory = false;
 
 	public volatile Set<Integer> lastOpenedFeeds = new HashSet<>();
 	public volatile Set<Integer> lastOpenedArticles = new HashSet<>();
 
 	// Article-View-Stuff
-	public static ST htmlTemplate;
-	private static final Object lockHtmlTemplate = new Object();
-
 	public static int relSwipeMinDistance;
 	public static int relSwipeMaxOffPath;
 	public static int relSwipeThresholdVelocity;
@@ -219,11 +219,20 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 
 			initialized = true;
 
+			// Drop the cached connection profile whenever the network changes, the SSID might be different now
+			context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+				@Override
+				public void onReceive(Context context, Intent intent) {
+					invalidateConnectionProfile();
+				}
+			}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
 			/* Attempt to initialize some stuff in a background-thread to reduce loading time. Start a login-request
 			separately because this takes some time. Also initialize SSL-Stuff since the login needs this. */
 			new AsyncTask<Void, Void, Void>() {
 				protected Void doInBackground(Void... params) {
 					wifiManager = (WifiManager) context.getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+					invalidateConnectionProfile();
 
 					if (Controller.getInstance().useKeystore()) {
 						try {
@@ -394,10 +403,21 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 		return ret;
 	}
 
-	private boolean wifibasedPrefsEnabled() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(ENABLE_WIFI_BASED_SUFFIX, getCurrentSSID(wifiManager), true);
-		return prefs.getBoolean(key, false);
+	/**
+	 * Returns the connection preferences resolved for the current network. The profile is cached until preferences or
+	 * the network change, see {@link #invalidateConnectionProfile()}.
+	 */
+	public ConnectionProfile connectionProfile() {
+		ConnectionProfile profile = connectionProfile;
+		if (profile == null) {
+			profile = new ConnectionProfile(prefs, getCurrentSSID(wifiManager));
+			connectionProfile = profile;
+		}
+		return profile;
+	}
+
+	public void invalidateConnectionProfile() {
+		connectionProfile = null;
 	}
 
 	public URI uri() throws URISyntaxException {
@@ -405,31 +425,25 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	}
 
 	public URL url() throws MalformedURLException {
-		return new URL(hostname());
+		URL url = connectionProfile().url;
+		if (url == null)
+			throw new MalformedURLException("Invalid URL: " + hostname());
+		return url;
 	}
 
 	public URL feedIconUrl(int feedId) throws MalformedURLException {
-		String base = base();
+		String base = connectionProfile().base;
 		if (!base.endsWith("/"))
 			base = base + "/";
 		return new URL(base + baseFeedIconPath() + "/" + feedId + ".ico");
 	}
 
 	public URL baseUrl() throws MalformedURLException {
-		return new URL(base());
+		return new URL(connectionProfile().base);
 	}
 
 	public String hostname() {
-		String url = base();
-
-		if (!url.endsWith(JSON_END_URL)) {
-			if (!url.endsWith("/")) {
-				url += "/";
-			}
-			url += JSON_END_URL;
-		}
-
-		return url;
+		return connectionProfile().hostname;
 	}
 
 	/*
@@ -448,225 +462,80 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	}
 	*/
 
-	private String base() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(URL, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		String url;
-		if (prefs.contains(key))
-			url = prefs.getString(key, URL_DEFAULT);
-		else
-			url = prefs.getString(URL, URL_DEFAULT);
-
-		return url;
-	}
-
 	public String username() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USERNAME, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(USERNAME, EMPTY);
+		return connectionProfile().username;
 	}
 
 	public String password() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(PASSWORD, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(PASSWORD, EMPTY);
+		return connectionProfile().password;
 	}
 
 	public boolean lazyServer() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_OF_A_LAZY_SERVER, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		boolean useOfALazyServer;
-		if (prefs.contains(key))
-			useOfALazyServer = prefs.getBoolean(key, USE_OF_A_LAZY_SERVER_DEFAULT);
-		else
-			useOfALazyServer = prefs.getBoolean(USE_OF_A_LAZY_SERVER, Constants.USE_OF_A_LAZY_SERVER_DEFAULT);
-
-		return useOfALazyServer;
+		return connectionProfile().lazyServer;
 	}
 
 	public String baseFeedIconPath() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(URL_FEEDICONS, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		String url;
-		if (prefs.contains(key))
-			url = prefs.getString(key, URL_DEFAULT_FEEDICONS);
-		else
-			url = prefs.getString(URL_FEEDICONS, URL_DEFAULT_FEEDICONS);
-		return url;
+		return connectionProfile().baseFeedIconPath;
 	}
 
 	public boolean useProxy() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_PROXY, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		boolean useProxy;
-		if (prefs.contains(key))
-			useProxy = prefs.getBoolean(key, false);
-		else
-			useProxy = prefs.getBoolean(USE_PROXY, false);
-
-		return useProxy;
+		return connectionProfile().useProxy;
 	}
 
 	public String proxyHost() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(PROXY_HOST, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(PROXY_HOST, EMPTY);
+		return connectionProfile().proxyHost;
 	}
 
 	public int proxyPort() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(PROXY_PORT, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getInt(key, Constants.PROXY_PORT_DEFAULT);
-		else
-			return prefs.getInt(PROXY_HOST, Constants.PROXY_PORT_DEFAULT);
+		return connectionProfile().proxyPort;
 	}
 
 	public boolean useHttpAuth() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_HTTP_AUTH, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, USE_HTTP_AUTH_DEFAULT);
-		else
-			return prefs.getBoolean(USE_HTTP_AUTH, USE_HTTP_AUTH_DEFAULT);
+		return connectionProfile().useHttpAuth;
 	}
 
 	public String httpUsername() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(HTTP_USERNAME, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(HTTP_USERNAME, EMPTY);
+		return connectionProfile().httpUsername;
 	}
 
 	public String httpPassword() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(HTTP_PASSWORD, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(HTTP_PASSWORD, EMPTY);
+		return connectionProfile().httpPassword;
 	}
 
 	public boolean useKeystore() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_KEYSTORE, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, USE_KEYSTORE_DEFAULT);
-		else
-			return prefs.getBoolean(USE_KEYSTORE, USE_KEYSTORE_DEFAULT);
+		return connectionProfile().useKeystore;
 	}
 
 	public boolean useProviderInstaller() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_PROVIDER_INSTALLER, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, USE_PROVIDER_INSTALLER_DEFAULT);
-		else
-			return prefs.getBoolean(USE_PROVIDER_INSTALLER, USE_PROVIDER_INSTALLER_DEFAULT);
+		return connectionProfile().useProviderInstaller;
 	}
 
 	public boolean useClientCertificate() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(USE_CLIENT_CERT, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, USE_CLIENT_CERT_DEFAULT);
-		else
-			return prefs.getBoolean(USE_CLIENT_CERT, USE_CLIENT_CERT_DEFAULT);
+		return connectionProfile().useClientCertificate;
 	}
 
 	public boolean trustAllSsl() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(TRUST_ALL_SSL, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, TRUST_ALL_SSL_DEFAULT);
-		else
-			return prefs.getBoolean(TRUST_ALL_SSL, TRUST_ALL_SSL_DEFAULT);
+		return connectionProfile().trustAllSsl;
 	}
 
 	private boolean trustAllHosts() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(TRUST_ALL_HOSTS, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getBoolean(key, TRUST_ALL_HOSTS_DEFAULT);
-		else
-			return prefs.getBoolean(TRUST_ALL_HOSTS, TRUST_ALL_HOSTS_DEFAULT);
+		return connectionProfile().trustAllHosts;
 	}
 
 	public String getKeystorePassword() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(KEYSTORE_PASSWORD, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(KEYSTORE_PASSWORD, EMPTY);
+		return connectionProfile().keystorePassword;
 	}
 
 	public String getClientCertificateAlias() {
-		// Load from Wifi-Preferences:
-		String key = getStringWithSSID(CLIENT_CERTIFICATE, getCurrentSSID(wifiManager), wifibasedPrefsEnabled());
-
-		if (prefs.contains(key))
-			return prefs.getString(key, EMPTY);
-		else
-			return prefs.getString(KEYSTORE_PASSWORD, EMPTY);
+		return connectionProfile().clientCertificateAlias;
 	}
 
 	public boolean urlNeedsAuthentication(URL url) {
-		if (!this.useHttpAuth())
+		ConnectionProfile profile = connectionProfile();
+		if (!profile.useHttpAuth || profile.url == null)
 			return false;
 
-		try {
-			return url.getHost().equalsIgnoreCase(this.url().getHost());
-		} catch (MalformedURLException e) {
-			Log.e(TAG, "Malformed URL: " + e.toString());
-		}
-
-		return false;
-	}
-
-	@SuppressWarnings("CharsetObjectCanBeUsed")
-	public URLConnection openConnection(URL url) throws IOException {
-		URLConnection c = url.openConnection();
-
-		if (this.urlNeedsAuthentication(url)) {
-			String auth = this.httpUsername() + ":" + this.httpPassword();
-			String encoded;
-			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT)
-				encoded = Base64.encodeToString(auth.getBytes(Charset.forName("UTF-8")), Base64.NO_WRAP);
-			else
-				encoded = Base64.encodeToString(auth.getBytes(StandardCharsets.UTF_8), Base64.NO_WRAP);
-			c.setRequestProperty("Authorization", "Basic " + encoded);
-		}
-
-		return c;
+		return url.getHost().equalsIgnoreCase(profile.url.getHost());
 	}
 
 	public JSONConnector getConnector() {
@@ -1188,6 +1057,39 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 		this.cacheImageMinSize = cacheImageMinSize;
 	}
 
+	public Integer cacheImageThreads() {
+		if (cacheImageThreads == null)
+			cacheImageThreads = prefs.getInt(CACHE_IMAGE_THREADS, CACHE_IMAGE_THREADS_DEFAULT);
+		return cacheImageThreads;
+	}
+
+	public void setCacheImageThreads(Integer cacheImageThreads) {
+		put(CACHE_IMAGE_THREADS, cacheImageThreads);
+		this.cacheImageThreads = cacheImageThreads;
+	}
+
+	public Integer articleMaxAge() {
+		if (articleMaxAge == null)
+			articleMaxAge = prefs.getInt(ARTICLE_MAX_AGE, ARTICLE_MAX_AGE_DEFAULT);
+		return articleMaxAge;
+	}
+
+	public void setArticleMaxAge(Integer articleMaxAge) {
+		put(ARTICLE_MAX_AGE, articleMaxAge);
+		this.articleMaxAge = articleMaxAge;
+	}
+
+	public Integer articleLimitPerFeed() {
+		if (articleLimitPerFeed == null)
+			articleLimitPerFeed = prefs.getInt(ARTICLE_LIMIT_PER_FEED, ARTICLE_LIMIT_PER_FEED_DEFAULT);
+		return articleLimitPerFeed;
+	}
+
+	public void setArticleLimitPerFeed(Integer articleLimitPerFeed) {
+		put(ARTICLE_LIMIT_PER_FEED, articleLimitPerFeed);
+		this.articleLimitPerFeed = articleLimitPerFeed;
+	}
+
 	public boolean isDeleteDBScheduled() {
 		if (deleteDbScheduled == null)
 			deleteDbScheduled = prefs.getBoolean(DELETE_DB_SCHEDULED, DELETE_DB_SCHEDULED_DEFAULT);
@@ -1342,16 +1244,6 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 		return lastSync;
 	}
 
-	public void lowMemory(boolean lowMemory) {
-		if (lowMemory && !this.lowMemory)
-			Log.w(TAG, "lowMemory-Situation detected, trying to reduce memory footprint...");
-		this.lowMemory = lowMemory;
-	}
-
-	public boolean isLowMemory() {
-		return lowMemory;
-	}
-
 	public void setLastCleanup(long lastCleanup) {
 		put(LAST_CLEANUP, lastCleanup);
 		this.lastCleanup = lastSync;
@@ -1426,6 +1318,10 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 	@Override
 	public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
 
+		// Rebuilding the profile asks the WifiManager for the SSID, only drop it if a connection preference changed
+		if (key != null && ConnectionProfile.isConnectionKey(key))
+			invalidateConnectionProfile();
+
 		// Indicate Restart of App is necessary if Theme-Pref is changed and value differs from old value:
 		if (key.equals(THEME)) {
 			int newTheme = Integer.parseInt(prefs.getString(key, THEME_DEFAULT));
@@ -1484,13 +1380,6 @@ public class Controller extends Constants implements OnSharedPreferenceChangeLis
 		}
 	}
 
-	private static String getStringWithSSID(String param, String wifiSSID, boolean wifibasedPrefsEnabled) {
-		if (wifiSSID == null || !wifibasedPrefsEnabled)
-			return param;
-		else
-			return wifiSSID + param;
-	}
-
 	private static final String SIZE_VERTICAL_CATEGORY = "sizeVerticalCategory";
 	private static final String SIZE_HORIZONTAL_CATEGORY = "sizeHorizontalCategory";
 	private static final String SIZE_VERTICAL_HEADLINE = "sizeVerticalHeadline";
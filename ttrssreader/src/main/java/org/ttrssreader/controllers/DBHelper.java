@@ -17,13 +17,13 @@
 
 package org.ttrssreader.controllers;
 
-import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
@@ -33,6 +33,7 @@ import android.widget.Toast;
 
 import org.ttrssreader.MyApplication;
 import org.ttrssreader.gui.dialogs.ErrorDialog;
+import org.ttrssreader.imageCache.FeedIconCache;
 import org.ttrssreader.imageCache.ImageCache;
 import org.ttrssreader.model.pojos.Article;
 import org.ttrssreader.model.pojos.Category;
@@ -41,6 +42,8 @@ import org.ttrssreader.model.pojos.Label;
 import org.ttrssreader.model.pojos.RemoteFile;
 import org.ttrssreader.utils.AsyncTask;
 import org.ttrssreader.utils.FileUtils;
+import org.ttrssreader.utils.IntLongMap;
+import org.ttrssreader.utils.IntSet;
 import org.ttrssreader.utils.StringSupport;
 import org.ttrssreader.utils.Utils;
 
@@ -52,19 +55,21 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DBHelper {
 
 	private static final String TAG = DBHelper.class.getSimpleName();
 
 	private static final String DATABASE_NAME = "ttrss.db";
-	private static final int DATABASE_VERSION = 65;
+	private static final int DATABASE_VERSION = 71;
 
 	public static final String[] CATEGORIES_COLUMNS = new String[]{"_id", "title", "unread"};
 
@@ -72,10 +77,13 @@ public class DBHelper {
 	public static final String TABLE_FEEDS = "feeds";
 	public static final String TABLE_ARTICLES = "articles";
 	public static final String TABLE_ARTICLES2LABELS = "articles2labels";
+	public static final String TABLE_LABELS = "labels";
+	public static final String TABLE_ATTACHMENTS = "attachments";
 	private static final String TABLE_MARK = "marked";
 	private static final String TABLE_NOTES = "notes";
 	public static final String TABLE_REMOTEFILES = "remotefiles";
 	public static final String TABLE_REMOTEFILE2ARTICLE = "remotefile2article";
+	public static final String TABLE_ARTICLES_FTS = "articles_fts";
 
 	static final String MARK_READ = "isUnread";
 	static final String MARK_STAR = "isStarred";
@@ -84,14 +92,14 @@ public class DBHelper {
 	static final String COL_UNREAD = "unread";
 
 	// @formatter:off
-	private static final String CREATE_TABLE_CATEGORIES =
+	static final String CREATE_TABLE_CATEGORIES =
 			"CREATE TABLE "
 					+ TABLE_CATEGORIES
 					+ " (_id INTEGER PRIMARY KEY,"
 					+ " title TEXT,"
 					+ " unread INTEGER)";
 
-	private static final String CREATE_TABLE_FEEDS =
+	static final String CREATE_TABLE_FEEDS =
 			"CREATE TABLE "
 					+ TABLE_FEEDS
 					+ " (_id INTEGER PRIMARY KEY,"
@@ -101,7 +109,7 @@ public class DBHelper {
 					+ " unread INTEGER,"
 					+ " icon BLOB)";
 
-	private static final String CREATE_TABLE_ARTICLES =
+	static final String CREATE_TABLE_ARTICLES =
 			"CREATE TABLE "
 					+ TABLE_ARTICLES
 					+ " (_id INTEGER PRIMARY KEY,"
@@ -120,13 +128,29 @@ public class DBHelper {
 					+ " author TEXT,"
 					+ " note TEXT)";
 
-	private static final String CREATE_TABLE_ARTICLES2LABELS =
+	static final String CREATE_TABLE_ARTICLES2LABELS =
 			"CREATE TABLE "
 					+ TABLE_ARTICLES2LABELS
 					+ " (articleId INTEGER,"
 					+ " labelId INTEGER, PRIMARY KEY(articleId, labelId))";
 
-	private static final String CREATE_TABLE_MARK =
+	// caption and colors of labels, the assignment to articles is stored in articles2labels
+	private static final String CREATE_TABLE_LABELS =
+			"CREATE TABLE "
+					+ TABLE_LABELS
+					+ " (_id INTEGER PRIMARY KEY,"
+					+ " caption TEXT,"
+					+ " foregroundColor TEXT,"
+					+ " backgroundColor TEXT)";
+
+	// attachment URLs of articles, in the order they were received from the server (rowid)
+	private static final String CREATE_TABLE_ATTACHMENTS =
+			"CREATE TABLE "
+					+ TABLE_ATTACHMENTS
+					+ " (articleId INTEGER,"
+					+ " url TEXT, PRIMARY KEY(articleId, url))";
+
+	static final String CREATE_TABLE_MARK =
 			"CREATE TABLE "
 					+ TABLE_MARK
 					+ " (id INTEGER PRIMARY KEY,"
@@ -134,7 +158,7 @@ public class DBHelper {
 					+ " " + MARK_STAR + " INTEGER,"
 					+ " " + MARK_PUBLISH + " INTEGER)";
 
-	private static final String CREATE_TABLE_NOTES =
+	static final String CREATE_TABLE_NOTES =
 			"CREATE TABLE "
 					+ TABLE_NOTES
 					+ " (_id INTEGER PRIMARY KEY,"
@@ -152,22 +176,90 @@ public class DBHelper {
 					+ " (_id, categoryId, title, url, unread, icon)"
 					+ " VALUES (?, ?, ?, ?, ?, ?)";
 
-	private static final String INSERT_ARTICLE =
-			"INSERT OR REPLACE INTO "
+	// Articles are only inserted if they don't exist yet, see insertArticleIntern(). New articles get cachedImages=NULL
+	// so the ImageCacher picks them up. The columns attachments and articleLabels are not used anymore, see
+	// TABLE_ATTACHMENTS and TABLE_LABELS.
+	static final String INSERT_ARTICLE =
+			"INSERT INTO "
 					+ TABLE_ARTICLES
 					+ " (_id, feedId, title, isUnread, articleUrl, articleCommentUrl, updateDate, content,"
-					+ " attachments, isStarred, isPublished, cachedImages, articleLabels, author, note)"
-					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, coalesce((SELECT cachedImages FROM " + TABLE_ARTICLES
-					+ " WHERE _id=?), NULL), ?, ?, ?)";
-	// This should insert new values or replace existing values but should always keep an already inserted value for
-	// "cachedImages". When inserting it is set to the default value which is 0 (not "NULL").
+					+ " isStarred, isPublished, cachedImages, author, note)"
+					+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NULL, ?, ?)";
 
-	private static final String INSERT_LABEL =
-			"REPLACE INTO "
+	private static final String SELECT_ARTICLE_UPDATE_DATE =
+			"SELECT updateDate FROM "
+					+ TABLE_ARTICLES
+					+ " WHERE _id=?";
+
+	// the server sent a newer version of the article, cachedImages is kept
+	// The state columns keep changes from the outbox which haven't been sent yet, see unsynchronized()
+	static final String UPDATE_ARTICLE =
+			"UPDATE "
+					+ TABLE_ARTICLES
+					+ " SET feedId=?1, title=?2, isUnread=" + unsynchronized(MARK_READ, 12, 3) + ","
+					+ " articleUrl=?4, articleCommentUrl=?5, updateDate=?6, content=?7,"
+					+ " isStarred=" + unsynchronized(MARK_STAR, 12, 8) + ","
+					+ " isPublished=" + unsynchronized(MARK_PUBLISH, 12, 9) + ","
+					+ " author=?10, note=" + unsynchronized(COL_NOTE, 12, 11)
+					+ " WHERE _id=?12";
+
+	// the article itself is unchanged, only write the state if it differs from the stored one
+	static final String UPDATE_ARTICLE_STATE =
+			"UPDATE "
+					+ TABLE_ARTICLES
+					+ " SET isUnread=" + unsynchronized(MARK_READ, 5, 1) + ","
+					+ " isStarred=" + unsynchronized(MARK_STAR, 5, 2) + ","
+					+ " isPublished=" + unsynchronized(MARK_PUBLISH, 5, 3) + ","
+					+ " note=" + unsynchronized(COL_NOTE, 5, 4)
+					+ " WHERE _id=?5"
+					+ " AND (isUnread<>" + unsynchronized(MARK_READ, 5, 1)
+					+ " OR isStarred<>" + unsynchronized(MARK_STAR, 5, 2)
+					+ " OR isPublished<>" + unsynchronized(MARK_PUBLISH, 5, 3)
+					+ " OR note IS NOT " + unsynchronized(COL_NOTE, 5, 4) + ")";
+
+	// Full-text index over title, author and the plain text of the content, docid is the article id. Rows are removed
+	// by triggers, inserting is done in insertArticleIntern() since markup can't be stripped in SQL.
+	static final String CREATE_TABLE_ARTICLES_FTS =
+			"CREATE VIRTUAL TABLE "
+					+ TABLE_ARTICLES_FTS
+					+ " USING fts4(title, author, content)";
+
+	static final String INSERT_ARTICLE_FTS =
+			"INSERT INTO "
+					+ TABLE_ARTICLES_FTS
+					+ " (docid, title, author, content)"
+					+ " VALUES (?, ?, ?, ?)";
+
+	private static final String UPDATE_ARTICLE_FTS =
+			"UPDATE "
+					+ TABLE_ARTICLES_FTS
+					+ " SET title=?, author=?, content=?"
+					+ " WHERE docid=?";
+
+	// existing assignments are ignored, the label counter trigger only fires for rows which are really inserted
+	static final String INSERT_LABEL =
+			"INSERT OR IGNORE INTO "
 					+ TABLE_ARTICLES2LABELS
 					+ " (articleId, labelId)"
 					+ " VALUES (?, ?)";
 
+	private static final String INSERT_LABEL_DETAILS =
+			"REPLACE INTO "
+					+ TABLE_LABELS
+					+ " (_id, caption, foregroundColor, backgroundColor)"
+					+ " VALUES (?, ?, ?, ?)";
+
+	private static final String DELETE_ATTACHMENTS =
+			"DELETE FROM "
+					+ TABLE_ATTACHMENTS
+					+ " WHERE articleId=?";
+
+	private static final String INSERT_ATTACHMENT =
+			"INSERT OR IGNORE INTO "
+					+ TABLE_ATTACHMENTS
+					+ " (articleId, url)"
+					+ " VALUES (?, ?)";
+
 	private static final String INSERT_REMOTEFILE =
 			"INSERT OR FAIL INTO "
 					+ TABLE_REMOTEFILES
@@ -179,20 +271,81 @@ public class DBHelper {
 					+ TABLE_REMOTEFILE2ARTICLE
 					+ " (remotefileId, articleId)"
 					+ " VALUES (?, ?)";
+
+	static final String RESTORE_UNSYNCHRONIZED_READ_STATES =
+			"UPDATE "
+					+ TABLE_ARTICLES
+					+ " SET isUnread=(SELECT m." + MARK_READ + " FROM " + TABLE_MARK + " m WHERE m.id=" + TABLE_ARTICLES + "._id)"
+					+ " WHERE _id IN (SELECT id FROM " + TABLE_MARK + " WHERE " + MARK_READ + " IS NOT NULL)"
+					+ " AND isUnread<>(SELECT m." + MARK_READ + " FROM " + TABLE_MARK + " m WHERE m.id=" + TABLE_ARTICLES + "._id)";
+
+	// unread counters of all feeds, labels and categories from the real amount of unread articles, see
+	// recalculateCounters(). The feeds have to be updated before the real categories which sum them up.
+	static final String RECALCULATE_FEEDS =
+			"UPDATE "
+					+ TABLE_FEEDS
+					+ " SET " + COL_UNREAD + "="
+					+ " (SELECT count(*) FROM " + TABLE_ARTICLES + " a"
+					+ "   WHERE a.feedId=" + TABLE_FEEDS + "._id AND a.isUnread>0)"
+					+ " WHERE _id>=-10";
+
+	static final String RECALCULATE_LABELS =
+			"UPDATE "
+					+ TABLE_FEEDS
+					+ " SET " + COL_UNREAD + "="
+					+ " (SELECT count(*) FROM " + TABLE_ARTICLES2LABELS + " a2l, " + TABLE_ARTICLES + " a"
+					+ "   WHERE a2l.labelId=" + TABLE_FEEDS + "._id AND a2l.articleId=a._id AND a.isUnread>0)"
+					+ " WHERE _id<-10";
+
+	static final String RECALCULATE_CATEGORIES =
+			"UPDATE "
+					+ TABLE_CATEGORIES
+					+ " SET " + COL_UNREAD + "="
+					+ " (SELECT coalesce(sum(f.unread), 0) FROM " + TABLE_FEEDS + " f"
+					+ "   WHERE f.categoryId=" + TABLE_CATEGORIES + "._id)"
+					+ " WHERE _id>=0";
+
+	// bind: articles updated after this time are fresh
+	static final String RECALCULATE_VIRTUAL_CATEGORIES =
+			"UPDATE "
+					+ TABLE_CATEGORIES
+					+ " SET " + COL_UNREAD + "= CASE _id"
+					+ " WHEN " + Data.VCAT_ALL + " THEN (SELECT count(*) FROM " + TABLE_ARTICLES + " WHERE isUnread>0)"
+					+ " WHEN " + Data.VCAT_FRESH + " THEN (SELECT count(*) FROM " + TABLE_ARTICLES + " WHERE isUnread>0 AND updateDate>?)"
+					+ " WHEN " + Data.VCAT_PUB + " THEN (SELECT count(*) FROM " + TABLE_ARTICLES + " WHERE isUnread>0 AND isPublished>0)"
+					+ " WHEN " + Data.VCAT_STAR + " THEN (SELECT count(*) FROM " + TABLE_ARTICLES + " WHERE isUnread>0 AND isStarred>0)"
+					+ " ELSE 0 END"
+					+ " WHERE _id<0";
 	// @formatter:on
 
+	/**
+	 * build the value for a state column of an article which is written with data from the server. A change the user
+	 * made which is still waiting in the outbox (TABLE_MARK / TABLE_NOTES) wins over the server's value, otherwise a
+	 * refresh before synchronizeStatus() ran would revert it.
+	 *
+	 * @param column     one of MARK_READ, MARK_STAR, MARK_PUBLISH or COL_NOTE
+	 * @param idParam    number of the parameter holding the article id
+	 * @param valueParam number of the parameter holding the value sent by the server
+	 */
+	private static String unsynchronized(String column, int idParam, int valueParam) {
+		String outbox = COL_NOTE.equals(column) ? TABLE_NOTES + " o WHERE o._id" : TABLE_MARK + " o WHERE o.id";
+		return "coalesce((SELECT o." + column + " FROM " + outbox + "=?" + idParam + "), ?" + valueParam + ")";
+	}
+
 	private volatile boolean initialized = false;
 
-	private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
-	private final Lock read = rwl.readLock();
-	private final Lock write = rwl.writeLock();
+	private final DatabaseLock lock = new DatabaseLock();
 
-	private OpenHelper openHelper;
+	// Not guarded by the monitor: readers holding the read lock must not block on it while the DB is being closed
+	private volatile OpenHelper openHelper;
 
-	public synchronized OpenHelper getOpenHelper() {
+	public OpenHelper getOpenHelper() {
 		return openHelper;
 	}
 
+	private static final int PREPARE_THREADS = Runtime.getRuntime().availableProcessors();
+	private final ExecutorService prepareExecutor = Executors.newFixedThreadPool(PREPARE_THREADS);
+
 	private final Object insertCategoryLock = new Object();
 	private final Object insertFeedLock = new Object();
 	private final Object insertArticleLock = new Object();
@@ -203,12 +356,26 @@ public class DBHelper {
 	private SQLiteStatement insertCategory;
 	private SQLiteStatement insertFeed;
 	private SQLiteStatement insertArticle;
+	private SQLiteStatement selectArticleUpdateDate;
+	private SQLiteStatement updateArticle;
+	private SQLiteStatement updateArticleState;
+	private SQLiteStatement insertArticleFts;
+	private SQLiteStatement updateArticleFts;
 	private SQLiteStatement insertLabel;
+	private SQLiteStatement insertLabelDetails;
+	private SQLiteStatement deleteAttachments;
+	private SQLiteStatement insertAttachment;
 	private SQLiteStatement insertRemoteFile;
 	private SQLiteStatement insertRemoteFile2Article;
 
 	private static boolean specialUpgradeSuccessful = false;
 
+	/**
+	 * set when feeds or categories are replaced, the counters stored with them can't be trusted anymore then
+	 */
+	private volatile boolean countersInvalid = true;
+	private volatile long lastCounterCheck = 0;
+
 	// Singleton (see http://stackoverflow.com/a/11165926)
 	private DBHelper() {
 	}
@@ -248,8 +415,9 @@ public class DBHelper {
 
 				// Test if DB is accessible, backup and delete if not
 				if (initialized) {
+					boolean corrupted = false;
 					Cursor c = null;
-					read.lock();
+					lock.lockRead();
 					try {
 						// Try to access the DB
 						c = getOpenHelper().getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + TABLE_CATEGORIES, null);
@@ -259,14 +427,19 @@ public class DBHelper {
 
 					} catch (Exception e) {
 						Log.e(TAG, "Database was corrupted, creating a new one...", e);
+						corrupted = true;
+					} finally {
+						close(c);
+						lock.unlockRead();
+					}
+
+					// Closing waits for all readers, so the read lock has to be released first
+					if (corrupted) {
 						closeDB();
 						final File dbFile = context.getDatabasePath(DATABASE_NAME);
 						if (dbFile.delete())
 							initializeDBHelper();
 						ErrorDialog.getInstance("The Database was corrupted and had to be recreated. If this happened more " + "than once to you please let me know under what circumstances this " + "happened.");
-					} finally {
-						close(c);
-						read.unlock();
 					}
 				}
 				return null;
@@ -275,6 +448,15 @@ public class DBHelper {
 	}
 
 	private synchronized void initializeDBHelper() {
+		lock.lockExclusive();
+		try {
+			openDB();
+		} finally {
+			lock.unlockExclusive();
+		}
+	}
+
+	private void openDB() {
 		final Context context = MyApplication.context();
 
 		if (getOpenHelper() != null)
@@ -312,7 +494,15 @@ public class DBHelper {
 		insertCategory = db.compileStatement(INSERT_CATEGORY);
 		insertFeed = db.compileStatement(INSERT_FEED);
 		insertArticle = db.compileStatement(INSERT_ARTICLE);
+		selectArticleUpdateDate = db.compileStatement(SELECT_ARTICLE_UPDATE_DATE);
+		updateArticle = db.compileStatement(UPDATE_ARTICLE);
+		updateArticleState = db.compileStatement(UPDATE_ARTICLE_STATE);
+		insertArticleFts = db.compileStatement(INSERT_ARTICLE_FTS);
+		updateArticleFts = db.compileStatement(UPDATE_ARTICLE_FTS);
 		insertLabel = db.compileStatement(INSERT_LABEL);
+		insertLabelDetails = db.compileStatement(INSERT_LABEL_DETAILS);
+		deleteAttachments = db.compileStatement(DELETE_ATTACHMENTS);
+		insertAttachment = db.compileStatement(INSERT_ATTACHMENT);
 		insertRemoteFile = db.compileStatement(INSERT_REMOTEFILE);
 		insertRemoteFile2Article = db.compileStatement(INSERT_REMOTEFILE2ARTICLE);
 
@@ -326,26 +516,31 @@ public class DBHelper {
 
 		Log.i(TAG, "Deleting Database as requested by preferences.");
 		if (dbFile.exists()) {
-			if (getOpenHelper() != null) {
-				closeDB();
+			lock.lockExclusive();
+			try {
+				if (getOpenHelper() != null) {
+					closeDB();
+				}
+				return dbFile.delete();
+			} finally {
+				lock.unlockExclusive();
 			}
-			return dbFile.delete();
 		}
 
 		return false;
 	}
 
 	private synchronized void closeDB() {
-		write.lock();
+		lock.lockExclusive();
 		try {
 			getOpenHelper().close();
 			openHelper = null;
 		} finally {
-			write.unlock();
+			lock.unlockExclusive();
 		}
 	}
 
-	private synchronized boolean isDBAvailable() {
+	private boolean isDBAvailable() {
 		return getOpenHelper() != null;
 	}
 
@@ -353,6 +548,8 @@ public class DBHelper {
 
 		public OpenHelper(Context context) {
 			super(context, DATABASE_NAME, null, DATABASE_VERSION);
+			// Let cursor queries of the UI run concurrently with the transactions of a running sync
+			setWriteAheadLoggingEnabled(true);
 		}
 
 		/**
@@ -381,6 +578,10 @@ public class DBHelper {
 			db.execSQL(CREATE_TABLE_MARK);
 			db.execSQL(CREATE_TABLE_NOTES);
 			createRemoteFilesSupportDBObjects(db);
+			createCounterTriggers(db);
+			createIndexes(db);
+			createSearchTable(db);
+			createLabelsAndAttachments(db);
 		}
 
 		@Override
@@ -398,6 +599,9 @@ public class DBHelper {
 			db.execSQL("DROP TABLE IF EXISTS " + TABLE_MARK);
 			db.execSQL("DROP TABLE IF EXISTS " + TABLE_REMOTEFILES);
 			db.execSQL("DROP TABLE IF EXISTS " + TABLE_REMOTEFILE2ARTICLE);
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_ARTICLES_FTS);
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_LABELS);
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_ATTACHMENTS);
 		}
 
 		/**
@@ -556,6 +760,68 @@ public class DBHelper {
 				didUpgrade = true;
 			}
 
+			if (oldVersion < 66) {
+				Log.i(TAG, String.format("Upgrading database from %s to 66.", oldVersion));
+				Log.i(TAG, " (Creating triggers for unread counters)");
+
+				// Counters are recalculated completely on first use, see DBHelper.calculateCounters()
+				createCounterTriggers(db);
+				didUpgrade = true;
+			}
+
+			if (oldVersion < 67) {
+				Log.i(TAG, String.format("Upgrading database from %s to 67.", oldVersion));
+				Log.i(TAG, " (Creating indexes for articles, labels and remote files)");
+
+				createIndexes(db);
+				didUpgrade = true;
+			}
+
+			if (oldVersion < 68) {
+				Log.i(TAG, String.format("Upgrading database from %s to 68.", oldVersion));
+				Log.i(TAG, " (Creating full-text search index for articles)");
+
+				createSearchTable(db);
+				fillSearchTable(db);
+				didUpgrade = true;
+			}
+
+			if (oldVersion < 69) {
+				Log.i(TAG, String.format("Upgrading database from %s to 69.", oldVersion));
+				Log.i(TAG, " (Adding reference count to remote files)");
+
+				// Older versions have just re-created the table including the new column
+				if (oldVersion >= 58) {
+					// @formatter:off
+					db.execSQL("ALTER TABLE " + TABLE_REMOTEFILES + " ADD COLUMN refCount INTEGER DEFAULT 0");
+					db.execSQL("UPDATE " + TABLE_REMOTEFILES + " SET refCount ="
+							+ " (SELECT count(*) FROM " + TABLE_REMOTEFILE2ARTICLE + " m"
+							+ "   WHERE m.remotefileId = " + TABLE_REMOTEFILES + ".id)");
+					// @formatter:on
+				}
+				createRemotefilesLastChangedTrigger(db);
+				createRemotefilesRefCountTriggers(db);
+				didUpgrade = true;
+			}
+
+			if (oldVersion < 70) {
+				Log.i(TAG, String.format("Upgrading database from %s to 70.", oldVersion));
+				Log.i(TAG, " (Moving attachments and labels of articles into separate tables)");
+
+				createLabelsAndAttachments(db);
+				fillLabelsAndAttachments(db);
+				didUpgrade = true;
+			}
+
+			if (oldVersion < 71) {
+				Log.i(TAG, String.format("Upgrading database from %s to 71.", oldVersion));
+				Log.i(TAG, " (Re-creating triggers for unread counters of labels)");
+
+				// Label counters may have been decreased wrongly, they are recalculated on first use
+				createCounterTriggers(db);
+				didUpgrade = true;
+			}
+
 			if (!didUpgrade) {
 				Log.i(TAG, "Upgrading database, this will drop tables and recreate.");
 				dropAllTables(db);
@@ -602,7 +868,10 @@ public class DBHelper {
 					// (set automatically by triggers)
 					+ " updateDate INTEGER,"
 					// boolean flag determining if the file is locally stored
-					+ " cached INTEGER DEFAULT 0)");
+					+ " cached INTEGER DEFAULT 0,"
+					// number of articles referencing the file
+					// (maintained by triggers on remotefile2article)
+					+ " refCount INTEGER DEFAULT 0)");
 
 			// index for quiicker search by by URL
 			db.execSQL("DROP INDEX IF EXISTS idx_remotefiles_by_url");
@@ -620,16 +889,23 @@ public class DBHelper {
 					+ "	 WHERE id = new.id;"
 					+ "   END");
 
-			// sets last change unix timestamp after row update
+			createRemotefilesLastChangedTrigger(db);
+			// @formatter:on
+		}
+
+		private void createRemotefilesLastChangedTrigger(SQLiteDatabase db) {
+			// @formatter:off
+			// sets last change unix timestamp after row update, changes of the reference count are no changes of the
+			// file itself
 			db.execSQL("DROP TRIGGER IF EXISTS update_remotefiles_lastchanged");
 			db.execSQL("CREATE TRIGGER IF NOT EXISTS update_remotefiles_lastchanged AFTER UPDATE"
+					+ " OF url, length, ext, cached"
 					+ " ON " + TABLE_REMOTEFILES
 					+ "   BEGIN"
 					+ "	 UPDATE " + TABLE_REMOTEFILES
 					+ "	   SET updateDate = strftime('%s', 'now')"
 					+ "	 WHERE id = new.id;"
 					+ "   END");
-
 			// @formatter:on
 		}
 
@@ -650,6 +926,8 @@ public class DBHelper {
 					// if both IDs are known, then the row should be found faster
 					+ " PRIMARY KEY(remotefileId, articleId))");
 
+			createRemotefilesRefCountTriggers(db);
+
 			// update count of cached images for article on change of "cached"
 			// field of remotefiles
 			db.execSQL("DROP TRIGGER IF EXISTS update_remotefiles_articlefiles");
@@ -679,6 +957,36 @@ public class DBHelper {
 			// @formatter:on
 		}
 
+		/**
+		 * create triggers which keep remotefiles.refCount equal to the number of articles referencing a file, so
+		 * files which are not needed anymore can be found with a lookup of refCount=0
+		 *
+		 * @param db current database
+		 */
+		private void createRemotefilesRefCountTriggers(SQLiteDatabase db) {
+			// @formatter:off
+			db.execSQL("DROP TRIGGER IF EXISTS remotefile2article_refcount_insert");
+			db.execSQL("CREATE TRIGGER remotefile2article_refcount_insert AFTER INSERT"
+					+ " ON " + TABLE_REMOTEFILE2ARTICLE
+					+ "   BEGIN"
+					+ "	 UPDATE " + TABLE_REMOTEFILES + " SET refCount = refCount + 1"
+					+ "	   WHERE id = new.remotefileId;"
+					+ "   END");
+
+			db.execSQL("DROP TRIGGER IF EXISTS remotefile2article_refcount_delete");
+			db.execSQL("CREATE TRIGGER remotefile2article_refcount_delete AFTER DELETE"
+					+ " ON " + TABLE_REMOTEFILE2ARTICLE
+					+ "   BEGIN"
+					+ "	 UPDATE " + TABLE_REMOTEFILES + " SET refCount = refCount - 1"
+					+ "	   WHERE id = old.remotefileId;"
+					+ "   END");
+
+			db.execSQL("CREATE INDEX IF NOT EXISTS idx_remotefiles_by_refcount"
+					+ " ON " + TABLE_REMOTEFILES
+					+ " (refCount)");
+			// @formatter:on
+		}
+
 		private void createRemotefilesView(SQLiteDatabase db) {
 			// @formatter:off
 			// represents importance of cached files
@@ -700,6 +1008,316 @@ public class DBHelper {
 			// @formatter:on
 		}
 
+		/**
+		 * create indexes for the columns used to filter and sort articles, partial indexes are not available before
+		 * Android 5.0 so only plain indexes are used here
+		 *
+		 * @param db current database
+		 */
+		private void createIndexes(SQLiteDatabase db) {
+			for (String sql : getIndexes()) {
+				db.execSQL(sql);
+			}
+		}
+
+		/**
+		 * @return the statements which create the indexes, see {@link #createIndexes}
+		 */
+		static List<String> getIndexes() {
+			List<String> ret = new ArrayList<>();
+			// @formatter:off
+			// unread counts and "mark as read" per feed, headline list of a feed
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_feed"
+					+ " ON " + TABLE_ARTICLES
+					+ " (feedId, isUnread, updateDate)");
+
+			// unread and fresh articles
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_unread"
+					+ " ON " + TABLE_ARTICLES
+					+ " (isUnread, updateDate)");
+
+			// headline list of all articles, purging of old articles
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_updatedate"
+					+ " ON " + TABLE_ARTICLES
+					+ " (updateDate)");
+
+			// starred and published articles
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_starred"
+					+ " ON " + TABLE_ARTICLES
+					+ " (isStarred, updateDate)");
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_published"
+					+ " ON " + TABLE_ARTICLES
+					+ " (isPublished, updateDate)");
+
+			// articles which still have to be processed by the ImageCacher
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles_by_cachedimages"
+					+ " ON " + TABLE_ARTICLES
+					+ " (cachedImages, isUnread)");
+
+			// articles of a category
+			ret.add("CREATE INDEX IF NOT EXISTS idx_feeds_by_category"
+					+ " ON " + TABLE_FEEDS
+					+ " (categoryId)");
+
+			// articles of a label, the primary key only covers lookups by article
+			ret.add("CREATE INDEX IF NOT EXISTS idx_articles2labels_by_label"
+					+ " ON " + TABLE_ARTICLES2LABELS
+					+ " (labelId, articleId)");
+
+			// remote files of an article, the primary key only covers lookups by remote file
+			ret.add("CREATE INDEX IF NOT EXISTS idx_remotefile2article_by_article"
+					+ " ON " + TABLE_REMOTEFILE2ARTICLE
+					+ " (articleId)");
+			// @formatter:on
+			return ret;
+		}
+
+		/**
+		 * create the full-text search table and the triggers which remove or update its entries together with the
+		 * articles, new entries are added in {@link DBHelper#insertArticleIntern}
+		 *
+		 * @param db current database
+		 */
+		private void createSearchTable(SQLiteDatabase db) {
+			// @formatter:off
+			db.execSQL(CREATE_TABLE_ARTICLES_FTS);
+
+			// INSERT OR REPLACE does not fire delete triggers, so drop the old entry before inserting
+			db.execSQL("CREATE TRIGGER IF NOT EXISTS articles_fts_before_insert"
+					+ " BEFORE INSERT ON " + TABLE_ARTICLES
+					+ " BEGIN"
+					+ "  DELETE FROM " + TABLE_ARTICLES_FTS + " WHERE docid=NEW._id;"
+					+ " END");
+
+			db.execSQL("CREATE TRIGGER IF NOT EXISTS articles_fts_update"
+					+ " AFTER UPDATE OF title, author ON " + TABLE_ARTICLES
+					+ " BEGIN"
+					+ "  UPDATE " + TABLE_ARTICLES_FTS + " SET title=NEW.title, author=NEW.author WHERE docid=NEW._id;"
+					+ " END");
+
+			db.execSQL("CREATE TRIGGER IF NOT EXISTS articles_fts_delete"
+					+ " AFTER DELETE ON " + TABLE_ARTICLES
+					+ " BEGIN"
+					+ "  DELETE FROM " + TABLE_ARTICLES_FTS + " WHERE docid=OLD._id;"
+					+ " END");
+			// @formatter:on
+		}
+
+		/**
+		 * create the tables for label details and attachments and the triggers which remove the attachments together
+		 * with their article
+		 *
+		 * @param db current database
+		 */
+		private void createLabelsAndAttachments(SQLiteDatabase db) {
+			db.execSQL(CREATE_TABLE_LABELS);
+			db.execSQL(CREATE_TABLE_ATTACHMENTS);
+
+			// @formatter:off
+			// INSERT OR REPLACE does not fire delete triggers, so drop the old attachments before inserting
+			db.execSQL("CREATE TRIGGER IF NOT EXISTS articles_attachments_before_insert"
+					+ " BEFORE INSERT ON " + TABLE_ARTICLES
+					+ " BEGIN"
+					+ "  DELETE FROM " + TABLE_ATTACHMENTS + " WHERE articleId=NEW._id;"
+					+ " END");
+
+			db.execSQL("CREATE TRIGGER IF NOT EXISTS articles_attachments_delete"
+					+ " AFTER DELETE ON " + TABLE_ARTICLES
+					+ " BEGIN"
+					+ "  DELETE FROM " + TABLE_ATTACHMENTS + " WHERE articleId=OLD._id;"
+					+ " END");
+			// @formatter:on
+		}
+
+		/**
+		 * Moves attachments and label details from the old string columns of the articles into their tables, only
+		 * needed when upgrading an existing database. The old format doesn't contain label IDs so they are looked up
+		 * by their caption.
+		 */
+		private void fillLabelsAndAttachments(SQLiteDatabase db) {
+			Map<String, Integer> labelIds = new HashMap<>();
+			Cursor c = null;
+			try {
+				c = db.query(TABLE_FEEDS, new String[]{"_id", "title"}, "_id<-10", null, null, null, null);
+				while (c.moveToNext()) {
+					labelIds.put(c.getString(1), c.getInt(0));
+				}
+			} finally {
+				if (c != null)
+					c.close();
+			}
+
+			SQLiteStatement insertAtt = db.compileStatement(INSERT_ATTACHMENT);
+			SQLiteStatement insertDetails = db.compileStatement(INSERT_LABEL_DETAILS);
+			try {
+				c = db.query(TABLE_ARTICLES, new String[]{"_id", "attachments", "articleLabels"}, "attachments<>'' OR articleLabels<>''", null, null, null, null);
+				while (c.moveToNext()) {
+					for (String url : parseAttachments(c.getString(1))) {
+						if (url.isEmpty())
+							continue;
+						insertAtt.bindLong(1, c.getInt(0));
+						insertAtt.bindString(2, url);
+						insertAtt.executeInsert();
+					}
+					for (Label label : parseArticleLabels(c.getString(2))) {
+						Integer id = labelIds.get(label.caption);
+						if (id == null)
+							continue;
+						insertDetails.bindLong(1, id);
+						insertDetails.bindString(2, label.caption);
+						bindStringOrNull(insertDetails, 3, label.foregroundColor);
+						bindStringOrNull(insertDetails, 4, label.backgroundColor);
+						insertDetails.executeInsert();
+					}
+				}
+			} finally {
+				if (c != null)
+					c.close();
+				insertAtt.close();
+				insertDetails.close();
+			}
+
+			ContentValues cv = new ContentValues(2);
+			cv.putNull("attachments");
+			cv.putNull("articleLabels");
+			db.update(TABLE_ARTICLES, cv, null, null);
+		}
+
+		/**
+		 * Adds all existing articles to the search index, only needed when upgrading an existing database.
+		 */
+		private void fillSearchTable(SQLiteDatabase db) {
+			Cursor c = null;
+			SQLiteStatement insert = db.compileStatement(INSERT_ARTICLE_FTS);
+			try {
+				c = db.query(TABLE_ARTICLES, new String[]{"_id", "title", "author", "content"}, null, null, null, null, null);
+				while (c.moveToNext()) {
+					insert.bindLong(1, c.getInt(0));
+					insert.bindString(2, c.isNull(1) ? "" : c.getString(1));
+					insert.bindString(3, c.isNull(2) ? "" : c.getString(2));
+					insert.bindString(4, StringSupport.stripHtml(c.getString(3)));
+					insert.executeInsert();
+				}
+			} finally {
+				if (c != null)
+					c.close();
+				insert.close();
+			}
+		}
+
+		/**
+		 * create triggers which keep the unread counters of feeds, categories, labels and the virtual categories
+		 * (except for "fresh articles" which depends on the current time) up to date when articles are inserted,
+		 * changed or deleted
+		 *
+		 * @param db current database
+		 */
+		private void createCounterTriggers(SQLiteDatabase db) {
+			for (String sql : getCounterTriggers()) {
+				db.execSQL(sql);
+			}
+		}
+
+		/**
+		 * @return the statements which (re-)create the counter triggers, see {@link #createCounterTriggers}
+		 */
+		static List<String> getCounterTriggers() {
+			List<String> ret = new ArrayList<>();
+			// @formatter:off
+			ret.add("DROP TRIGGER IF EXISTS counters_articles_before_insert");
+			ret.add("CREATE TRIGGER counters_articles_before_insert BEFORE INSERT"
+					+ " ON " + TABLE_ARTICLES
+					+ "   BEGIN"
+					// "INSERT OR REPLACE" doesn't fire the delete trigger, remove the counts for the replaced row here
+					+ counterUpdates("(SELECT _id, feedId, isUnread, isStarred, isPublished FROM " + TABLE_ARTICLES
+							+ " WHERE _id = new._id AND isUnread > 0)", "-")
+					+ "   END");
+
+			ret.add("DROP TRIGGER IF EXISTS counters_articles_insert");
+			ret.add("CREATE TRIGGER counters_articles_insert AFTER INSERT"
+					+ " ON " + TABLE_ARTICLES
+					+ " WHEN new.isUnread > 0"
+					+ "   BEGIN"
+					+ counterUpdates("(SELECT new._id AS _id, new.feedId AS feedId, new.isStarred AS isStarred,"
+							+ " new.isPublished AS isPublished)", "+")
+					+ "   END");
+
+			ret.add("DROP TRIGGER IF EXISTS counters_articles_update");
+			ret.add("CREATE TRIGGER counters_articles_update AFTER UPDATE"
+					+ " OF isUnread, isStarred, isPublished, feedId"
+					+ " ON " + TABLE_ARTICLES
+					+ " WHEN (old.isUnread > 0 OR new.isUnread > 0)"
+					+ "   AND (old.isUnread <> new.isUnread OR old.isStarred <> new.isStarred"
+					+ "	 OR old.isPublished <> new.isPublished OR old.feedId <> new.feedId)"
+					+ "   BEGIN"
+					+ counterUpdates("(SELECT old._id AS _id, old.feedId AS feedId, old.isStarred AS isStarred,"
+							+ " old.isPublished AS isPublished WHERE old.isUnread > 0)", "-")
+					+ counterUpdates("(SELECT new._id AS _id, new.feedId AS feedId, new.isStarred AS isStarred,"
+							+ " new.isPublished AS isPublished WHERE new.isUnread > 0)", "+")
+					+ "   END");
+
+			ret.add("DROP TRIGGER IF EXISTS counters_articles_delete");
+			ret.add("CREATE TRIGGER counters_articles_delete AFTER DELETE"
+					+ " ON " + TABLE_ARTICLES
+					+ " WHEN old.isUnread > 0"
+					+ "   BEGIN"
+					+ counterUpdates("(SELECT old._id AS _id, old.feedId AS feedId, old.isStarred AS isStarred,"
+							+ " old.isPublished AS isPublished)", "-")
+					+ "   END");
+
+			// labels are stored as feeds with _id < -10, their counters depend on articles2labels. Assignments are
+			// only added with INSERT OR IGNORE, so the insert trigger only fires for rows which really were added.
+			// A BEFORE INSERT trigger would also run for ignored rows, older versions had one for INSERT OR REPLACE.
+			ret.add("DROP TRIGGER IF EXISTS counters_labels_before_insert");
+
+			ret.add("DROP TRIGGER IF EXISTS counters_labels_insert");
+			ret.add("CREATE TRIGGER counters_labels_insert AFTER INSERT"
+					+ " ON " + TABLE_ARTICLES2LABELS
+					+ "   BEGIN"
+					+ "	 UPDATE " + TABLE_FEEDS + " SET unread = unread + 1"
+					+ "	   WHERE _id = new.labelId"
+					+ "	   AND EXISTS (SELECT * FROM " + TABLE_ARTICLES + " WHERE _id = new.articleId AND isUnread > 0);"
+					+ "   END");
+
+			ret.add("DROP TRIGGER IF EXISTS counters_labels_delete");
+			ret.add("CREATE TRIGGER counters_labels_delete AFTER DELETE"
+					+ " ON " + TABLE_ARTICLES2LABELS
+					+ "   BEGIN"
+					+ "	 UPDATE " + TABLE_FEEDS + " SET unread = unread - 1"
+					+ "	   WHERE _id = old.labelId"
+					+ "	   AND EXISTS (SELECT * FROM " + TABLE_ARTICLES + " WHERE _id = old.articleId AND isUnread > 0);"
+					+ "   END");
+			// @formatter:on
+			return ret;
+		}
+
+		/**
+		 * build the statements for a trigger body which add or subtract the given article from all unread counters
+		 *
+		 * @param article subquery returning the columns _id, feedId, isStarred and isPublished of the unread article
+		 *                or no row at all if nothing has to be changed
+		 * @param sign    "+" or "-"
+		 * @return the statements, each terminated by a semicolon
+		 */
+		private static String counterUpdates(String article, String sign) {
+			// @formatter:off
+			return "	 UPDATE " + TABLE_FEEDS + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id = (SELECT feedId FROM " + article + ");"
+					+ "	 UPDATE " + TABLE_CATEGORIES + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id = (SELECT categoryId FROM " + TABLE_FEEDS
+					+ "		 WHERE _id = (SELECT feedId FROM " + article + ") AND categoryId >= 0);"
+					+ "	 UPDATE " + TABLE_CATEGORIES + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id = " + Data.VCAT_ALL + " AND EXISTS " + article + ";"
+					+ "	 UPDATE " + TABLE_CATEGORIES + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id = " + Data.VCAT_PUB + " AND (SELECT isPublished FROM " + article + ") > 0;"
+					+ "	 UPDATE " + TABLE_CATEGORIES + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id = " + Data.VCAT_STAR + " AND (SELECT isStarred FROM " + article + ") > 0;"
+					+ "	 UPDATE " + TABLE_FEEDS + " SET unread = unread " + sign + " 1"
+					+ "	   WHERE _id IN (SELECT labelId FROM " + TABLE_ARTICLES2LABELS
+					+ "		 WHERE articleId = (SELECT _id FROM " + article + "));";
+			// @formatter:on
+		}
+
 	}
 
 	// *******| INSERT |*******************************************************************
@@ -713,9 +1331,10 @@ public class DBHelper {
 		Collections.sort(list);
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
+			countersInvalid = true;
 			for (int i = 0; i < list.size(); i++) {
 				Category c = list.get(i);
 				insertCategory.bindLong(1, c.id);
@@ -730,7 +1349,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -743,7 +1362,7 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
 		ContentValues cv = new ContentValues(1);
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			cv.put("icon", icon);
@@ -753,9 +1372,10 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
+		FeedIconCache.getInstance().remove(id);
 		return ret;
 	}
 
@@ -788,9 +1408,10 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
+			countersInvalid = true;
 			for (Feed f : set) {
 				insertFeed(f.id, f.categoryId, f.title, f.url, f.unread, f.icon);
 			}
@@ -799,12 +1420,47 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
+		for (Feed f : set) {
+			FeedIconCache.getInstance().remove(f.id);
+		}
 	}
 
-	private void insertArticleIntern(Article a) {
+	/**
+	 * An article together with the values which are derived from it before it is written to the DB. Deriving them is
+	 * pure CPU work, so it is done by {@link #prepareArticles(Collection)} before the write lock is taken.
+	 * <p>
+	 * {@link #prepare()} is synchronized since the writer may call it while a worker of an interrupted
+	 * {@link #prepareArticles(Collection)} is still busy with the same article. The writer then waits for the worker
+	 * and always sees both fields set.
+	 */
+	private static class PreparedArticle {
+		final Article article;
+		// false if the server didn't send the labels of the article, its stored labels are kept then
+		final boolean hasLabels;
+		String title;
+		String text;
+
+		PreparedArticle(Article article) {
+			this.article = article;
+			this.hasLabels = article.labels != null;
+		}
+
+		synchronized void prepare() {
+			if (title != null)
+				return;
+			Article a = article;
+			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N)
+				title = Html.fromHtml(a.title).toString();
+			else
+				title = Html.fromHtml(a.title, Html.FROM_HTML_MODE_COMPACT).toString();
+			text = StringSupport.stripHtml(a.content);
+		}
+	}
+
+	private static void applyDefaults(Article a) {
 		if (a.title == null)
 			a.title = "";
 		if (a.content == null)
@@ -823,67 +1479,284 @@ public class DBHelper {
 			a.author = "";
 		if (a.note == null)
 			a.note = "";
+	}
+
+	/**
+	 * Derive title and plain text of all articles which are new or have changed on the server, spread over all
+	 * cores. Articles which are already stored in the same version are left out since only their state is written.
+	 * If preparing is interrupted the remaining articles are prepared while they are written.
+	 */
+	private List<PreparedArticle> prepareArticles(Collection<Article> articles) {
+		final List<PreparedArticle> rows = new ArrayList<>(articles.size());
+		IntSet ids = new IntSet(articles.size());
+		for (Article a : articles) {
+			rows.add(new PreparedArticle(a));
+			applyDefaults(a);
+			ids.add(a.id);
+		}
+
+		IntLongMap stored = getArticleIdUpdatedMap("_id IN (" + ids.join(",") + ")");
+		final List<PreparedArticle> pending = new ArrayList<>(rows.size());
+		for (PreparedArticle row : rows) {
+			long updateDate = stored == null ? -1 : stored.get(row.article.id, -1);
+			if (updateDate == -1 || updateDate < row.article.updated.getTime())
+				pending.add(row);
+		}
+
+		int slices = Math.min(PREPARE_THREADS, pending.size());
+		if (slices <= 1) {
+			for (PreparedArticle row : pending) {
+				row.prepare();
+			}
+			return rows;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>(slices);
+		for (int i = 0; i < slices; i++) {
+			final int slice = i;
+			final int sliceCount = slices;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int j = slice; j < pending.size(); j += sliceCount) {
+						pending.get(j).prepare();
+					}
+					return null;
+				}
+			});
+		}
 
-		// articleLabels
-		long retId;
+		try {
+			prepareExecutor.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return rows;
+	}
+
+	/**
+	 * Insert the article if it doesn't exist yet. Existing articles are only rewritten if the server sent a newer
+	 * version, otherwise only changed state flags are written and unchanged articles are skipped completely.
+	 *
+	 * @return one of {@link UpsertResult#INSERTED}, {@link UpsertResult#UPDATED} or {@link UpsertResult#SKIPPED}
+	 */
+	private int insertArticleIntern(PreparedArticle row) {
+		if (!isDBAvailable())
+			return UpsertResult.SKIPPED;
+
+		Article a = row.article;
+		long storedUpdateDate;
 		synchronized (insertArticleLock) {
-			insertArticle.bindLong(1, a.id);
-			insertArticle.bindLong(2, a.feedId);
+			selectArticleUpdateDate.bindLong(1, a.id);
+			try {
+				storedUpdateDate = selectArticleUpdateDate.simpleQueryForLong();
+			} catch (SQLiteDoneException e) {
+				storedUpdateDate = -1;
+			}
+		}
 
-			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N)
-				insertArticle.bindString(3, Html.fromHtml(a.title).toString());
-			else
-				insertArticle.bindString(3, Html.fromHtml(a.title, Html.FROM_HTML_MODE_COMPACT).toString());
+		int result;
+		if (storedUpdateDate == -1) {
+			insertNewArticle(row);
+			result = UpsertResult.INSERTED;
+		} else if (storedUpdateDate < a.updated.getTime()) {
+			updateChangedArticle(row);
+			result = UpsertResult.UPDATED;
+		} else {
+			result = updateArticleState(a) ? UpsertResult.UPDATED : UpsertResult.SKIPPED;
+		}
+
+		// The labels are the only state which can change without touching the article, so they are replaced for
+		// every stored article the server sent them for
+		if (storedUpdateDate != -1 && row.hasLabels)
+			removeOtherLabels(a.id, a.labels);
+		insertLabels(a.id, a.labels);
+		return result;
+	}
 
+	private void insertNewArticle(PreparedArticle row) {
+		// Only does something if the article was inserted after prepareArticles() looked at it
+		row.prepare();
+		Article a = row.article;
+
+		synchronized (insertArticleLock) {
+			insertArticle.bindLong(1, a.id);
+			insertArticle.bindLong(2, a.feedId);
+			insertArticle.bindString(3, row.title);
 			insertArticle.bindLong(4, (a.isUnread ? 1 : 0));
 			insertArticle.bindString(5, a.url);
 			insertArticle.bindString(6, a.commentUrl);
 			insertArticle.bindLong(7, a.updated.getTime());
 			insertArticle.bindString(8, a.content);
-			insertArticle.bindString(9, Utils.separateItems(a.attachments, ";"));
-			insertArticle.bindLong(10, (a.isStarred ? 1 : 0));
-			insertArticle.bindLong(11, (a.isPublished ? 1 : 0));
-			insertArticle.bindLong(12, a.id); // ID again for the where-clause
-			insertArticle.bindString(13, Utils.separateItems(a.labels, "---"));
-			insertArticle.bindString(14, a.author);
-			insertArticle.bindString(15, a.note);
+			insertArticle.bindLong(9, (a.isStarred ? 1 : 0));
+			insertArticle.bindLong(10, (a.isPublished ? 1 : 0));
+			insertArticle.bindString(11, a.author);
+			insertArticle.bindString(12, a.note);
+			insertArticle.executeInsert();
 
-			if (!isDBAvailable())
-				return;
-			retId = insertArticle.executeInsert();
+			insertArticleFts.bindLong(1, a.id);
+			insertArticleFts.bindString(2, row.title);
+			insertArticleFts.bindString(3, a.author);
+			insertArticleFts.bindString(4, row.text);
+			insertArticleFts.executeInsert();
 		}
 
-		if (retId != -1)
-			insertLabels(a.id, a.labels);
+		insertAttachments(a.id, a.attachments);
+	}
+
+	private void updateChangedArticle(PreparedArticle row) {
+		row.prepare();
+		Article a = row.article;
+
+		synchronized (insertArticleLock) {
+			updateArticle.bindLong(1, a.feedId);
+			updateArticle.bindString(2, row.title);
+			updateArticle.bindLong(3, (a.isUnread ? 1 : 0));
+			updateArticle.bindString(4, a.url);
+			updateArticle.bindString(5, a.commentUrl);
+			updateArticle.bindLong(6, a.updated.getTime());
+			updateArticle.bindString(7, a.content);
+			updateArticle.bindLong(8, (a.isStarred ? 1 : 0));
+			updateArticle.bindLong(9, (a.isPublished ? 1 : 0));
+			updateArticle.bindString(10, a.author);
+			updateArticle.bindString(11, a.note);
+			updateArticle.bindLong(12, a.id);
+			updateArticle.executeUpdateDelete();
+
+			updateArticleFts.bindString(1, row.title);
+			updateArticleFts.bindString(2, a.author);
+			updateArticleFts.bindString(3, row.text);
+			updateArticleFts.bindLong(4, a.id);
+			updateArticleFts.executeUpdateDelete();
+
+			deleteAttachments.bindLong(1, a.id);
+			deleteAttachments.executeUpdateDelete();
+		}
+
+		insertAttachments(a.id, a.attachments);
+	}
+
+	/**
+	 * @return {@code true} if the state of the article differed from the stored state
+	 */
+	private boolean updateArticleState(Article a) {
+		synchronized (insertArticleLock) {
+			updateArticleState.bindLong(1, (a.isUnread ? 1 : 0));
+			updateArticleState.bindLong(2, (a.isStarred ? 1 : 0));
+			updateArticleState.bindLong(3, (a.isPublished ? 1 : 0));
+			updateArticleState.bindString(4, a.note);
+			updateArticleState.bindLong(5, a.id);
+			return updateArticleState.executeUpdateDelete() > 0;
+		}
 	}
 
-	void insertArticles(Collection<Article> articles) {
+	/**
+	 * write the given articles to the DB in one transaction
+	 *
+	 * @return amounts of inserted, updated and skipped articles
+	 */
+	UpsertResult insertArticles(Collection<Article> articles) {
+		UpsertResult result = new UpsertResult();
 		if (!isDBAvailable() || articles == null || articles.isEmpty())
-			return;
+			return result;
+
+		// Everything which doesn't need the DB is done before taking the lock
+		List<PreparedArticle> rows = prepareArticles(articles);
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
-			for (Article a : articles) {
-				insertArticleIntern(a);
+			for (PreparedArticle row : rows) {
+				result.add(insertArticleIntern(row));
 			}
 			db.setTransactionSuccessful();
 		} finally {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts what happened to the articles handed to {@link #insertArticles(Collection)}.
+	 */
+	static class UpsertResult {
+		static final int INSERTED = 0;
+		static final int UPDATED = 1;
+		static final int SKIPPED = 2;
+
+		int inserted = 0;
+		int updated = 0;
+		int skipped = 0;
+
+		void add(int result) {
+			switch (result) {
+				case INSERTED:
+					inserted++;
+					break;
+				case UPDATED:
+					updated++;
+					break;
+				default:
+					skipped++;
+			}
+		}
+
+		void add(UpsertResult other) {
+			inserted += other.inserted;
+			updated += other.updated;
+			skipped += other.skipped;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s inserted, %s updated, %s skipped", inserted, updated, skipped);
+		}
+	}
+
+	private void insertAttachments(int articleId, Set<String> attachments) {
+		synchronized (insertArticleLock) {
+			for (String url : attachments) {
+				if (url == null || url.isEmpty())
+					continue;
+				insertAttachment.bindLong(1, articleId);
+				insertAttachment.bindString(2, url);
+				insertAttachment.executeInsert();
 			}
 		}
 	}
 
 	private void insertLabels(int articleId, Set<Label> labels) {
 		for (Label label : labels) {
+			insertLabelDetails(label);
 			insertLabel(articleId, label);
 		}
 	}
 
+	private void insertLabelDetails(Label label) {
+		if (!isDBAvailable() || label.id >= -10 || label.caption == null)
+			return;
+
+		synchronized (insertLabelLock) {
+			insertLabelDetails.bindLong(1, label.id);
+			insertLabelDetails.bindString(2, label.caption);
+			bindStringOrNull(insertLabelDetails, 3, label.foregroundColor);
+			bindStringOrNull(insertLabelDetails, 4, label.backgroundColor);
+			insertLabelDetails.executeInsert();
+		}
+	}
+
+	private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+		if (value == null)
+			statement.bindNull(index);
+		else
+			statement.bindString(index, value);
+	}
+
 	private void insertLabel(int articleId, Label label) {
 		if (!isDBAvailable())
 			return;
@@ -897,6 +1770,31 @@ public class DBHelper {
 		}
 	}
 
+	/**
+	 * Removes all assignments of the article to labels which are not in the given set. Must be called with the write
+	 * lock held, the delete trigger keeps the label counters up to date.
+	 */
+	private void removeOtherLabels(int articleId, Set<Label> labels) {
+		getOpenHelper().getWritableDatabase().delete(TABLE_ARTICLES2LABELS, otherLabelsSelection(articleId, labels), null);
+	}
+
+	/**
+	 * @return WHERE clause for articles2labels matching the assignments of the article to all labels except the given
+	 */
+	static String otherLabelsSelection(int articleId, Set<Label> labels) {
+		StringBuilder where = new StringBuilder("articleId=").append(articleId);
+		boolean first = true;
+		for (Label label : labels) {
+			if (label.id >= -10)
+				continue;
+			where.append(first ? " AND labelId NOT IN (" : ",").append(label.id);
+			first = false;
+		}
+		if (!first)
+			where.append(")");
+		return where.toString();
+	}
+
 	private void removeLabel(int articleId, Label label) {
 		if (!isDBAvailable())
 			return;
@@ -905,11 +1803,11 @@ public class DBHelper {
 			String[] args = new String[]{articleId + "", label.id + ""};
 
 			SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-			write.lock();
+			lock.lockWrite();
 			try {
 				db.delete(TABLE_ARTICLES2LABELS, "articleId=? AND labelId=?", args);
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1021,7 +1919,7 @@ public class DBHelper {
 
 		Cursor c = null;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
-		read.lock();
+		lock.lockRead();
 		try {
 			// select id from articles where categoryId in (...)
 			c = db.query(TABLE_ARTICLES, new String[]{"_id"}, where.toString(), null, null, null, null);
@@ -1036,7 +1934,7 @@ public class DBHelper {
 
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 
 		if (ret != null && !ret.isEmpty()) {
@@ -1054,24 +1952,45 @@ public class DBHelper {
 	 * @param state  value for the mark
 	 */
 	public void markArticles(Set<Integer> idList, String mark, int state) {
-		if (!isDBAvailable())
+		markArticles(StringSupport.convertListToString(idList, 400), mark, state);
+	}
+
+	/**
+	 * mark given property of given articles with given state
+	 *
+	 * @param idList set of article IDs, which should be processed
+	 * @param mark   mark to be set
+	 * @param state  value for the mark
+	 */
+	public void markArticles(IntSet idList, String mark, int state) {
+		if (idList != null)
+			markArticles(idList.join(",", 400), mark, state);
+	}
+
+	/**
+	 * mark given property of given articles with given state in one transaction
+	 *
+	 * @param idChunks comma-separated article IDs, split into chunks which fit into one statement
+	 * @param mark     mark to be set
+	 * @param state    value for the mark
+	 */
+	private void markArticles(List<String> idChunks, String mark, int state) {
+		if (!isDBAvailable() || idChunks.isEmpty())
 			return;
 
-		if (idList != null && !idList.isEmpty()) {
-			SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-			write.lock();
+		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
+		lock.lockWrite();
+		try {
+			db.beginTransaction();
+			for (String ids : idChunks) {
+				markArticles(ids, mark, "" + state);
+			}
+			db.setTransactionSuccessful();
+		} finally {
 			try {
-				db.beginTransaction();
-				for (String ids : StringSupport.convertListToString(idList, 400)) {
-					markArticles(ids, mark, "" + state);
-				}
-				db.setTransactionSuccessful();
+				db.endTransaction();
 			} finally {
-				try {
-					db.endTransaction();
-				} finally {
-					write.unlock();
-				}
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1088,7 +2007,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			markArticles("" + id, mark, "" + state);
@@ -1097,7 +2016,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1113,7 +2032,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			markArticles("" + id, "note", note);
@@ -1122,7 +2041,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1144,7 +2063,7 @@ public class DBHelper {
 		cv.put(mark, state);
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			ret = db.update(TABLE_ARTICLES, cv, "_id IN (" + idList + ") AND ? != ?", new String[]{mark, String.valueOf(state)});
@@ -1153,33 +2072,58 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 
 		return ret;
 	}
 
+	/**
+	 * write the read state of all articles which still have an unsent read state in the outbox back to the articles,
+	 * for use after the read state of all articles has been replaced with data from the server
+	 */
+	void restoreUnsynchronizedReadStates() {
+		if (!isDBAvailable())
+			return;
+
+		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
+		lock.lockWrite();
+		try {
+			db.execSQL(RESTORE_UNSYNCHRONIZED_READ_STATES);
+		} finally {
+			lock.unlockWrite();
+		}
+	}
+
 	void markUnsynchronizedStates(Collection<Integer> ids, String mark, int state) {
 		if (!isDBAvailable())
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
+			// First update, then insert. If row exists it gets updated and second call ignores it, else the second
+			// call inserts it. The latest state always wins so repeated changes of one article collapse into one entry.
+			SQLiteStatement update = db.compileStatement(String.format("UPDATE %s SET %s=? WHERE id=?", TABLE_MARK, mark));
+			SQLiteStatement insert = db.compileStatement(String.format("INSERT OR IGNORE INTO %s (id, %s) VALUES (?, ?)", TABLE_MARK, mark));
 			for (Integer id : ids) {
-				// First update, then insert. If row exists it gets updated and second call ignores it, else the second
-				// call inserts it.
-				db.execSQL(String.format("UPDATE %s SET %s=%s WHERE id=%s", TABLE_MARK, mark, state, id));
-				db.execSQL(String.format("INSERT OR IGNORE INTO %s (id, %s) VALUES (%s, %s)", TABLE_MARK, mark, id, state));
-			}
+				update.bindLong(1, state);
+				update.bindLong(2, id);
+				update.execute();
+				insert.bindLong(1, id);
+				insert.bindLong(2, state);
+				insert.execute();
+			}
+			update.close();
+			insert.close();
 			db.setTransactionSuccessful();
 		} finally {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1191,7 +2135,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			for (Map.Entry<Integer, String> entry : ids.entrySet()) {
@@ -1200,140 +2144,83 @@ public class DBHelper {
 				ContentValues cv = new ContentValues(2);
 				cv.put("_id", entry.getKey());
 				cv.put(COL_NOTE, entry.getValue());
-				db.insert(TABLE_NOTES, null, cv);
+				// Replace an older note which has not been sent yet
+				db.insertWithOnConflict(TABLE_NOTES, null, cv, SQLiteDatabase.CONFLICT_REPLACE);
 			}
 			db.setTransactionSuccessful();
 		} finally {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
 
 	/**
-	 * Set unread counters for feeds and categories according to real amount of unread articles. Split up the tasks in
-	 * single transactions so we can do other work in between.
+	 * Bring the unread counters up to date. Counters of feeds, categories, labels and most virtual categories are
+	 * maintained by triggers, so usually only the counter for fresh articles has to be refreshed since it depends on
+	 * the current time. A full recalculation is only done if feeds or categories have been replaced with data from the
+	 * server or if the last check is older than {@link Utils#COUNTER_CHECK_TIME}.
 	 */
 	void calculateCounters() {
 		if (!isDBAvailable())
 			return;
 
-		long time = System.currentTimeMillis();
-		int total = 0;
-
-		write.lock();
-		try {
-			countResetFeedsAndCategories();
-			total += countFeedsWithUnread();
-			countCategoriesWithUnread();
-			countSpecialCategories(total);
-		} finally {
-			write.unlock();
+		if (countersInvalid || lastCounterCheck < System.currentTimeMillis() - Utils.COUNTER_CHECK_TIME) {
+			recalculateCounters();
+			return;
 		}
 
-		Log.i(TAG, String.format("Recalculated counters, total unread: %s (took %sms)", total, (System.currentTimeMillis() - time)));
-	}
-
-	/**
-	 * First of all, reset all feeds and all categories to unread=0.
-	 */
-	private void countResetFeedsAndCategories() {
 		final SQLiteDatabase db = getOpenHelper().getWritableDatabase();
+		lock.lockWrite();
 		try {
-			db.beginTransaction();
 			final ContentValues cv = new ContentValues(1);
-			cv.put(COL_UNREAD, 0);
-			db.update(TABLE_FEEDS, cv, null, null);
-			db.update(TABLE_CATEGORIES, cv, null, null);
-			db.setTransactionSuccessful();
+			cv.put(COL_UNREAD, getUnreadCount(Data.VCAT_FRESH, true));
+			db.update(TABLE_CATEGORIES, cv, "_id=" + Data.VCAT_FRESH, null);
 		} finally {
-			db.endTransaction();
+			lock.unlockWrite();
 		}
 	}
 
 	/**
-	 * Count all feeds where unread articles exist.
-	 *
-	 * @return the number of overall unread articles
+	 * Set unread counters for feeds, labels and categories according to real amount of unread articles. Every table is
+	 * updated with a single statement, all of them in one transaction.
 	 */
-	private int countFeedsWithUnread() {
+	private void recalculateCounters() {
+		long time = System.currentTimeMillis();
+		long freshSince = time - Controller.getInstance().getFreshArticleMaxAge();
 		int total = 0;
-		Cursor c = null;
-		final SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		try {
-			db.beginTransaction();
-			final ContentValues cv = new ContentValues(1);
-			c = db.query(TABLE_ARTICLES, new String[]{"feedId", "count(*)"}, "isUnread>0", null, "feedId", null, null, null);
-
-			// update feeds
-			while (c.moveToNext()) {
-				int feedId = c.getInt(0);
-				int unreadCount = c.getInt(1);
-				total += unreadCount;
 
-				cv.put(COL_UNREAD, unreadCount);
-				db.update(TABLE_FEEDS, cv, "_id=" + feedId, null);
-			}
-			db.setTransactionSuccessful();
-		} finally {
-			if (c != null && !c.isClosed())
-				c.close();
-			db.endTransaction();
-		}
-		return total;
-	}
-
-	/**
-	 * Count all categories where feeds with unread articles exist.
-	 */
-	private void countCategoriesWithUnread() {
-		Cursor c = null;
 		final SQLiteDatabase db = getOpenHelper().getWritableDatabase();
+		Cursor c = null;
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
-			final ContentValues cv = new ContentValues(1);
-			c = db.query(TABLE_FEEDS, new String[]{"categoryId", "sum(unread)"}, "categoryId>=0", null, "categoryId", null, null, null);
+			// Reset before counting so changes made while we are counting invalidate the result again
+			countersInvalid = false;
 
-			// update real categories
-			while (c.moveToNext()) {
-				int categoryId = c.getInt(0);
-				int unreadCount = c.getInt(1);
+			db.execSQL(RECALCULATE_FEEDS);
+			db.execSQL(RECALCULATE_LABELS);
+			db.execSQL(RECALCULATE_CATEGORIES);
+			db.execSQL(RECALCULATE_VIRTUAL_CATEGORIES, new Object[]{freshSince});
+
+			c = db.rawQuery("SELECT " + COL_UNREAD + " FROM " + TABLE_CATEGORIES + " WHERE _id=" + Data.VCAT_ALL, null);
+			if (c.moveToFirst())
+				total = c.getInt(0);
 
-				cv.put(COL_UNREAD, unreadCount);
-				db.update(TABLE_CATEGORIES, cv, "_id=" + categoryId, null);
-			}
 			db.setTransactionSuccessful();
+			lastCounterCheck = System.currentTimeMillis();
 		} finally {
 			close(c);
-			db.endTransaction();
+			try {
+				db.endTransaction();
+			} finally {
+				lock.unlockWrite();
+			}
 		}
-	}
-
-	/**
-	 * Count special categories.
-	 */
-	private void countSpecialCategories(final int total) {
-		final SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		try {
-			db.beginTransaction();
-			final ContentValues cv = new ContentValues(1);
-			cv.put(COL_UNREAD, total);
-			db.update(TABLE_CATEGORIES, cv, "_id=" + Data.VCAT_ALL, null);
-
-			cv.put(COL_UNREAD, getUnreadCount(Data.VCAT_FRESH, true));
-			db.update(TABLE_CATEGORIES, cv, "_id=" + Data.VCAT_FRESH, null);
 
-			cv.put(COL_UNREAD, getUnreadCount(Data.VCAT_PUB, true));
-			db.update(TABLE_CATEGORIES, cv, "_id=" + Data.VCAT_PUB, null);
-
-			cv.put(COL_UNREAD, getUnreadCount(Data.VCAT_STAR, true));
-			db.update(TABLE_CATEGORIES, cv, "_id=" + Data.VCAT_STAR, null);
-			db.setTransactionSuccessful();
-		} finally {
-			db.endTransaction();
-		}
+		Log.i(TAG, String.format("Recalculated counters, total unread: %s (took %sms)", total, (System.currentTimeMillis() - time)));
 	}
 
 	/**
@@ -1354,11 +2241,11 @@ public class DBHelper {
 			cv.put("cachedImages", filesCount);
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.update(TABLE_ARTICLES, cv, "_id=?", new String[]{String.valueOf(id)});
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
 	}
 
@@ -1371,11 +2258,12 @@ public class DBHelper {
 			wherePart = "_id > 0";
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
+			countersInvalid = true;
 			db.delete(TABLE_CATEGORIES, wherePart, null);
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
 	}
 
@@ -1387,12 +2275,14 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
+			countersInvalid = true;
 			db.delete(TABLE_FEEDS, null, null);
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
+		FeedIconCache.getInstance().clear();
 	}
 
 	/**
@@ -1410,22 +2300,6 @@ public class DBHelper {
 	private int safelyDeleteArticles(String whereClause, String[] whereArgs) {
 		int deletedCount;
 
-		Collection<RemoteFile> rfs = getRemoteFilesForArticles(whereClause, whereArgs, true);
-		if (rfs != null && !rfs.isEmpty()) {
-			Set<Integer> rfIds = new HashSet<>(rfs.size());
-			for (RemoteFile rf : rfs) {
-				rfIds.add(rf.id);
-				ImageCache imageCache = Controller.getInstance().getImageCache();
-				if (imageCache != null) {
-					File file = imageCache.getCacheFile(rf.url);
-					boolean deleted = file.delete();
-					if (!deleted)
-						Log.e(TAG, "Couldn't delete file: " + file.getAbsolutePath());
-				}
-			}
-			deleteRemoteFiles(rfIds);
-		}
-
 		// @formatter:off
 		StringBuilder query = new StringBuilder();
 		query.append(
@@ -1439,7 +2313,7 @@ public class DBHelper {
 		// @formatter:on
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			// first, delete article referencies from linking table to preserve foreign key constraint on the next step
@@ -1452,28 +2326,124 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 
+		// files which were only referenced by the deleted articles are not needed anymore
+		purgeOrphanedRemoteFiles();
+
 		return deletedCount;
 	}
 
 	/**
-	 * Delete given amount of last updated articles from DB. Published and Starred articles are ignored
-	 * so the configured limit is not an exact upper limit to the number of articles in the database.
+	 * Determine the {@code updateDate} of the oldest article which is kept, all articles updated before it are purged.
+	 * Published and starred articles are never purged and therefore not counted. The index on {@code updateDate} is
+	 * walked from the newest article so the table doesn't have to be sorted.
+	 * <p>
+	 * Exactly {@code keep} articles remain unless older articles have the same {@code updateDate} as the last kept
+	 * one, these are kept as well.
 	 *
-	 * @param amountToPurge amount of articles to be purged
+	 * @param feedId the feed to look at or {@code null} for all articles
+	 * @param keep   amount of articles to keep, at least 1
+	 * @return the watermark or {@code -1} if there are less than {@code keep} articles
 	 */
-	void purgeLastArticles(int amountToPurge) {
+	long getRetentionWatermark(Integer feedId, int keep) {
 		if (!isDBAvailable())
-			return;
+			return -1;
 
-		long time = System.currentTimeMillis();
-		String query = "_id IN ( SELECT _id FROM " + TABLE_ARTICLES + " WHERE isPublished=0 AND isStarred=0 ORDER BY updateDate DESC LIMIT -1 OFFSET " + (Utils.ARTICLE_LIMIT - amountToPurge + ")");
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.rawQuery(getRetentionWatermarkQuery(feedId, keep), null);
+			if (c.moveToFirst())
+				return c.getLong(0);
+			return -1;
+		} finally {
+			close(c);
+			lock.unlockRead();
+		}
+	}
+
+	/**
+	 * @return query for the watermark of {@link #getRetentionWatermark(Integer, int)}, its result is empty if there
+	 * are less than {@code keep} articles
+	 */
+	static String getRetentionWatermarkQuery(Integer feedId, int keep) {
+		// The newest article has offset 0, so the last one to keep has offset keep-1
+		return "SELECT updateDate FROM " + TABLE_ARTICLES + " WHERE " + getRetentionSelection(feedId)
+				+ " ORDER BY updateDate DESC LIMIT 1 OFFSET " + (keep - 1);
+	}
+
+	/**
+	 * @return WHERE clause for the articles which are subject to purging, published and starred articles are kept
+	 */
+	static String getRetentionSelection(Integer feedId) {
+		String where = "isPublished=0 AND isStarred=0";
+		if (feedId != null)
+			where += " AND feedId=" + feedId;
+		return where;
+	}
+
+	/**
+	 * @param limit maximum amount of articles per feed
+	 * @return IDs of all feeds with more than {@code limit} articles which are neither published nor starred
+	 */
+	Set<Integer> getFeedsExceedingLimit(int limit) {
+		Set<Integer> ret = new HashSet<>();
+		if (!isDBAvailable())
+			return ret;
+
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.query(TABLE_ARTICLES, new String[]{"feedId"}, "isPublished=0 AND isStarred=0", null, "feedId", "count(*)>" + limit, null);
+			while (c.moveToNext()) {
+				ret.add(c.getInt(0));
+			}
+		} finally {
+			close(c);
+			lock.unlockRead();
+		}
+		return ret;
+	}
+
+	/**
+	 * Delete at most {@code limit} articles which were last updated before the given watermark, including their
+	 * remote files. Published and starred articles are ignored. The IDs are fetched first so all following steps work
+	 * on the same set of articles and the write lock is only held for one small chunk.
+	 *
+	 * @param feedId    the feed to purge or {@code null} for all articles
+	 * @param watermark articles with an {@code updateDate} below this value are deleted
+	 * @param limit     maximum amount of articles to delete
+	 * @return the number of deleted articles
+	 */
+	int purgeArticlesBefore(Integer feedId, long watermark, int limit) {
+		if (!isDBAvailable())
+			return 0;
+
+		String where = getRetentionSelection(feedId) + " AND updateDate<" + watermark;
+
+		Set<Integer> ids = new HashSet<>();
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.query(TABLE_ARTICLES, new String[]{"_id"}, where, null, null, null, null, String.valueOf(limit));
+			while (c.moveToNext()) {
+				ids.add(c.getInt(0));
+			}
+		} finally {
+			close(c);
+			lock.unlockRead();
+		}
 
-		safelyDeleteArticles(query, null);
-		Log.d(TAG, "purgeLastArticles took " + (System.currentTimeMillis() - time) + "ms");
+		if (ids.isEmpty())
+			return 0;
+
+		return safelyDeleteArticles("_id IN (" + Utils.separateItems(ids, ",") + ")", null);
 	}
 
 	/**
@@ -1505,12 +2475,12 @@ public class DBHelper {
 		// @formatter:on
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.delete(TABLE_ARTICLES2LABELS, "articleId IN(" + idsArticles + ")", null);
 			db.delete(TABLE_ARTICLES2LABELS, "labelId IN(" + idsFeeds + ")", null);
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
 	}
 
@@ -1523,13 +2493,15 @@ public class DBHelper {
 		cv.put(vcat, 0);
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
-			int count = db.update(TABLE_ARTICLES, cv, vcat + ">0 AND _id>" + minId + " AND _id NOT IN (" + idList + ")", null);
+			// Articles the user (un)marked locally keep their state until the outbox has been sent
+			int count = db.update(TABLE_ARTICLES, cv, vcat + ">0 AND _id>" + minId + " AND _id NOT IN (" + idList + ")"
+					+ " AND _id NOT IN (SELECT id FROM " + TABLE_MARK + " WHERE " + vcat + " IS NOT NULL)", null);
 			long timeDiff = (System.currentTimeMillis() - time);
 			Log.d(TAG, String.format("Marked %s articles %s=0 (%s ms)", count, vcat, timeDiff));
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
 	}
 
@@ -1542,14 +2514,14 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_ARTICLES, null, "_id=?", new String[]{id + ""}, null, null, null, null);
 			if (c.moveToFirst())
 				ret = handleArticleCursor(c);
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 
 		return ret;
@@ -1571,7 +2543,7 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.rawQuery(sql, null);
 			Set<Label> ret = new HashSet<>(c.getCount());
@@ -1586,8 +2558,72 @@ public class DBHelper {
 
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
+		}
+	}
+
+	/**
+	 * @param articleId the article
+	 * @return the attachment URLs of the article in the order they were received
+	 */
+	public Set<String> getAttachments(int articleId) {
+		Set<String> ret = new LinkedHashSet<>();
+		if (!isDBAvailable())
+			return ret;
+
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.query(TABLE_ATTACHMENTS, new String[]{"url"}, "articleId=?", new String[]{articleId + ""}, null, null, "rowid");
+			while (c.moveToNext()) {
+				ret.add(c.getString(0));
+			}
+		} finally {
+			close(c);
+			lock.unlockRead();
+		}
+		return ret;
+	}
+
+	/**
+	 * @param articleId the article
+	 * @return the labels which are assigned to the article including their colors if known
+	 */
+	public Set<Label> getAssignedLabels(int articleId) {
+		Set<Label> ret = new LinkedHashSet<>();
+		if (!isDBAvailable())
+			return ret;
+
+		// @formatter:off
+		String sql = "SELECT a2l.labelId, coalesce(l.caption, f.title), l.foregroundColor, l.backgroundColor"
+				+ " FROM " + TABLE_ARTICLES2LABELS + " a2l"
+				+ " LEFT OUTER JOIN " + TABLE_LABELS + " l ON l._id = a2l.labelId"
+				+ " LEFT OUTER JOIN " + TABLE_FEEDS + " f ON f._id = a2l.labelId"
+				+ " WHERE a2l.articleId = ?";
+		// @formatter:on
+
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.rawQuery(sql, new String[]{articleId + ""});
+			while (c.moveToNext()) {
+				if (c.isNull(1))
+					continue;
+				Label label = new Label();
+				label.id = c.getInt(0);
+				label.caption = c.getString(1);
+				label.foregroundColor = c.getString(2);
+				label.backgroundColor = c.getString(3);
+				label.checked = true;
+				ret.add(label);
+			}
+		} finally {
+			close(c);
+			lock.unlockRead();
 		}
+		return ret;
 	}
 
 	public Feed getFeed(int id) {
@@ -1597,19 +2633,41 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_FEEDS, null, "_id=?", new String[]{id + ""}, null, null, null, null);
 			if (c.moveToFirst())
 				ret = handleFeedCursor(c);
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 
 		return ret;
 	}
 
+	/**
+	 * @return only the icon of the given feed or null if there is none
+	 */
+	public byte[] getFeedIcon(int id) {
+		if (!isDBAvailable())
+			return null;
+
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.query(TABLE_FEEDS, new String[]{"icon"}, "_id=?", new String[]{id + ""}, null, null, null, null);
+			if (c.moveToFirst() && !c.isNull(0))
+				return c.getBlob(0);
+		} finally {
+			close(c);
+			lock.unlockRead();
+		}
+
+		return null;
+	}
+
 	public Category getCategory(int id) {
 		Category ret = new Category();
 		if (!isDBAvailable())
@@ -1617,14 +2675,14 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_CATEGORIES, null, "_id=?", new String[]{id + ""}, null, null, null, null);
 			if (c.moveToFirst())
 				ret = handleCategoryCursor(c);
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 
 		return ret;
@@ -1643,7 +2701,7 @@ public class DBHelper {
 		}
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			String selection;
 			if (includeVirtual) {
@@ -1664,7 +2722,7 @@ public class DBHelper {
 			return Collections.emptyList();
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
@@ -1679,7 +2737,7 @@ public class DBHelper {
 		}
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			if (includeRead) {
 				c = db.query(TABLE_FEEDS, CATEGORIES_COLUMNS, " _id < -10 ", null, null, null, null, null);
@@ -1696,7 +2754,7 @@ public class DBHelper {
 			return Collections.emptyList();
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
@@ -1707,24 +2765,23 @@ public class DBHelper {
 	 *                  (excluding the WHERE itself). Passing null will return all rows.
 	 * @return map of unread article IDs to its update date (may be {@code null})
 	 */
-	@SuppressLint("UseSparseArrays")
-	public Map<Integer, Long> getArticleIdUpdatedMap(String selection) {
-		Map<Integer, Long> ret;
+	public IntLongMap getArticleIdUpdatedMap(String selection) {
+		IntLongMap ret;
 		if (!isDBAvailable())
 			return null;
 
 		Cursor c = null;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_ARTICLES, new String[]{"_id", "updateDate"}, selection, null, null, null, null);
-			ret = new HashMap<>(c.getCount());
+			ret = new IntLongMap(c.getCount());
 			while (c.moveToNext()) {
 				ret.put(c.getInt(0), c.getLong(1));
 			}
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 		return ret;
 	}
@@ -1760,7 +2817,7 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_FEEDS, null, where, null, null, null, "UPPER(title) ASC");
 			Set<Feed> ret = new LinkedHashSet<>(c.getCount());
@@ -1770,7 +2827,7 @@ public class DBHelper {
 			return ret;
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
@@ -1780,7 +2837,7 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_CATEGORIES, null, "_id>=0", null, null, null, "title ASC");
 			Set<Category> ret = new LinkedHashSet<>(c.getCount());
@@ -1790,7 +2847,7 @@ public class DBHelper {
 			return ret;
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
@@ -1845,7 +2902,7 @@ public class DBHelper {
 		int ret = 0;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_ARTICLES, new String[]{"count(*)"}, selection.toString(), selectionArgs, null, null, null, null);
 
@@ -1853,20 +2910,19 @@ public class DBHelper {
 				ret = c.getInt(0);
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 
 		return ret;
 	}
 
-	@SuppressLint("UseSparseArrays")
 	Set<Integer> getMarked(String mark, int status) {
 		if (!isDBAvailable())
 			return new LinkedHashSet<>();
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_MARK, new String[]{"id"}, mark + "=" + status, null, null, null, null, null);
 			Set<Integer> ret = new LinkedHashSet<>(c.getCount());
@@ -1876,7 +2932,26 @@ public class DBHelper {
 			return ret;
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
+		}
+	}
+
+	/**
+	 * @return true if there are status changes or notes which have not been sent to the server yet
+	 */
+	boolean hasMarked() {
+		if (!isDBAvailable())
+			return false;
+
+		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		Cursor c = null;
+		lock.lockRead();
+		try {
+			c = db.rawQuery("SELECT EXISTS(SELECT 1 FROM " + TABLE_MARK + ") OR EXISTS(SELECT 1 FROM " + TABLE_NOTES + " WHERE " + COL_NOTE + " IS NOT null)", null);
+			return c.moveToFirst() && c.getInt(0) > 0;
+		} finally {
+			close(c);
+			lock.unlockRead();
 		}
 	}
 
@@ -1886,7 +2961,7 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_NOTES, new String[]{"_id", COL_NOTE}, null, null, null, null, null, null);
 			Map<Integer, String> ret = new HashMap<>(c.getCount());
@@ -1896,22 +2971,23 @@ public class DBHelper {
 			return ret;
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
-	void setMarked(Set<Integer> ids, String mark) {
+	void setMarked(Set<Integer> ids, String mark, int status) {
 		if (!isDBAvailable())
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			ContentValues cv = new ContentValues(1);
 			for (String idList : StringSupport.convertListToString(ids, 1000)) {
 				cv.putNull(mark);
-				db.update(TABLE_MARK, cv, "id IN(" + idList + ")", null);
+				// Keep entries which have been changed again while the request was running
+				db.update(TABLE_MARK, cv, "id IN(" + idList + ") AND " + mark + "=" + status, null);
 			}
 			db.delete(TABLE_MARK, "isUnread IS null AND isStarred IS null AND isPublished IS null", null);
 			db.setTransactionSuccessful();
@@ -1919,7 +2995,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1935,13 +3011,16 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			ContentValues cv = new ContentValues(1);
-			for (String idList : StringSupport.convertListToString(ids.keySet(), 1000)) {
+			for (Map.Entry<Integer, String> entry : ids.entrySet()) {
+				if (entry.getValue() == null)
+					continue;
 				cv.putNull(COL_NOTE);
-				db.update(TABLE_NOTES, cv, "_id IN(" + idList + ")", null);
+				// Keep notes which have been changed again while the request was running
+				db.update(TABLE_NOTES, cv, "_id=? AND " + COL_NOTE + "=?", new String[]{entry.getKey() + "", entry.getValue()});
 			}
 			db.delete(TABLE_NOTES, COL_NOTE + " IS null", null);
 			db.setTransactionSuccessful();
@@ -1949,7 +3028,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -1966,10 +3045,9 @@ public class DBHelper {
 		a.commentUrl = c.getString(5);
 		a.updated = new Date(c.getLong(6));
 		a.content = c.getString(7);
-		a.attachments = parseAttachments(c.getString(8));
+		// attachments and labels are loaded on demand, see getAttachments() and getAssignedLabels()
 		a.isStarred = (c.getInt(9) != 0);
 		a.isPublished = (c.getInt(10) != 0);
-		a.labels = parseArticleLabels(c.getString(12));
 		a.author = c.getString(13);
 		a.note = c.getString(14);
 		return a;
@@ -2048,22 +3126,30 @@ public class DBHelper {
 
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
-			c = db.query(TABLE_ARTICLES, new String[]{"_id", "content", "attachments"}, "cachedImages IS NULL AND isUnread>0", null, null, null, null, "1000");
+			c = db.query(TABLE_ARTICLES, new String[]{"_id", "content"}, "cachedImages IS NULL AND isUnread>0", null, null, null, null, "1000");
 
-			ArrayList<Article> ret = new ArrayList<>(c.getCount());
+			Map<Integer, Article> articles = new LinkedHashMap<>(c.getCount());
 			while (c.moveToNext()) {
 				Article a = new Article();
 				a.id = c.getInt(0);
 				a.content = c.getString(1);
-				a.attachments = parseAttachments(c.getString(2));
-				ret.add(a);
+				a.attachments = new LinkedHashSet<>();
+				articles.put(a.id, a);
 			}
-			return ret;
+			close(c);
+
+			if (!articles.isEmpty()) {
+				c = db.query(TABLE_ATTACHMENTS, new String[]{"articleId", "url"}, "articleId IN (" + Utils.separateItems(articles.keySet(), ",") + ")", null, null, null, "rowid");
+				while (c.moveToNext()) {
+					articles.get(c.getInt(0)).attachments.add(c.getString(1));
+				}
+			}
+			return new ArrayList<>(articles.values());
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 	}
 
@@ -2088,7 +3174,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			for (Map.Entry<Integer, List<String>> entry : map.entrySet()) {
@@ -2099,7 +3185,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -2117,7 +3203,7 @@ public class DBHelper {
 		RemoteFile rf = null;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_REMOTEFILES, null, "url=?", new String[]{url}, null, null, null, null);
 			if (c.moveToFirst())
@@ -2127,7 +3213,7 @@ public class DBHelper {
 			e.printStackTrace();
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 		return rf;
 	}
@@ -2145,7 +3231,7 @@ public class DBHelper {
 		ArrayList<RemoteFile> rfs = null;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			// @formatter:off
 			c = db.rawQuery(" SELECT r.*"
@@ -2169,114 +3255,57 @@ public class DBHelper {
 			e.printStackTrace();
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 		return rfs;
 	}
 
 	/**
-	 * get remote files for given articles
+	 * Delete all remote files which are not referenced by any article anymore (refCount=0) together with their
+	 * locally cached copies.
 	 *
-	 * @param whereClause the WHERE clause to apply when selecting.
-	 * @param whereArgs   You may include ?s in the where clause, which
-	 *                    will be replaced by the values from whereArgs. The values
-	 *                    will be bound as Strings.
-	 * @param uniqOnly    if set to {@code true}, then only remote files, which are referenced by given articles only
-	 *                    will be
-	 *                    returned, otherwise all remote files referenced by given articles will be found (even those,
-	 *                    which are
-	 *                    referenced also by some other articles)
-	 * @return collection of remote file objects from DB or {@code null}
+	 * @return the number of deleted remote files
 	 */
-	private Collection<RemoteFile> getRemoteFilesForArticles(String whereClause, String[] whereArgs, boolean uniqOnly) {
+	public int purgeOrphanedRemoteFiles() {
 		if (!isDBAvailable())
-			return null;
-
-		ArrayList<RemoteFile> rfs = null;
-		StringBuilder uniqRestriction = new StringBuilder();
-		String[] queryArgs = whereArgs;
-
-		if (uniqOnly) {
-			// @formatter:off
-			uniqRestriction.append(
-					" AND m.remotefileId NOT IN (").append(
-					"   SELECT remotefileId").append(
-					"	 FROM ").append(
-					TABLE_REMOTEFILE2ARTICLE).append(
-					"		   WHERE remotefileId IN (").append(
-					"	   SELECT remotefileId").append(
-					"		 FROM ").append(
-					TABLE_REMOTEFILE2ARTICLE).append(
-					"		 WHERE articleId IN (").append(
-					"		   SELECT _id").append(
-					"			 FROM ").append(
-					TABLE_ARTICLES).append(
-					"			 WHERE ").append(
-					whereClause).append(
-					"		   )").append(
-					"		 GROUP BY remotefileId)").append(
-					"	   AND articleId NOT IN (").append(
-					"		 SELECT _id").append(
-					"		   FROM ").append(
-					TABLE_ARTICLES).append(
-					"		   WHERE ").append(
-					whereClause).append(
-					"	   )").append(
-					"   GROUP by remotefileId)");
-			// @formatter:on
-
-			// because we are using whereClause twice in uniqRestriction, then we should also extend queryArgs,
-			// which will be used in query
-			if (whereArgs != null) {
-				int initialLength = whereArgs.length;
-				queryArgs = new String[initialLength * 3];
-				for (int i = 0; i < 3; i++) {
-					System.arraycopy(whereArgs, 0, queryArgs, i * initialLength, initialLength);
-				}
-			}
-		}
-
-		StringBuilder query = new StringBuilder();
-		// @formatter:off
-		query.append(
-				" SELECT r.*").append(
-				"   FROM ").append(
-				TABLE_REMOTEFILES + " r,").append(
-				TABLE_REMOTEFILE2ARTICLE + " m, ").append(
-				TABLE_ARTICLES + " a").append(
-				"   WHERE m.remotefileId=r.id").append(
-				"	 AND m.articleId=a._id").append(
-				"	 AND a._id IN (").append(
-				"	   SELECT _id FROM ").append(
-				TABLE_ARTICLES).append(
-				"	   WHERE ").append(
-				whereClause).append(
-				"	 )").append(
-				uniqRestriction).append(
-				"   GROUP BY r.id");
-		// @formatter:on
+			return 0;
 
-		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
+		List<RemoteFile> rfs = new ArrayList<>();
+		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockWrite();
 		try {
-			long time = System.currentTimeMillis();
-			c = db.rawQuery(query.toString(), queryArgs);
-
-			rfs = new ArrayList<>();
-
+			db.beginTransaction();
+			c = db.query(TABLE_REMOTEFILES, null, "refCount<=0", null, null, null, null);
 			while (c.moveToNext()) {
 				rfs.add(handleRemoteFileCursor(c));
 			}
-			Log.d(TAG, "Query in getRemoteFilesForArticles took " + (System.currentTimeMillis() - time) + "ms... (remotefiles: " + rfs.size() + ")");
-
-		} catch (Exception e) {
-			e.printStackTrace();
+			// Nothing can reference the files in between since we are holding the write lock
+			db.delete(TABLE_REMOTEFILES, "refCount<=0", null);
+			db.setTransactionSuccessful();
 		} finally {
 			close(c);
-			read.unlock();
+			try {
+				db.endTransaction();
+			} finally {
+				lock.unlockWrite();
+			}
 		}
-		return rfs;
+
+		ImageCache imageCache = Controller.getInstance().getImageCache();
+		if (imageCache != null) {
+			for (RemoteFile rf : rfs) {
+				if (!rf.cached)
+					continue;
+				File file = imageCache.getCacheFile(rf.url);
+				if (file.exists() && !file.delete())
+					Log.e(TAG, "Couldn't delete file: " + file.getAbsolutePath());
+			}
+		}
+
+		if (!rfs.isEmpty())
+			Log.d(TAG, String.format("Deleted %s orphaned remote files", rfs.size()));
+		return rfs.size();
 	}
 
 	/**
@@ -2289,7 +3318,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 
@@ -2314,7 +3343,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -2329,7 +3358,7 @@ public class DBHelper {
 			return;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.beginTransaction();
 			ContentValues cv = new ContentValues(1);
@@ -2342,7 +3371,7 @@ public class DBHelper {
 			try {
 				db.endTransaction();
 			} finally {
-				write.unlock();
+				lock.unlockWrite();
 			}
 		}
 	}
@@ -2359,14 +3388,14 @@ public class DBHelper {
 		long ret = 0;
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query(TABLE_REMOTEFILES, new String[]{"SUM(length)"}, "cached=1", null, null, null, null);
 			if (c.moveToFirst())
 				ret = c.getLong(0);
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 		return ret;
 	}
@@ -2385,7 +3414,7 @@ public class DBHelper {
 		ArrayList<RemoteFile> rfs = new ArrayList<>();
 		SQLiteDatabase db = getOpenHelper().getReadableDatabase();
 		Cursor c = null;
-		read.lock();
+		lock.lockRead();
 		try {
 			c = db.query("remotefile_sequence", null, "cached = 1", null, null, null, "ord");
 
@@ -2397,36 +3426,11 @@ public class DBHelper {
 			}
 		} finally {
 			close(c);
-			read.unlock();
+			lock.unlockRead();
 		}
 		return rfs;
 	}
 
-	/**
-	 * delete remote files with given IDs
-	 *
-	 * @param idList set of remote file IDs, which should be deleted
-	 * @return the number of deleted rows
-	 */
-	private int deleteRemoteFiles(Set<Integer> idList) {
-		if (!isDBAvailable())
-			return 0;
-
-		int deletedCount = 0;
-		if (idList != null && !idList.isEmpty()) {
-			SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-			write.lock();
-			try {
-				for (String ids : StringSupport.convertListToString(idList, 400)) {
-					deletedCount += db.delete(TABLE_REMOTEFILES, "id IN (" + ids + ")", null);
-				}
-			} finally {
-				write.unlock();
-			}
-		}
-		return deletedCount;
-	}
-
 	/**
 	 * delete all remote files
 	 *
@@ -2437,7 +3441,7 @@ public class DBHelper {
 			return 0;
 
 		SQLiteDatabase db = getOpenHelper().getWritableDatabase();
-		write.lock();
+		lock.lockWrite();
 		try {
 			db.delete(TABLE_REMOTEFILE2ARTICLE, null, null);
 			int count = db.delete(TABLE_REMOTEFILES, null, null);
@@ -2448,7 +3452,7 @@ public class DBHelper {
 
 			return count;
 		} finally {
-			write.unlock();
+			lock.unlockWrite();
 		}
 	}
 
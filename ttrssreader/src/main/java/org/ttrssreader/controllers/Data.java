@@ -20,7 +20,10 @@ package org.ttrssreader.controllers;
 import android.annotation.SuppressLint;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.os.Build;
 import android.util.Log;
@@ -35,6 +38,7 @@ import org.ttrssreader.net.IArticleOmitter;
 import org.ttrssreader.net.IdUnreadArticleOmitter;
 import org.ttrssreader.net.IdUpdatedArticleOmitter;
 import org.ttrssreader.net.JSONConnector;
+import org.ttrssreader.utils.IntSet;
 import org.ttrssreader.utils.Utils;
 
 import java.net.MalformedURLException;
@@ -45,6 +49,9 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @SuppressLint("UseSparseArrays")
 public class Data {
@@ -74,6 +81,13 @@ public class Data {
 	private long categoriesChanged;
 
 	private ConnectivityManager cm;
+	private boolean connectivityReceiverRegistered = false;
+
+	private static final long STATUS_FLUSH_DELAY = 3 * Utils.SECOND;
+	private final ScheduledExecutorService statusExecutor = Executors.newSingleThreadScheduledExecutor();
+	private final Object statusLock = new Object();
+	private final Object statusSyncLock = new Object();
+	private boolean statusFlushScheduled = false;
 
 	// Singleton (see http://stackoverflow.com/a/11165926)
 	private Data() {
@@ -101,6 +115,18 @@ public class Data {
 		if (context != null) {
 			cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
 
+			if (!connectivityReceiverRegistered) {
+				connectivityReceiverRegistered = true;
+				context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+					@Override
+					public void onReceive(Context context, Intent intent) {
+						// Send status changes which have been recorded while being offline
+						if (Utils.isConnected(cm))
+							scheduleStatusFlush();
+					}
+				}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+			}
+
 			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
 				initNotificationChannels(context);
 			}
@@ -150,8 +176,6 @@ public class Data {
 	 */
 	public void cacheArticles(boolean overrideOffline, boolean overrideDelay) {
 		int limit = FETCH_ARTICLES_LIMIT;
-		if (Controller.getInstance().isLowMemory())
-			limit = limit / 2;
 
 		if (!overrideDelay && (time > (System.currentTimeMillis() - Utils.UPDATE_TIME))) {
 			return;
@@ -159,7 +183,10 @@ public class Data {
 			return;
 		}
 
-		Set<Article> articles = new HashSet<>();
+		// Send local changes first, the server would otherwise return the old state of these articles
+		synchronizeStatus();
+
+		ArticleBatchInserter articles = new ArticleBatchInserter();
 		int sinceId = Controller.getInstance().getSinceId();
 
 		long timeStart = System.currentTimeMillis();
@@ -186,15 +213,15 @@ public class Data {
 		}
 
 		if (!articles.isEmpty() || !filter.getOmittedArticles().isEmpty()) {
-			Set<Integer> articleUnreadIds = new HashSet<>(filter.getOmittedArticles());
-			for (Article a : articles) {
-				if (a.isUnread)
-					articleUnreadIds.add(a.id);
-			}
+			IntSet articleUnreadIds = new IntSet(filter.getOmittedArticles().size() + articles.getUnreadIds().size());
+			articleUnreadIds.addAll(filter.getOmittedArticles());
+			articleUnreadIds.addAll(articles.getUnreadIds());
 
 			Log.d(TAG, "Amount of unread articles: " + articleUnreadIds.size());
 			DBHelper.getInstance().markRead(VCAT_ALL, false);
 			DBHelper.getInstance().markArticles(articleUnreadIds, "isUnread", 1);
+			// Changes which couldn't be sent by synchronizeStatus() above are still valid
+			DBHelper.getInstance().restoreUnsynchronizedReadStates();
 		}
 		Log.d(TAG, "cacheArticles() Took: " + (System.currentTimeMillis() - timeStart) + "ms");
 	}
@@ -249,6 +276,9 @@ public class Data {
 			return;
 		}
 
+		// Send local changes first, the server would otherwise return the old state of these articles
+		synchronizeStatus();
+
 		boolean isVcat = (feedId == VCAT_PUB || feedId == VCAT_STAR);
 		int sinceId = 0;
 
@@ -266,11 +296,9 @@ public class Data {
 		int limit = calculateLimit(feedId, isCat);
 		if (limit < FETCH_ARTICLES_LIMIT)
 			limit = FETCH_ARTICLES_LIMIT; // Set higher limit to try to update some more articles, fetching only 2 is just not worth the time
-		if (Controller.getInstance().isLowMemory())
-			limit = limit / 2;
 
 		Log.d(TAG, "UPDATE limit: " + limit);
-		Set<Article> articles = new HashSet<>();
+		ArticleBatchInserter articles = new ArticleBatchInserter();
 
 		if (!displayOnlyUnread) {
 			// If not displaying only unread articles: Refresh unread articles to get them too.
@@ -280,11 +308,11 @@ public class Data {
 		String viewMode = (displayOnlyUnread ? VIEW_UNREAD : VIEW_ALL);
 		Controller.getInstance().getConnector().getHeadlines(articles, feedId, limit, viewMode, isCat, sinceId, null, filter);
 
+		handleInsertArticles(articles, false);
+
 		if (isVcat)
 			handlePurgeMarked(articles, feedId);
 
-		handleInsertArticles(articles, false);
-
 		long currentTime = System.currentTimeMillis();
 		// Store requested feed-/category-id and ids of all feeds in db for this category if a category was requested
 		articlesChanged.put(feedId, currentTime);
@@ -321,19 +349,10 @@ public class Data {
 		return limit;
 	}
 
-	private void handlePurgeMarked(Set<Article> articles, int feedId) {
+	private void handlePurgeMarked(ArticleBatchInserter articles, int feedId) {
 		// TODO Mark all articles with ID > minId as "not starred" and "not published". But why?
 
-		// Search min and max ids
-		int minId = Integer.MAX_VALUE;
-		Set<String> idSet = new HashSet<>();
-		for (Article article : articles) {
-			if (article.id < minId)
-				minId = article.id;
-			idSet.add(article.id + "");
-		}
-
-		String idList = Utils.separateItems(idSet, ",");
+		String idList = articles.getIds().join(",");
 		String vcat;
 		if (feedId == VCAT_STAR)
 			vcat = "isStarred";
@@ -342,32 +361,25 @@ public class Data {
 		else
 			return;
 
-		DBHelper.getInstance().handlePurgeMarked(idList, minId, vcat);
+		DBHelper.getInstance().handlePurgeMarked(idList, articles.getMinId(), vcat);
 	}
 
 	/**
-	 * prepare the DB and store given articles
+	 * write the remaining articles of the given sink to the DB and purge old articles afterwards
 	 *
-	 * @param articles articles to be stored
+	 * @param articles sink which has already stored most of the articles while they were parsed
 	 */
-	private void handleInsertArticles(final Collection<Article> articles, boolean isCaching) {
-		if (!articles.isEmpty()) {
-			// Search min and max ids
-			int minId = Integer.MAX_VALUE;
-			int maxId = Integer.MIN_VALUE;
-			for (Article article : articles) {
-				if (article.id > maxId)
-					maxId = article.id;
-				if (article.id < minId)
-					minId = article.id;
-			}
+	private void handleInsertArticles(final ArticleBatchInserter articles, boolean isCaching) {
+		articles.flush();
+		Log.d(TAG, "Stored articles: " + articles.getResult());
 
-			DBHelper.getInstance().purgeLastArticles(articles.size());
-			DBHelper.getInstance().insertArticles(articles);
+		if (!articles.isEmpty()) {
+			// Articles have been inserted batch by batch already, old articles are purged in the background
+			ArticleRetention.getInstance().schedule();
 
 			// Only store sinceId when doing a full cache of new articles, else it doesn't work.
 			if (isCaching) {
-				Controller.getInstance().setSinceId(maxId);
+				Controller.getInstance().setSinceId(articles.getMaxId());
 				Controller.getInstance().setLastSync(System.currentTimeMillis());
 			}
 		}
@@ -473,45 +485,57 @@ public class Data {
 
 	// *** STATUS *******************************************************************
 
+	/*
+	 * Status changes are written to the outbox (TABLE_MARK / TABLE_NOTES) first and sent to the server in batches by
+	 * synchronizeStatus(), see scheduleStatusFlush().
+	 */
+
 	public void setArticleRead(Set<Integer> ids, int status) {
-		boolean erg = false;
-		if (Utils.isConnected(cm))
-			erg = Controller.getInstance().getConnector().setArticleRead(ids, status);
-		if (!erg)
-			DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_READ, status);
+		DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_READ, status);
+		scheduleStatusFlush();
 	}
 
 	public void setArticleStarred(int articleId, int status) {
-		boolean erg = false;
 		Set<Integer> ids = new HashSet<>();
 		ids.add(articleId);
-
-		if (Utils.isConnected(cm))
-			erg = Controller.getInstance().getConnector().setArticleStarred(ids, status);
-		if (!erg)
-			DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_STAR, status);
+		DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_STAR, status);
+		scheduleStatusFlush();
 	}
 
 	public void setArticlePublished(int articleId, int status) {
-		boolean erg = false;
 		Set<Integer> ids = new HashSet<>();
 		ids.add(articleId);
-
-		if (Utils.isConnected(cm))
-			erg = Controller.getInstance().getConnector().setArticlePublished(ids, status);
-		if (!erg)
-			DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_PUBLISH, status);
+		DBHelper.getInstance().markUnsynchronizedStates(ids, DBHelper.MARK_PUBLISH, status);
+		scheduleStatusFlush();
 	}
 
 	public void setArticleNote(int articleId, String note) {
-		boolean erg = false;
 		Map<Integer, String> ids = new HashMap<>();
 		ids.put(articleId, note);
+		DBHelper.getInstance().markUnsynchronizedNotes(ids);
+		scheduleStatusFlush();
+	}
 
-		if (Utils.isConnected(cm))
-			erg = Controller.getInstance().getConnector().setArticleNote(ids);
-		if (!erg)
-			DBHelper.getInstance().markUnsynchronizedNotes(ids);
+	/**
+	 * Sends the outbox to the server after {@link #STATUS_FLUSH_DELAY}. All changes made until then are sent together,
+	 * so swiping through many articles results in one request per state instead of one request per article.
+	 */
+	private void scheduleStatusFlush() {
+		synchronized (statusLock) {
+			if (statusFlushScheduled)
+				return;
+			statusFlushScheduled = true;
+		}
+
+		statusExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (statusLock) {
+					statusFlushScheduled = false;
+				}
+				synchronizeStatus();
+			}
+		}, STATUS_FLUSH_DELAY, TimeUnit.MILLISECONDS);
 	}
 
 	/**
@@ -580,8 +604,16 @@ public class Data {
 	 * syncronize read, starred, published articles and notes with server
 	 */
 	public void synchronizeStatus() {
-		if (!Utils.isConnected(cm))
+		if (!Utils.isConnected(cm) || !DBHelper.getInstance().hasMarked())
 			return;
+
+		// Only one thread at a time, otherwise the same states might be sent twice
+		synchronized (statusSyncLock) {
+			synchronizeStatusIntern();
+		}
+	}
+
+	private void synchronizeStatusIntern() {
 		long time = System.currentTimeMillis();
 
 		// Try to send all marked articles to the server, every synced status is removed from the DB afterwards
@@ -592,24 +624,24 @@ public class Data {
 
 			if (DBHelper.MARK_READ.equals(mark)) {
 				if (Controller.getInstance().getConnector().setArticleRead(idsMark, 1))
-					DBHelper.getInstance().setMarked(idsMark, mark);
+					DBHelper.getInstance().setMarked(idsMark, mark, 1);
 
 				if (Controller.getInstance().getConnector().setArticleRead(idsUnmark, 0))
-					DBHelper.getInstance().setMarked(idsUnmark, mark);
+					DBHelper.getInstance().setMarked(idsUnmark, mark, 0);
 			}
 			if (DBHelper.MARK_STAR.equals(mark)) {
 				if (Controller.getInstance().getConnector().setArticleStarred(idsMark, 1))
-					DBHelper.getInstance().setMarked(idsMark, mark);
+					DBHelper.getInstance().setMarked(idsMark, mark, 1);
 
 				if (Controller.getInstance().getConnector().setArticleStarred(idsUnmark, 0))
-					DBHelper.getInstance().setMarked(idsUnmark, mark);
+					DBHelper.getInstance().setMarked(idsUnmark, mark, 0);
 			}
 			if (DBHelper.MARK_PUBLISH.equals(mark)) {
 				if (Controller.getInstance().getConnector().setArticlePublished(idsMark, 1))
-					DBHelper.getInstance().setMarked(idsMark, mark);
+					DBHelper.getInstance().setMarked(idsMark, mark, 1);
 
 				if (Controller.getInstance().getConnector().setArticlePublished(idsUnmark, 0))
-					DBHelper.getInstance().setMarked(idsUnmark, mark);
+					DBHelper.getInstance().setMarked(idsUnmark, mark, 0);
 			}
 		}
 
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locking for {@link DBHelper}. Readers and writers share the database, writers are serialised among each other and
+ * opening, closing or deleting the database waits until nobody uses it anymore.
+ * <p>
+ * Readers don't wait for writers: SQLite isolates them from running transactions, with write-ahead logging they read
+ * the last committed state and without it SQLiteDatabase hands out its single connection in turn.
+ * <p>
+ * All locks are reentrant and a writer may read while it holds the write lock. A thread which holds the read or
+ * write lock must not open, close or delete the database.
+ */
+final class DatabaseLock {
+
+	private final ReentrantReadWriteLock lifecycle = new ReentrantReadWriteLock();
+	private final ReentrantLock write = new ReentrantLock();
+
+	void lockRead() {
+		lifecycle.readLock().lock();
+	}
+
+	void unlockRead() {
+		lifecycle.readLock().unlock();
+	}
+
+	void lockWrite() {
+		lifecycle.readLock().lock();
+		write.lock();
+	}
+
+	void unlockWrite() {
+		write.unlock();
+		lifecycle.readLock().unlock();
+	}
+
+	/**
+	 * Waits until all readers and writers are done, used to open, close or delete the database.
+	 */
+	void lockExclusive() {
+		lifecycle.writeLock().lock();
+	}
+
+	void unlockExclusive() {
+		lifecycle.writeLock().unlock();
+	}
+
+}
@@ -31,6 +31,8 @@ import org.ttrssreader.gui.fragments.ArticleFragment;
 import org.ttrssreader.gui.fragments.FeedHeadlineListFragment;
 import org.ttrssreader.gui.fragments.FeedListFragment;
 import org.ttrssreader.gui.fragments.MainListFragment;
+import org.ttrssreader.gui.view.ArticleRenderer;
+import org.ttrssreader.gui.view.WebViewPool;
 import org.ttrssreader.utils.AsyncTask;
 import org.ttrssreader.utils.Utils;
 
@@ -101,6 +103,13 @@ public class FeedHeadlineActivity extends MenuActivity {
 		return R.layout.main;
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		if (isFinishing())
+			WebViewPool.getInstance().clear();
+	}
+
 	@Override
 	public void onSaveInstanceState(@NonNull Bundle outState) {
 		outState.putInt(FeedHeadlineListFragment.FEED_CAT_ID, categoryId);
@@ -374,6 +383,14 @@ public class FeedHeadlineActivity extends MenuActivity {
 				Utils.alert(this);
 			}
 		}
+
+		// Render the articles the user will probably open next while this one is read and load the next and
+		// previous one into pooled WebViews
+		if (headlineFragment != null) {
+			List<Integer> ids = headlineFragment.getArticleIds();
+			ArticleRenderer.getInstance().prerender(this, ids, articleId, direction);
+			WebViewPool.getInstance().preload(this, ids, articleId);
+		}
 	}
 
 	private static void setAnimationForDirection(final FragmentTransaction ft, final int direction) {
@@ -28,9 +28,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.res.Configuration;
 import android.net.Uri;
-import android.os.Build;
 import android.os.Bundle;
-import android.text.Html;
 import android.util.Log;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
@@ -44,26 +42,15 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.View.OnKeyListener;
 import android.view.ViewGroup;
-import android.view.ViewGroup.LayoutParams;
 import android.view.WindowManager;
-import android.webkit.JavascriptInterface;
-import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebView.HitTestResult;
 import android.widget.Button;
 import android.widget.FrameLayout;
-import android.widget.Toast;
-
-import org.htmlcleaner.HtmlCleaner;
-import org.htmlcleaner.HtmlNode;
-import org.htmlcleaner.TagNode;
-import org.htmlcleaner.TagNodeVisitor;
-import org.jsoup.Jsoup;
-import org.jsoup.safety.Whitelist;
-import org.stringtemplate.v4.ST;
+
+import org.ttrssreader.MyApplication;
 import org.ttrssreader.R;
 import org.ttrssreader.controllers.Controller;
-import org.ttrssreader.controllers.DBHelper;
 import org.ttrssreader.controllers.ProgressBarManager;
 import org.ttrssreader.gui.ErrorActivity;
 import org.ttrssreader.gui.FeedHeadlineActivity;
@@ -72,14 +59,15 @@ import org.ttrssreader.gui.TextInputAlert;
 import org.ttrssreader.gui.dialogs.ArticleLabelDialog;
 import org.ttrssreader.gui.dialogs.ImageCaptionDialog;
 import org.ttrssreader.gui.interfaces.TextInputAlertCallback;
+import org.ttrssreader.gui.view.ArticleRenderer;
+import org.ttrssreader.gui.view.ArticleRenderer.RenderedArticle;
 import org.ttrssreader.gui.view.ArticleWebViewClient;
+import org.ttrssreader.gui.view.ImageCaptionIndex;
 import org.ttrssreader.gui.view.MyGestureDetector;
 import org.ttrssreader.gui.view.MyWebView;
-import org.ttrssreader.imageCache.ImageCache;
+import org.ttrssreader.gui.view.WebViewPool;
 import org.ttrssreader.model.pojos.Article;
 import org.ttrssreader.model.pojos.Feed;
-import org.ttrssreader.model.pojos.Label;
-import org.ttrssreader.model.pojos.RemoteFile;
 import org.ttrssreader.model.updaters.ArticleReadStateUpdater;
 import org.ttrssreader.model.updaters.NoteUpdater;
 import org.ttrssreader.model.updaters.PublishedStateUpdater;
@@ -87,13 +75,8 @@ import org.ttrssreader.model.updaters.StarredStateUpdater;
 import org.ttrssreader.model.updaters.Updater;
 import org.ttrssreader.preferences.Constants;
 import org.ttrssreader.utils.AsyncTask;
-import org.ttrssreader.utils.DateUtils;
-import org.ttrssreader.utils.FileUtils;
 
 import java.lang.ref.WeakReference;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
@@ -120,8 +103,6 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 	private static final int CONTEXT_MENU_COPY_URL = 1003;
 	private static final int CONTEXT_MENU_COPY_CONTENT = 1004;
 
-	private static final String LABEL_COLOR_STRING = "<span style=\"color: %s; background-color: %s\">%s</span>";
-
 	// Extras
 	private int articleId = -1;
 	private int feedId = -1;
@@ -132,8 +113,8 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 	private Article article = null;
 	private Feed feed = null;
 	private String content;
+	private ImageCaptionIndex imageCaptions = ImageCaptionIndex.EMPTY;
 	private boolean linkAutoOpened;
-	private String cachedImages = "";
 
 	private FrameLayout webContainer = null;
 	private MyWebView webView;
@@ -185,8 +166,21 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		super.onActivityCreated(instance);
 		articleJSInterface = new ArticleJSInterface(getActivity());
 
+		// Show a pre-rendered page right away, initData() checks if it is still up to date
+		if (content == null) {
+			RenderedArticle rendered = ArticleRenderer.getInstance().getCached(articleId);
+			if (rendered != null) {
+				article = rendered.article;
+				feed = rendered.feed;
+				content = rendered.html;
+				imageCaptions = rendered.imageCaptions;
+				webviewInitialized = false;
+			}
+		}
+
 		initData();
 		initUI();
+		doRefresh();
 	}
 
 	@Override
@@ -246,40 +240,12 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		buttonPrev.setOnClickListener(onButtonPressedListener);
 		buttonNext.setOnClickListener(onButtonPressedListener);
 
-		// Initialize the WebView if necessary
+		// Take a WebView from the pool if necessary, it may already show this article
 		if (webView == null) {
-			webView = new MyWebView(getActivity());
+			webView = WebViewPool.getInstance().acquire(getActivity(), articleId);
 			webView.setWebViewClient(new ArticleWebViewClient(this));
-			webView.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
-
-			// Set theme background color. Should be possible via xml also.
-			switch (Controller.getInstance().getSelectedTheme()) {
-				case Constants.THEME_BLACK:
-					webView.setBackgroundColor(getResources().getColor(R.color.themeBlackBackground));
-				case Constants.THEME_WHITE:
-					webView.setBackgroundColor(getResources().getColor(R.color.themeWhiteBackground));
-				case Constants.THEME_LIGHT:
-					webView.setBackgroundColor(getResources().getColor(R.color.themeLightBackground));
-				case Constants.THEME_DARK:
-					webView.setBackgroundColor(getResources().getColor(R.color.themeDarkBackground));
-				case Constants.THEME_AUTO:
-				default:
-					if (Controller.getInstance().isThemeLight(getActivity()))
-						webView.setBackgroundColor(getResources().getColor(R.color.themeLightBackground));
-					else
-						webView.setBackgroundColor(getResources().getColor(R.color.themeDarkBackground));
-			}
-
-			boolean supportZoom = Controller.getInstance().supportZoomControls();
-			webView.getSettings().setSupportZoom(supportZoom);
-			webView.getSettings().setBuiltInZoomControls(supportZoom);
-			webView.getSettings().setDisplayZoomControls(false);
-			//webView.getSettings().setLayoutAlgorithm(LayoutAlgorithm.SINGLE_COLUMN);
-			webView.setScrollBarStyle(WebView.SCROLLBARS_OUTSIDE_OVERLAY);
-			webView.setScrollbarFadingEnabled(true);
+			webView.setArticleController(articleJSInterface);
 			webView.setOnKeyListener(keyListener);
-			webView.getSettings().setTextZoom(Controller.getInstance().textZoom());
-			webView.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
 
 			if (gestureDetector == null || gestureListener == null) {
 				ActionBar actionBar = ((AppCompatActivity) getActivity()).getSupportActionBar();
@@ -318,16 +284,20 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		 */
 		new AsyncTask<Void, Void, Void>() {
 			protected Void doInBackground(Void... params) {
-				// Get article from DB
-				article = DBHelper.getInstance().getArticle(articleId);
-				if (article == null)
+				// Get article from DB, the page is only rendered if there is no up to date version in the cache
+				RenderedArticle rendered = ArticleRenderer.getInstance().render(MyApplication.context(), articleId);
+				if (rendered == null)
 					return null;
 
-				feed = DBHelper.getInstance().getFeed(article.feedId);
-				cachedImages = getCachedImagesJS(article.id);
+				article = rendered.article;
+				feed = rendered.feed;
+				imageCaptions = rendered.imageCaptions;
 
 				// Reload content on next doRefresh()
-				webviewInitialized = false;
+				if (!rendered.html.equals(content)) {
+					content = rendered.html;
+					webviewInitialized = false;
+				}
 				return null;
 			}
 
@@ -370,11 +340,13 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		super.onDestroy();
 		if (webContainer != null)
 			webContainer.removeAllViews();
-		if (webView != null)
-			webView.destroy();
+		if (webView != null) {
+			unregisterForContextMenu(webView);
+			WebViewPool.getInstance().release(webView);
+			webView = null;
+		}
 	}
 
-	@SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
 	private void doRefresh() {
 		if (webView == null)
 			return;
@@ -382,16 +354,10 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		try {
 			ProgressBarManager.getInstance().addProgress((MenuActivity) getActivity());
 
-			if (Controller.getInstance().workOffline() || !Controller.getInstance().loadMedia()) {
-				webView.getSettings().setCacheMode(WebSettings.LOAD_CACHE_ONLY);
-			} else {
-				webView.getSettings().setCacheMode(WebSettings.LOAD_DEFAULT);
-			}
-			if (!Controller.getInstance().loadMedia() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
-				webView.getSettings().setMediaPlaybackRequiresUserGesture(false);
+			WebViewPool.applyLoadSettings(webView);
 
 			// No need to reload everything
-			if (webviewInitialized)
+			if (webviewInitialized || content == null || article == null)
 				return;
 
 			// Check for errors
@@ -402,94 +368,8 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 				return;
 			}
 
-			StringBuilder labels = new StringBuilder();
-			for (Label label : article.labels) {
-				if (label.checked) {
-					if (labels.length() > 0)
-						labels.append(", ");
-
-					String labelString = label.caption;
-					if (label.foregroundColor != null && label.backgroundColor != null)
-						labelString = String.format(LABEL_COLOR_STRING, label.foregroundColor, label.backgroundColor, label.caption);
-					labels.append(labelString);
-				}
-			}
-
-			// Remove all html tags and content that doesn't meet this set of allowed stuff
-			final String contentClean;
-			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
-				contentClean = article.content;
-			else
-				contentClean = Jsoup.clean(article.content, Whitelist.relaxed());
-
-			// Load html from Controller and insert content// Article-Prefetch-Stuff from Raw-Ressources and System
-			ST htmlTmpl = new ST(getString(R.string.HTML_TEMPLATE), '$', '$');
-
-			// Styles
-			if (Controller.getInstance().allowHyphenation()) {
-				ST javascriptST = new ST(getString(R.string.JAVASCRIPT_HYPHENATION_TEMPLATE), '$', '$');
-				javascriptST.add("LANGUAGE", Controller.getInstance().hyphenationLanguage());
-				htmlTmpl.add("HYPHENATION", javascriptST.render());
-			} else {
-				htmlTmpl.add("HYPHENATION", "");
-			}
-
-			// Replace alignment-marker: align:left or align:justify
-			ST stylesST = new ST(getString(R.string.STYLE_TEMPLATE), '$', '$');
-			if (Controller.getInstance().alignFlushLeft()) {
-				stylesST.add("TEXT_ALIGN", getString(R.string.ALIGN_LEFT));
-			} else {
-				stylesST.add("TEXT_ALIGN", getString(R.string.ALIGN_JUSTIFY));
-			}
-			htmlTmpl.add("STYLE", stylesST.render());
-
-			// General values
-			htmlTmpl.add("THEME", getResources().getString(Controller.getInstance().getThemeHTML(getActivity())));
-			htmlTmpl.add("CACHE_DIR", Controller.getInstance().cacheFolder());
-			htmlTmpl.add("LANGUAGE", Controller.getInstance().hyphenationLanguage());
-
-			// Article content values
-			htmlTmpl.add("ARTICLE_URL", article.url);
-			htmlTmpl.add("ARTICLE_TITLE", article.title);
-			htmlTmpl.add("ARTICLE_AUTHOR", article.author);
-			htmlTmpl.add("FEED_TITLE", feed.title);
-
-			// Special values for this article
-			htmlTmpl.add("CACHED_IMAGES", cachedImages);
-			htmlTmpl.add("LABELS", labels.toString());
-			htmlTmpl.add("UPDATED", DateUtils.getDateTimeCustom(getActivity(), article.updated));
-			htmlTmpl.add("ATTACHMENTS", getAttachmentsMarkup(article.attachments));
-			htmlTmpl.add("CONTENT", contentClean);
-
-			// Hyphenation Javascript
-			if (Controller.getInstance().allowHyphenation()) {
-				ST javascriptST = new ST(getString(R.string.JAVASCRIPT_HYPHENATION_TEMPLATE), '$', '$');
-				javascriptST.add("LANGUAGE", Controller.getInstance().hyphenationLanguage());
-				htmlTmpl.add("HYPHENATION", javascriptST.render());
-			}
-
-			// Navigation buttons
-			if (Controller.getInstance().showButtonsMode() == Constants.SHOW_BUTTONS_MODE_HTML) {
-				htmlTmpl.add("NAVIGATION", getString(R.string.BOTTOM_NAVIGATION_TEMPLATE));
-			} else {
-				htmlTmpl.add("NAVIGATION", "");
-			}
-
-			// Note of the article
-			if (article.note != null && article.note.length() > 0) {
-				ST noteST = new ST(getResources().getString(R.string.NOTE_TEMPLATE), '$', '$');
-				noteST.add("NOTE", getResources().getString(R.string.Commons_HtmlPrefixNote) + " " + article.note);
-				htmlTmpl.add("NOTE_TEMPLATE", noteST.render());
-			} else {
-				htmlTmpl.add("NOTE_TEMPLATE", "");
-			}
-
-			content = htmlTmpl.render();
-
 			/* JavaScript should be safe since we use JSoup to remove all unwanted stuff from article.content */
-			webView.getSettings().setJavaScriptEnabled(true);
-			webView.addJavascriptInterface(articleJSInterface, "articleController");
-			webView.loadDataWithBaseURL("file:///android_asset/", content, "text/html", "utf-8", null);
+			webView.loadArticle(articleId, content);
 
 			if (!linkAutoOpened && article.content.length() < 3) {
 				if (Controller.getInstance().openUrlEmptyArticle()) {
@@ -529,39 +409,6 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		}
 	}
 
-	/**
-	 * generate HTML code for attachments to be shown inside article
-	 *
-	 * @param attachments collection of attachment URLs
-	 */
-	private String getAttachmentsMarkup(Set<String> attachments) {
-		StringBuilder content = new StringBuilder();
-		Map<String, Collection<String>> attachmentsByMimeType = FileUtils.groupFilesByMimeType(attachments);
-
-		if (attachmentsByMimeType.isEmpty())
-			return "";
-
-		for (String mimeType : attachmentsByMimeType.keySet()) {
-			Collection<String> mimeTypeUrls = attachmentsByMimeType.get(mimeType);
-			if (mimeTypeUrls == null || mimeTypeUrls.isEmpty())
-				continue;
-
-			if (mimeType.equals(FileUtils.IMAGE_MIME)) {
-				ST st = new ST(getResources().getString(R.string.ATTACHMENT_IMAGES_TEMPLATE));
-				st.add("items", mimeTypeUrls);
-				content.append(st.render());
-			} else {
-				ST st = new ST(getResources().getString(R.string.ATTACHMENT_MEDIA_TEMPLATE));
-				st.add("items", mimeTypeUrls);
-				CharSequence linkText = mimeType.equals(FileUtils.AUDIO_MIME) || mimeType.equals(FileUtils.VIDEO_MIME) ? getText(R.string.ArticleActivity_MediaPlay) : getText(R.string.ArticleActivity_MediaDisplayLink);
-				st.add("linkText", linkText);
-				content.append(st.render());
-			}
-		}
-
-		return content.toString();
-	}
-
 	@Override
 	public void onCreateContextMenu(@NonNull ContextMenu menu, @NonNull View v, ContextMenuInfo menuInfo) {
 		super.onCreateContextMenu(menu, v, menuInfo);
@@ -584,7 +431,7 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 
 		// Images get a context-menu with "Show caption" which displays the content of the title- or alt-attribute
 		if (image) {
-			mSelectedAltText = getAltTextForImageUrl(result.getExtra());
+			mSelectedAltText = imageCaptions.getCaption(result.getExtra());
 			if (mSelectedAltText != null)
 				menu.add(ContextMenu.NONE, CONTEXT_MENU_DISPLAY_CAPTION, 1, getResources().getString(R.string.ArticleActivity_ShowCaption));
 		}
@@ -671,102 +518,6 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 		}
 	}
 
-	/**
-	 * Using a small html parser with a visitor which goes through the html I extract the alt-attribute from the
-	 * content. If nothing is found it is left as null and the menu should'nt contain the item to display the caption.
-	 *
-	 * @param extra the
-	 * @return the alt-text or null if none was found.
-	 */
-	private String getAltTextForImageUrl(String extra) {
-		if (content == null || !content.contains(extra))
-			return null;
-
-		try {
-			HtmlCleaner cleaner = new HtmlCleaner();
-			TagNode node = cleaner.clean(content);
-
-			MyTagNodeVisitor tnv = new MyTagNodeVisitor(extra);
-			node.traverse(tnv);
-
-			if (tnv.alt == null)
-				return null;
-
-			if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N)
-				//noinspection deprecation
-				return Html.fromHtml(tnv.alt).toString();
-			else
-				return Html.fromHtml(tnv.alt, Html.FROM_HTML_MODE_COMPACT).toString();
-		} catch (Throwable t) {
-			t.printStackTrace();
-			Toast.makeText(getContext(), "ALT-Tag could not be parsed from HTML.", Toast.LENGTH_SHORT).show();
-			Log.e(TAG, "Serious error while parsing HTML! Error: " + t.getMessage(), t);
-		}
-
-		return null;
-	}
-
-	/**
-	 * Create javascript associative array with article cached image url as key and image hash as value. Only
-	 * RemoteFiles which are "cached" are added to this array so if an image is not available locally it is left as it
-	 * is.
-	 *
-	 * @param articleId article ID
-	 * @return javascript associative array content as text
-	 */
-	private String getCachedImagesJS(int articleId) {
-		StringBuilder hashes = new StringBuilder();
-		Collection<RemoteFile> rfs = DBHelper.getInstance().getRemoteFiles(articleId);
-
-		if (rfs != null && !rfs.isEmpty()) {
-			for (RemoteFile rf : rfs) {
-
-				if (rf.cached) {
-					if (hashes.length() > 0)
-						hashes.append(",\n");
-
-					hashes.append("'");
-					hashes.append(rf.url);
-					hashes.append("': '");
-					hashes.append(ImageCache.getHashForKey(rf.url));
-					hashes.append("'");
-				}
-
-			}
-		}
-
-		return hashes.toString();
-	}
-
-	/**
-	 * This is necessary to iterate over all HTML-Nodes and scan for images with ALT-Attributes.
-	 */
-	private static class MyTagNodeVisitor implements TagNodeVisitor {
-		private String alt = null;
-		private String extra;
-
-		private MyTagNodeVisitor(String extra) {
-			this.extra = extra;
-		}
-
-		public boolean visit(TagNode tagNode, HtmlNode htmlNode) {
-			if (htmlNode instanceof TagNode) {
-				TagNode tag = (TagNode) htmlNode;
-				String tagName = tag.getName();
-				// Only if the image-url is the same as the url of the image the long-press was on:
-				if ("img".equals(tagName) && extra.equals(tag.getAttributeByName("src"))) {
-					// Prefer title-attribute over alt since this is the html default
-					alt = tag.getAttributeByName("title");
-					if (alt != null)
-						return false;
-					alt = tag.getAttributeByName("alt");
-					return alt == null;
-				}
-			}
-			return true;
-		}
-	}
-
 	@Override
 	public boolean onContextItemSelected(android.view.MenuItem item) {
 		Intent shareIntent;
@@ -847,7 +598,7 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 	 * this class represents an object, which methods can be called from article's {@code WebView} javascript to
 	 * manipulate the article activity
 	 */
-	private class ArticleJSInterface {
+	private class ArticleJSInterface implements MyWebView.ArticleController {
 
 		/**
 		 * current article activity, all methods fail silently if this doesn't contain an activity anmore
@@ -863,7 +614,7 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 			activityRef = new WeakReference<>(aa);
 		}
 
-		@JavascriptInterface
+		@Override
 		public void prev() {
 			final Activity activity = activityRef.get();
 			if (activity == null)
@@ -881,7 +632,7 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 			});
 		}
 
-		@JavascriptInterface
+		@Override
 		public void next() {
 			final Activity activity = activityRef.get();
 			if (activity == null)
@@ -898,7 +649,7 @@ public class ArticleFragment extends Fragment implements TextInputAlertCallback
 			});
 		}
 
-		@JavascriptInterface
+		@Override
 		public void copyContentToClipboard(String aContent) {
 			final Activity activity = activityRef.get();
 			if (activity == null)
@@ -43,6 +43,7 @@ import org.ttrssreader.gui.dialogs.ReadStateDialog;
 import org.ttrssreader.gui.dialogs.YesNoUpdaterDialog;
 import org.ttrssreader.gui.interfaces.IItemSelectedListener.TYPE;
 import org.ttrssreader.gui.interfaces.TextInputAlertCallback;
+import org.ttrssreader.gui.view.ArticleRenderer;
 import org.ttrssreader.gui.view.MyGestureDetector;
 import org.ttrssreader.model.FeedHeadlineAdapter;
 import org.ttrssreader.model.ListContentProvider;
@@ -360,8 +361,14 @@ public class FeedHeadlineListFragment extends MainListFragment implements TextIn
 
 	@Override
 	public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-		if (loader.getId() == TYPE_HEADLINE_ID)
+		if (loader.getId() == TYPE_HEADLINE_ID) {
 			adapter.changeCursor(data);
+
+			// Render the first articles of the list so they can be displayed right away
+			Activity activity = getActivity();
+			if (activity != null)
+				ArticleRenderer.getInstance().prerender(activity, adapter.getIds(ArticleRenderer.PRERENDER_AHEAD), Integer.MIN_VALUE, 1);
+		}
 		super.onLoadFinished(loader, data);
 	}
 
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.gui.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Whitelist;
+import org.stringtemplate.v4.ST;
+import org.ttrssreader.R;
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.controllers.DBHelper;
+import org.ttrssreader.imageCache.ImageCache;
+import org.ttrssreader.model.pojos.Article;
+import org.ttrssreader.model.pojos.Feed;
+import org.ttrssreader.model.pojos.Label;
+import org.ttrssreader.model.pojos.RemoteFile;
+import org.ttrssreader.utils.DateUtils;
+import org.ttrssreader.utils.FileUtils;
+import org.ttrssreader.utils.Hyphenator;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Renders the html page of an article and keeps the result in a memory cache which is bounded by the size of the
+ * pages. Articles which are likely to be opened next are rendered in the background so the article view can load
+ * the page right away.
+ * <p>
+ * Cached pages are not invalidated explicitly. Every entry carries a signature of everything the page depends on
+ * (content, note, labels, cached images, feed title and the template settings), {@link #render(Context, int)}
+ * compares it against the current data and only renders the page again if it differs.
+ */
+public class ArticleRenderer {
+
+	private static final String TAG = ArticleRenderer.class.getSimpleName();
+
+	// Number of articles which are rendered ahead in reading direction and against it
+	public static final int PRERENDER_AHEAD = 3;
+	private static final int PRERENDER_BEHIND = 1;
+
+	// Upper bound for the cache in characters of html and article content (roughly 2 bytes each)
+	private static final int MAX_CACHE_CHARS = 1024 * 1024;
+
+	private static final String LABEL_COLOR_STRING = "<span style=\"color: %s; background-color: %s\">%s</span>";
+
+	private final LruCache<Integer, RenderedArticle> cache = new LruCache<Integer, RenderedArticle>(MAX_CACHE_CHARS) {
+		@Override
+		protected int sizeOf(Integer key, RenderedArticle value) {
+			return value.size();
+		}
+	};
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	// Incremented for every call to prerender(), queued tasks of older calls are skipped
+	private volatile int generation = 0;
+
+	// Singleton (see http://stackoverflow.com/a/11165926)
+	private ArticleRenderer() {
+	}
+
+	private static class InstanceHolder {
+		private static final ArticleRenderer instance = new ArticleRenderer();
+	}
+
+	public static ArticleRenderer getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	/**
+	 * The rendered page of an article together with the data it was rendered from.
+	 */
+	public static class RenderedArticle {
+		public final Article article;
+		public final Feed feed;
+		public final String html;
+		public final ImageCaptionIndex imageCaptions;
+		private final String signature;
+
+		private RenderedArticle(Article article, Feed feed, String html, ImageCaptionIndex imageCaptions,
+				String signature) {
+			this.article = article;
+			this.feed = feed;
+			this.html = html;
+			this.imageCaptions = imageCaptions;
+			this.signature = signature;
+		}
+
+		private int size() {
+			int size = html.length() + imageCaptions.size();
+			if (article.content != null)
+				size += article.content.length();
+			return Math.max(size, 1);
+		}
+	}
+
+	/**
+	 * Returns the page of the article from the cache without touching the database. The page may be outdated, the
+	 * caller should check it by calling {@link #render(Context, int)} in the background afterwards.
+	 *
+	 * @param articleId the id of the article
+	 * @return the cached page or null if it hasn't been rendered yet
+	 */
+	public RenderedArticle getCached(int articleId) {
+		return cache.get(articleId);
+	}
+
+	/**
+	 * Loads the article and renders its page unless a cached page with the same signature exists. Must not be
+	 * called from the UI thread.
+	 *
+	 * @param context   the context to load resources from
+	 * @param articleId the id of the article
+	 * @return the rendered article or null if the article doesn't exist
+	 */
+	public RenderedArticle render(Context context, int articleId) {
+		DBHelper db = DBHelper.getInstance();
+		Article article = db.getArticle(articleId);
+		if (article == null)
+			return null;
+
+		Feed feed = db.getFeed(article.feedId);
+		if (feed == null)
+			feed = new Feed();
+		article.attachments = db.getAttachments(article.id);
+		article.labels = db.getAssignedLabels(article.id);
+		String cachedImages = getCachedImagesJS(article.id);
+
+		String signature = getSignature(context, article, feed, cachedImages);
+		RenderedArticle cached = cache.get(articleId);
+		if (cached != null && cached.signature.equals(signature)) {
+			// Keep the page but hand out the current state (read, starred, ...) of the article
+			RenderedArticle ret = new RenderedArticle(article, feed, cached.html, cached.imageCaptions, signature);
+			cache.put(articleId, ret);
+			return ret;
+		}
+
+		long time = System.currentTimeMillis();
+		String html = renderHtml(context, article, feed, cachedImages);
+		ImageCaptionIndex imageCaptions = ImageCaptionIndex.build(article.content);
+		Log.d(TAG, String.format("Rendered article %s in %sms", articleId, System.currentTimeMillis() - time));
+
+		RenderedArticle ret = new RenderedArticle(article, feed, html, imageCaptions, signature);
+		cache.put(articleId, ret);
+		return ret;
+	}
+
+	/**
+	 * Renders the pages of the articles around the given article in the background, more of them in reading
+	 * direction. Pending work of earlier calls is dropped.
+	 *
+	 * @param context   the context to load resources from
+	 * @param ids       the ids of the articles in the order they are displayed
+	 * @param current   the id of the article which is displayed now, if it is not in the list the first articles
+	 *                  are rendered
+	 * @param direction the direction the user is moving in, negative for backwards
+	 */
+	public void prerender(Context context, List<Integer> ids, int current, int direction) {
+		if (ids == null || ids.isEmpty())
+			return;
+
+		int index = ids.indexOf(current);
+		int step = direction < 0 ? -1 : 1;
+
+		final Context appContext = context.getApplicationContext();
+		final int gen = ++generation;
+
+		if (index < 0) {
+			for (int i = 0; i < PRERENDER_AHEAD && i < ids.size(); i++) {
+				schedule(appContext, ids.get(i), gen);
+			}
+			return;
+		}
+
+		for (int i = 1; i <= PRERENDER_AHEAD; i++) {
+			int pos = index + i * step;
+			if (pos >= 0 && pos < ids.size())
+				schedule(appContext, ids.get(pos), gen);
+		}
+		for (int i = 1; i <= PRERENDER_BEHIND; i++) {
+			int pos = index - i * step;
+			if (pos >= 0 && pos < ids.size())
+				schedule(appContext, ids.get(pos), gen);
+		}
+	}
+
+	/**
+	 * Called on the UI thread when an article has been rendered by {@link #renderAsync(Context, int, RenderListener)}.
+	 */
+	public interface RenderListener {
+		void onRendered(RenderedArticle rendered);
+	}
+
+	/**
+	 * Renders the article in the background and hands the result to the listener on the UI thread. Nothing is
+	 * reported if the article doesn't exist or rendering failed.
+	 *
+	 * @param context   the context to load resources from
+	 * @param articleId the id of the article
+	 * @param listener  the listener to be called with the result
+	 */
+	public void renderAsync(Context context, final int articleId, final RenderListener listener) {
+		final Context appContext = context.getApplicationContext();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try {
+					final RenderedArticle rendered = render(appContext, articleId);
+					if (rendered == null)
+						return;
+
+					mainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							listener.onRendered(rendered);
+						}
+					});
+				} catch (Exception e) {
+					Log.w(TAG, "Rendering of article " + articleId + " failed: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	private void schedule(final Context context, final int articleId, final int gen) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (gen != generation)
+					return;
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				try {
+					render(context, articleId);
+				} catch (Exception e) {
+					Log.w(TAG, "Pre-rendering of article " + articleId + " failed: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	private static String getSignature(Context context, Article article, Feed feed, String cachedImages) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(article.updated != null ? article.updated.getTime() : 0).append('|');
+		sb.append(article.note).append('|');
+		sb.append(feed.title).append('|');
+		for (Label label : article.labels) {
+			if (label.checked) {
+				sb.append(label.id).append(',');
+				sb.append(label.foregroundColor).append(',');
+				sb.append(label.backgroundColor).append(',');
+				sb.append(label.caption).append(';');
+			}
+		}
+		sb.append('|').append(article.attachments.hashCode());
+		sb.append('|').append(cachedImages.hashCode());
+		sb.append('|').append(ArticleTemplate.getInstance().getSettingsKey(context));
+		return sb.toString();
+	}
+
+	private static String renderHtml(Context context, Article article, Feed feed, String cachedImages) {
+		StringBuilder labels = new StringBuilder();
+		for (Label label : article.labels) {
+			if (label.checked) {
+				if (labels.length() > 0)
+					labels.append(", ");
+
+				String labelString = label.caption;
+				if (label.foregroundColor != null && label.backgroundColor != null)
+					labelString = String.format(LABEL_COLOR_STRING, label.foregroundColor, label.backgroundColor, label.caption);
+				labels.append(labelString);
+			}
+		}
+
+		// Remove all html tags and content that doesn't meet this set of allowed stuff
+		String contentClean;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+			contentClean = article.content;
+		else
+			contentClean = Jsoup.clean(article.content, Whitelist.relaxed());
+
+		// Insert soft hyphens here so the WebView doesn't have to run Hyphenator.js, it is only used as fallback for
+		// languages whose patterns can't be loaded
+		String title = article.title;
+		Hyphenator hyphenator = null;
+		Controller controller = Controller.getInstance();
+		if (controller.allowHyphenation())
+			hyphenator = Hyphenator.getInstance(context, controller.hyphenationLanguage());
+		if (hyphenator != null) {
+			contentClean = hyphenator.hyphenateHtml(contentClean);
+			title = hyphenator.hyphenateHtml(title);
+		}
+
+		// Load the precompiled template with theme, styles, hyphenation and navigation already filled in
+		ST htmlTmpl = ArticleTemplate.getInstance().getArticleTemplate(context, hyphenator != null);
+
+		// Article content values
+		htmlTmpl.add("ARTICLE_URL", article.url);
+		htmlTmpl.add("ARTICLE_TITLE", title);
+		htmlTmpl.add("ARTICLE_AUTHOR", article.author);
+		htmlTmpl.add("FEED_TITLE", feed.title);
+
+		// Special values for this article
+		htmlTmpl.add("CACHED_IMAGES", cachedImages);
+		htmlTmpl.add("LABELS", labels.toString());
+		htmlTmpl.add("UPDATED", DateUtils.getDateTimeCustom(context, article.updated));
+		htmlTmpl.add("ATTACHMENTS", getAttachmentsMarkup(context, article.attachments));
+		htmlTmpl.add("CONTENT", contentClean);
+
+		// Note of the article
+		if (article.note != null && article.note.length() > 0) {
+			htmlTmpl.add("NOTE_TEMPLATE", ArticleTemplate.getInstance().renderNote(context, article.note));
+		} else {
+			htmlTmpl.add("NOTE_TEMPLATE", "");
+		}
+
+		return htmlTmpl.render();
+	}
+
+	/**
+	 * generate HTML code for attachments to be shown inside article
+	 *
+	 * @param attachments collection of attachment URLs
+	 */
+	private static String getAttachmentsMarkup(Context context, Set<String> attachments) {
+		StringBuilder content = new StringBuilder();
+		Map<String, Collection<String>> attachmentsByMimeType = FileUtils.groupFilesByMimeType(attachments);
+
+		if (attachmentsByMimeType.isEmpty())
+			return "";
+
+		Resources res = context.getResources();
+		for (String mimeType : attachmentsByMimeType.keySet()) {
+			Collection<String> mimeTypeUrls = attachmentsByMimeType.get(mimeType);
+			if (mimeTypeUrls == null || mimeTypeUrls.isEmpty())
+				continue;
+
+			if (mimeType.equals(FileUtils.IMAGE_MIME)) {
+				ST st = new ST(res.getString(R.string.ATTACHMENT_IMAGES_TEMPLATE));
+				st.add("items", mimeTypeUrls);
+				content.append(st.render());
+			} else {
+				ST st = new ST(res.getString(R.string.ATTACHMENT_MEDIA_TEMPLATE));
+				st.add("items", mimeTypeUrls);
+				CharSequence linkText = mimeType.equals(FileUtils.AUDIO_MIME) || mimeType.equals(FileUtils.VIDEO_MIME) ? res.getText(R.string.ArticleActivity_MediaPlay) : res.getText(R.string.ArticleActivity_MediaDisplayLink);
+				st.add("linkText", linkText);
+				content.append(st.render());
+			}
+		}
+
+		return content.toString();
+	}
+
+	/**
+	 * Create javascript associative array with article cached image url as key and image hash as value. Only
+	 * RemoteFiles which are "cached" are added to this array so if an image is not available locally it is left as it
+	 * is.
+	 *
+	 * @param articleId article ID
+	 * @return javascript associative array content as text
+	 */
+	private static String getCachedImagesJS(int articleId) {
+		StringBuilder hashes = new StringBuilder();
+		Collection<RemoteFile> rfs = DBHelper.getInstance().getRemoteFiles(articleId);
+
+		if (rfs != null && !rfs.isEmpty()) {
+			for (RemoteFile rf : rfs) {
+
+				if (rf.cached) {
+					if (hashes.length() > 0)
+						hashes.append(",\n");
+
+					hashes.append("'");
+					hashes.append(rf.url);
+					hashes.append("': '");
+					hashes.append(ImageCache.getHashForKey(rf.url));
+					hashes.append("'");
+				}
+
+			}
+		}
+
+		return hashes.toString();
+	}
+
+}
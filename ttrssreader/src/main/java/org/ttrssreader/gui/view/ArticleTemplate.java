@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.gui.view;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroup;
+import org.ttrssreader.R;
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.preferences.Constants;
+
+/**
+ * Compiles the html templates for the article view once and keeps the parts which only depend on the settings
+ * (theme, styles, hyphenation script and navigation buttons) rendered until one of these settings changes. Opening
+ * an article then only has to fill in the values of the article itself.
+ */
+public class ArticleTemplate {
+
+	private static final String TAG = ArticleTemplate.class.getSimpleName();
+
+	private static final char DELIMITER = '$';
+
+	private static final String ARTICLE = "article";
+	private static final String NOTE = "note";
+	private static final String STYLE = "style";
+	private static final String HYPHENATION = "hyphenation";
+
+	// @formatter:off
+	private static final String ARTICLE_ARGS = "STYLE,CACHE_DIR,CACHED_IMAGES,HYPHENATION,THEME,LANGUAGE,ARTICLE_URL,"
+			+ "ARTICLE_TITLE,FEED_TITLE,UPDATED,ARTICLE_AUTHOR,LABELS,NOTE_TEMPLATE,CONTENT,ATTACHMENTS,NAVIGATION";
+	// @formatter:on
+
+	private STGroup group = null;
+
+	// Rendered parts which only depend on the settings
+	private String invariantsKey = null;
+	private String style;
+	private String hyphenation;
+	private String theme;
+	private String navigation;
+	private String cacheDir;
+	private String language;
+
+	// Singleton (see http://stackoverflow.com/a/11165926)
+	private ArticleTemplate() {
+	}
+
+	private static class InstanceHolder {
+		private static final ArticleTemplate instance = new ArticleTemplate();
+	}
+
+	public static ArticleTemplate getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	private STGroup getGroup(Resources res) {
+		if (group == null) {
+			long time = System.currentTimeMillis();
+			STGroup g = new STGroup(DELIMITER, DELIMITER);
+			g.defineTemplate(ARTICLE, ARTICLE_ARGS, res.getString(R.string.HTML_TEMPLATE));
+			g.defineTemplate(NOTE, "NOTE", res.getString(R.string.NOTE_TEMPLATE));
+			g.defineTemplate(STYLE, "TEXT_ALIGN", res.getString(R.string.STYLE_TEMPLATE));
+			g.defineTemplate(HYPHENATION, "LANGUAGE", res.getString(R.string.JAVASCRIPT_HYPHENATION_TEMPLATE));
+			group = g;
+			Log.d(TAG, "Compiled article templates in " + (System.currentTimeMillis() - time) + "ms");
+		}
+		return group;
+	}
+
+	/**
+	 * Renders the parts of the page which don't depend on the article again if one of the relevant settings has
+	 * changed since the last call.
+	 */
+	private void updateInvariants(Context context) {
+		Controller controller = Controller.getInstance();
+		Resources res = context.getResources();
+
+		boolean alignFlushLeft = controller.alignFlushLeft();
+		boolean allowHyphenation = controller.allowHyphenation();
+		boolean htmlNavigation = controller.showButtonsMode() == Constants.SHOW_BUTTONS_MODE_HTML;
+		String themeName = res.getString(controller.getThemeHTML(context));
+		String folder = controller.cacheFolder();
+		String lang = controller.hyphenationLanguage();
+
+		String key = alignFlushLeft + "|" + allowHyphenation + "|" + htmlNavigation + "|" + themeName + "|" + folder
+				+ "|" + lang;
+		if (key.equals(invariantsKey))
+			return;
+
+		STGroup g = getGroup(res);
+
+		// Replace alignment-marker: align:left or align:justify
+		ST styleST = g.getInstanceOf(STYLE);
+		styleST.add("TEXT_ALIGN", res.getString(alignFlushLeft ? R.string.ALIGN_LEFT : R.string.ALIGN_JUSTIFY));
+		style = styleST.render();
+
+		if (allowHyphenation) {
+			ST hyphenationST = g.getInstanceOf(HYPHENATION);
+			hyphenationST.add("LANGUAGE", lang);
+			hyphenation = hyphenationST.render();
+		} else {
+			hyphenation = "";
+		}
+
+		navigation = htmlNavigation ? res.getString(R.string.BOTTOM_NAVIGATION_TEMPLATE) : "";
+		theme = themeName;
+		cacheDir = folder;
+		language = lang;
+		invariantsKey = key;
+	}
+
+	/**
+	 * @param context the context to load resources and the current theme from
+	 * @return a key which changes whenever one of the settings used by the template changes
+	 */
+	public synchronized String getSettingsKey(Context context) {
+		updateInvariants(context);
+		return invariantsKey;
+	}
+
+	/**
+	 * Returns a new instance of the article template with all values filled in which don't depend on the article.
+	 * The caller adds ARTICLE_URL, ARTICLE_TITLE, ARTICLE_AUTHOR, FEED_TITLE, CACHED_IMAGES, LABELS, UPDATED,
+	 * ATTACHMENTS, CONTENT and NOTE_TEMPLATE and renders it.
+	 *
+	 * @param context        the context to load resources and the current theme from
+	 * @param hyphenatedText true if the caller already inserted soft hyphens into the text, the Hyphenator.js script
+	 *                       is only included if hyphenation is enabled and this is false
+	 * @return a template instance which is not shared with other callers
+	 */
+	public synchronized ST getArticleTemplate(Context context, boolean hyphenatedText) {
+		updateInvariants(context);
+
+		ST ret = getGroup(context.getResources()).getInstanceOf(ARTICLE);
+		ret.add("STYLE", style);
+		ret.add("HYPHENATION", hyphenatedText ? "" : hyphenation);
+		ret.add("THEME", theme);
+		ret.add("CACHE_DIR", cacheDir);
+		ret.add("LANGUAGE", language);
+		ret.add("NAVIGATION", navigation);
+		return ret;
+	}
+
+	/**
+	 * @param context the context to load resources from
+	 * @param note    the note of the article
+	 * @return the html block displaying the note
+	 */
+	public synchronized String renderNote(Context context, String note) {
+		Resources res = context.getResources();
+		ST noteST = getGroup(res).getInstanceOf(NOTE);
+		noteST.add("NOTE", res.getString(R.string.Commons_HtmlPrefixNote) + " " + note);
+		return noteST.render();
+	}
+
+}
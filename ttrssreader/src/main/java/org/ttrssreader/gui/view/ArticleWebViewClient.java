@@ -28,9 +28,7 @@ import android.os.Environment;
 import android.util.Log;
 import android.webkit.URLUtil;
 import android.webkit.WebResourceRequest;
-import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
-import android.webkit.WebViewClient;
 
 import org.ttrssreader.MyApplication;
 import org.ttrssreader.R;
@@ -38,6 +36,7 @@ import org.ttrssreader.controllers.Controller;
 import org.ttrssreader.controllers.Data;
 import org.ttrssreader.gui.MediaPlayerActivity;
 import org.ttrssreader.gui.fragments.ArticleFragment;
+import org.ttrssreader.net.HttpClientFactory;
 import org.ttrssreader.utils.AsyncTask;
 import org.ttrssreader.utils.FileUtils;
 import org.ttrssreader.utils.Utils;
@@ -50,13 +49,16 @@ import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.Locale;
 
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 import pub.devrel.easypermissions.AfterPermissionGranted;
 import pub.devrel.easypermissions.EasyPermissions;
 
-public class ArticleWebViewClient extends WebViewClient {
+public class ArticleWebViewClient extends AuthWebViewClient {
 
 	private static final String TAG = ArticleWebViewClient.class.getSimpleName();
 
@@ -242,19 +244,25 @@ public class ArticleWebViewClient extends WebViewClient {
 			BufferedInputStream bis;
 			FileOutputStream fos;
 			BufferedOutputStream bos = null;
+			Response response = null;
 
 			int size = -1;
 			File file;
 			try {
-				URLConnection con = Controller.getInstance().openConnection(url);
+				Request.Builder reqBuilder = new Request.Builder().url(url);
 
 				file = new File(folder, URLUtil.guessFileName(url.toString(), null, ".mp3"));
 				if (file.exists()) {
 					size = (int) file.length();
-					con.setRequestProperty("Range", "bytes=" + size + "-"); // try to resume downloads
+					reqBuilder.header("Range", "bytes=" + size + "-"); // try to resume downloads
 				}
 
-				bis = new BufferedInputStream(con.getInputStream());
+				response = HttpClientFactory.getInstance().getClient().newCall(reqBuilder.build()).execute();
+				ResponseBody body = response.body();
+				if (!response.isSuccessful() || body == null)
+					throw new IOException("Server returned status: " + response.code());
+
+				bis = new BufferedInputStream(body.byteStream());
 				fos = (size == 0) ? new FileOutputStream(file) : new FileOutputStream(file, true);
 				bos = new BufferedOutputStream(fos, BUFFER);
 
@@ -292,37 +300,10 @@ public class ArticleWebViewClient extends WebViewClient {
 						// Empty!
 					}
 				}
+				if (response != null)
+					response.close();
 			}
 		}
 	}
 
-	/*
-	 * Uses old deprecated method call and should be removed some day but until then I won't duplicate the code
-	 */
-	@Override
-	public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
-		return shouldInterceptRequest(view, request.getUrl().toString());
-	}
-
-	/*
-	 * WebKit does not call onReceivedHttpAuthRequest (or onReceivedError for that matter) when
-	 * processing resources within a rendered document. As a result, it is not possible to
-	 * inject authentication information without intercepting the resource loading itself.
-	 */
-	@Override
-	public WebResourceResponse shouldInterceptRequest(WebView view, String urlStr) {
-		if (!Controller.getInstance().useHttpAuth())
-			return null;
-		try {
-			URL url = new URL(urlStr);
-			if (!Controller.getInstance().urlNeedsAuthentication(url))
-				return null;
-			URLConnection c = Controller.getInstance().openConnection(url);
-			return new WebResourceResponse(c.getContentType(), c.getContentEncoding(), c.getInputStream());
-		} catch (IOException e) {
-			Log.e(TAG, "Failed to fetch " + urlStr);
-		}
-		return null;
-	}
-
 }
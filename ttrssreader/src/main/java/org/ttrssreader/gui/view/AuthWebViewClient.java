@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.gui.view;
+
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.net.HttpClientFactory;
+
+import java.io.IOException;
+import java.net.URL;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Loads the resources of an article which need HTTP basic authentication. Used on its own by views which are not
+ * displayed yet (see {@link WebViewPool}) so preloaded pages get the same images as pages loaded by the displayed
+ * view.
+ */
+public class AuthWebViewClient extends WebViewClient {
+
+	private static final String TAG = AuthWebViewClient.class.getSimpleName();
+
+	/*
+	 * Uses old deprecated method call and should be removed some day but until then I won't duplicate the code
+	 */
+	@Override
+	public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+		return shouldInterceptRequest(view, request.getUrl().toString());
+	}
+
+	/*
+	 * WebKit does not call onReceivedHttpAuthRequest (or onReceivedError for that matter) when
+	 * processing resources within a rendered document. As a result, it is not possible to
+	 * inject authentication information without intercepting the resource loading itself.
+	 */
+	@Override
+	public WebResourceResponse shouldInterceptRequest(WebView view, String urlStr) {
+		if (!Controller.getInstance().useHttpAuth())
+			return null;
+		try {
+			URL url = new URL(urlStr);
+			if (!Controller.getInstance().urlNeedsAuthentication(url))
+				return null;
+
+			// The WebView closes the stream when done, the response is released with it
+			Request request = new Request.Builder().url(url).build();
+			Response response = HttpClientFactory.getInstance().getClient().newCall(request).execute();
+			ResponseBody body = response.body();
+			if (body == null) {
+				response.close();
+				return null;
+			}
+
+			MediaType type = body.contentType();
+			String mimeType = type != null ? type.type() + "/" + type.subtype() : null;
+			String encoding = type != null && type.charset() != null ? type.charset().name() : null;
+			return new WebResourceResponse(mimeType, encoding, body.byteStream());
+		} catch (IOException e) {
+			Log.e(TAG, "Failed to fetch " + urlStr);
+		}
+		return null;
+	}
+
+}
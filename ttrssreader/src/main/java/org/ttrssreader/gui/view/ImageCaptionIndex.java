@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.gui.view;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The captions of the images of an article, built once when the page is rendered so a long-press on an image doesn't
+ * have to parse the whole page again. Images without caption are not stored and the entries are kept in two arrays
+ * in the order of the images in the article.
+ */
+public class ImageCaptionIndex {
+
+	public static final ImageCaptionIndex EMPTY = new ImageCaptionIndex(new String[0], new String[0]);
+
+	private final String[] sources;
+	private final String[] captions;
+
+	private ImageCaptionIndex(String[] sources, String[] captions) {
+		this.sources = sources;
+		this.captions = captions;
+	}
+
+	/**
+	 * Collects the captions of all images in the content of an article. The caption is the title-attribute, the
+	 * alt-attribute or the figcaption of the surrounding figure, in this order.
+	 *
+	 * @param content the html content of the article
+	 * @return the index, {@link #EMPTY} if no image has a caption
+	 */
+	public static ImageCaptionIndex build(String content) {
+		if (content == null || !content.contains("<img"))
+			return EMPTY;
+
+		// Relative urls are resolved against the base url of the page in the WebView, like the WebView does
+		Document doc = Jsoup.parseBodyFragment(content, MyWebView.BASE_URL);
+		List<String> sources = new ArrayList<>();
+		List<String> captions = new ArrayList<>();
+
+		for (Element img : doc.getElementsByTag("img")) {
+			String src = img.attr("src");
+			if (src.isEmpty())
+				continue;
+
+			String caption = getCaption(img);
+			if (caption == null)
+				continue;
+
+			sources.add(src);
+			captions.add(caption);
+
+			// The WebView reports the url resolved against its base url
+			String absolute = img.absUrl("src");
+			// java.net.URL drops the empty host of file urls, the WebView keeps it: file:///android_asset/...
+			if (absolute.startsWith("file:/") && !absolute.startsWith("file://"))
+				absolute = "file://" + absolute.substring("file:".length());
+			if (!absolute.isEmpty() && !absolute.equals(src)) {
+				sources.add(absolute);
+				captions.add(caption);
+			}
+		}
+
+		if (sources.isEmpty())
+			return EMPTY;
+		return new ImageCaptionIndex(sources.toArray(new String[sources.size()]),
+				captions.toArray(new String[captions.size()]));
+	}
+
+	private static String getCaption(Element img) {
+		// Prefer title-attribute over alt since this is the html default
+		String caption = img.attr("title").trim();
+		if (!caption.isEmpty())
+			return caption;
+
+		caption = img.attr("alt").trim();
+		if (!caption.isEmpty())
+			return caption;
+
+		for (Element parent : img.parents()) {
+			if ("figure".equals(parent.tagName())) {
+				Element figcaption = parent.getElementsByTag("figcaption").first();
+				if (figcaption != null && !figcaption.text().trim().isEmpty())
+					return figcaption.text().trim();
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param src the url of the image
+	 * @return the caption of the first image with this url or null if there is none
+	 */
+	public String getCaption(String src) {
+		if (src == null)
+			return null;
+
+		for (int i = 0; i < sources.length; i++) {
+			if (src.equals(sources[i]))
+				return captions[i];
+		}
+		return null;
+	}
+
+	/**
+	 * @return the approximate number of chars held by this index
+	 */
+	int size() {
+		int size = 0;
+		for (int i = 0; i < sources.length; i++) {
+			size += sources[i].length() + captions[i].length();
+		}
+		return size;
+	}
+
+}
@@ -17,8 +17,10 @@
 
 package org.ttrssreader.gui.view;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.view.View;
+import android.webkit.JavascriptInterface;
 import android.webkit.WebView;
 
 public class MyWebView extends WebView {
@@ -26,8 +28,93 @@ public class MyWebView extends WebView {
 	@SuppressWarnings("unused")
 	private static final String TAG = MyWebView.class.getSimpleName();
 
+	static final String BASE_URL = "file:///android_asset/";
+
+	// The interface is registered once so pages loaded before the view is displayed can use it too
+	private final ArticleBridge bridge = new ArticleBridge();
+
+	private int articleId = Integer.MIN_VALUE;
+	private String html = null;
+
+	@SuppressLint({"SetJavaScriptEnabled", "AddJavascriptInterface"})
 	public MyWebView(Context context) {
 		super(context);
+		getSettings().setJavaScriptEnabled(true);
+		addJavascriptInterface(bridge, "articleController");
+	}
+
+	/**
+	 * Receives the calls from the "articleController" object of the article page.
+	 */
+	public interface ArticleController {
+		void prev();
+
+		void next();
+
+		void copyContentToClipboard(String content);
+	}
+
+	private static class ArticleBridge {
+		private volatile ArticleController controller;
+
+		@JavascriptInterface
+		public void prev() {
+			ArticleController c = controller;
+			if (c != null)
+				c.prev();
+		}
+
+		@JavascriptInterface
+		public void next() {
+			ArticleController c = controller;
+			if (c != null)
+				c.next();
+		}
+
+		@JavascriptInterface
+		public void copyContentToClipboard(String content) {
+			ArticleController c = controller;
+			if (c != null)
+				c.copyContentToClipboard(content);
+		}
+	}
+
+	/**
+	 * @param controller the receiver of calls from the page, null if the view isn't displayed
+	 */
+	public void setArticleController(ArticleController controller) {
+		bridge.controller = controller;
+	}
+
+	/**
+	 * Loads the rendered page of an article unless exactly this page is already loaded.
+	 *
+	 * @param articleId the id of the article
+	 * @param html      the rendered page
+	 */
+	public void loadArticle(int articleId, String html) {
+		if (this.articleId == articleId && html.equals(this.html))
+			return;
+
+		this.articleId = articleId;
+		this.html = html;
+		loadDataWithBaseURL(BASE_URL, html, "text/html", "utf-8", null);
+	}
+
+	/**
+	 * @return the id of the article which is loaded or Integer.MIN_VALUE
+	 */
+	public int getArticleId() {
+		return articleId;
+	}
+
+	/**
+	 * Forgets the loaded article and loads an empty page so the view can be reused.
+	 */
+	public void clearArticle() {
+		articleId = Integer.MIN_VALUE;
+		html = null;
+		loadUrl("about:blank");
 	}
 
 	private OnEdgeReachedListener mOnTopReachedListener = null;
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.gui.view;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import org.ttrssreader.R;
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.preferences.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a few WebViews for the article view around instead of creating a new one for every article. The articles
+ * next to the displayed one are rendered and loaded into pooled views while the user is reading, so moving to the
+ * next or previous article only has to attach a view which already shows the page.
+ * <p>
+ * The views are created with a {@link MutableContextWrapper} so they can be handed from one activity to the next
+ * without leaking it. All methods must be called on the UI thread.
+ */
+public class WebViewPool {
+
+	private static final String TAG = WebViewPool.class.getSimpleName();
+
+	// Blank views kept for reuse
+	private static final int MAX_IDLE = 1;
+	// Views holding the page of an article which is not displayed yet: next and previous article and the article
+	// which is about to be displayed, its fragment takes the view after preload() has been called
+	private static final int MAX_PRELOADED = 3;
+
+	private final List<MyWebView> idle = new ArrayList<>();
+	private final SparseArray<MyWebView> preloaded = new SparseArray<>();
+
+	// Singleton (see http://stackoverflow.com/a/11165926)
+	private WebViewPool() {
+	}
+
+	private static class InstanceHolder {
+		private static final WebViewPool instance = new WebViewPool();
+	}
+
+	public static WebViewPool getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	/**
+	 * Returns a view for the given article. If the page of the article has been preloaded that view is returned,
+	 * otherwise a blank one.
+	 *
+	 * @param context   the activity the view will be attached to
+	 * @param articleId the article which is going to be displayed
+	 * @return a configured view which is not attached to any parent
+	 */
+	public MyWebView acquire(Context context, int articleId) {
+		MyWebView view = preloaded.get(articleId);
+		if (view != null) {
+			preloaded.remove(articleId);
+			Log.d(TAG, "Using preloaded view for article " + articleId);
+		} else if (!idle.isEmpty()) {
+			view = idle.remove(idle.size() - 1);
+		} else {
+			view = create(context);
+		}
+
+		((MutableContextWrapper) view.getContext()).setBaseContext(context);
+		configure(view, context);
+		return view;
+	}
+
+	/**
+	 * Hands a view back to the pool. It is detached, disconnected from its fragment and either kept for reuse or
+	 * destroyed.
+	 *
+	 * @param view the view which is not displayed anymore
+	 */
+	public void release(MyWebView view) {
+		if (view == null)
+			return;
+
+		detach(view);
+		view.stopLoading();
+		// Pages preloaded into pooled views still need their images fetched with authentication
+		view.setWebViewClient(new AuthWebViewClient());
+		view.setArticleController(null);
+		view.setOnKeyListener(null);
+		view.setOnTouchListener(null);
+		view.setOnCreateContextMenuListener(null);
+		((MutableContextWrapper) view.getContext()).setBaseContext(view.getContext().getApplicationContext());
+
+		if (idle.size() < MAX_IDLE) {
+			view.clearArticle();
+			view.scrollTo(0, 0);
+			idle.add(view);
+		} else {
+			view.destroy();
+		}
+	}
+
+	/**
+	 * Loads the pages of the articles before and after the given article into pooled views. Views preloaded for
+	 * other articles are recycled.
+	 *
+	 * @param context the current activity
+	 * @param ids     the ids of the articles in the order they are displayed
+	 * @param current the id of the article which is displayed now
+	 */
+	public void preload(Context context, List<Integer> ids, int current) {
+		int index = ids.indexOf(current);
+		if (index < 0)
+			return;
+
+		final List<Integer> wanted = new ArrayList<>(2);
+		if (index + 1 < ids.size())
+			wanted.add(ids.get(index + 1));
+		if (index - 1 >= 0)
+			wanted.add(ids.get(index - 1));
+
+		// Drop views of articles which are not next to the current one anymore
+		for (int i = preloaded.size() - 1; i >= 0; i--) {
+			int articleId = preloaded.keyAt(i);
+			if (articleId != current && !wanted.contains(articleId)) {
+				MyWebView view = preloaded.valueAt(i);
+				preloaded.removeAt(i);
+				release(view);
+			}
+		}
+
+		final Context appContext = context.getApplicationContext();
+		for (final Integer articleId : wanted) {
+			ArticleRenderer.getInstance().renderAsync(appContext, articleId, new ArticleRenderer.RenderListener() {
+				@Override
+				public void onRendered(ArticleRenderer.RenderedArticle rendered) {
+					MyWebView view = preloaded.get(articleId);
+					if (view == null) {
+						if (preloaded.size() >= MAX_PRELOADED)
+							return;
+						view = !idle.isEmpty() ? idle.remove(idle.size() - 1) : create(appContext);
+						configure(view, appContext);
+						preloaded.put(articleId, view);
+					}
+					view.loadArticle(articleId, rendered.html);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Destroys all views which are not in use, e.g. when the article view is left.
+	 */
+	public void clear() {
+		for (MyWebView view : idle) {
+			view.destroy();
+		}
+		idle.clear();
+
+		for (int i = 0; i < preloaded.size(); i++) {
+			preloaded.valueAt(i).destroy();
+		}
+		preloaded.clear();
+	}
+
+	private static MyWebView create(Context context) {
+		MyWebView view = new MyWebView(new MutableContextWrapper(context.getApplicationContext()));
+		view.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+		view.setScrollBarStyle(WebView.SCROLLBARS_OUTSIDE_OVERLAY);
+		view.setScrollbarFadingEnabled(true);
+		view.setLayerType(View.LAYER_TYPE_SOFTWARE, null);
+		view.setWebViewClient(new AuthWebViewClient());
+		return view;
+	}
+
+	private static void detach(View view) {
+		if (view.getParent() instanceof ViewGroup)
+			((ViewGroup) view.getParent()).removeView(view);
+	}
+
+	/**
+	 * Applies the settings which may have changed since the view was created.
+	 */
+	private static void configure(WebView view, Context context) {
+		// Set theme background color. Should be possible via xml also.
+		Resources res = context.getResources();
+		switch (Controller.getInstance().getSelectedTheme()) {
+			case Constants.THEME_BLACK:
+				view.setBackgroundColor(res.getColor(R.color.themeBlackBackground));
+				break;
+			case Constants.THEME_WHITE:
+				view.setBackgroundColor(res.getColor(R.color.themeWhiteBackground));
+				break;
+			case Constants.THEME_LIGHT:
+				view.setBackgroundColor(res.getColor(R.color.themeLightBackground));
+				break;
+			case Constants.THEME_DARK:
+				view.setBackgroundColor(res.getColor(R.color.themeDarkBackground));
+				break;
+			case Constants.THEME_AUTO:
+			default:
+				if (Controller.getInstance().isThemeLight(context))
+					view.setBackgroundColor(res.getColor(R.color.themeLightBackground));
+				else
+					view.setBackgroundColor(res.getColor(R.color.themeDarkBackground));
+		}
+
+		boolean supportZoom = Controller.getInstance().supportZoomControls();
+		view.getSettings().setSupportZoom(supportZoom);
+		view.getSettings().setBuiltInZoomControls(supportZoom);
+		view.getSettings().setDisplayZoomControls(false);
+		view.getSettings().setTextZoom(Controller.getInstance().textZoom());
+		applyLoadSettings(view);
+	}
+
+	/**
+	 * Only load cached media when working offline or if media should not be loaded.
+	 */
+	public static void applyLoadSettings(WebView view) {
+		if (Controller.getInstance().workOffline() || !Controller.getInstance().loadMedia()) {
+			view.getSettings().setCacheMode(WebSettings.LOAD_CACHE_ONLY);
+		} else {
+			view.getSettings().setCacheMode(WebSettings.LOAD_DEFAULT);
+		}
+		if (!Controller.getInstance().loadMedia() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1)
+			view.getSettings().setMediaPlaybackRequiresUserGesture(false);
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.imageCache;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.util.SparseIntArray;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.ttrssreader.MyApplication;
+import org.ttrssreader.controllers.DBHelper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Memory-bounded cache of decoded feed icons, scaled to the size they are displayed in. Icons are read from the
+ * database and decoded in a background thread, the list adapters only set the bitmap if it is already available.
+ * Entries are removed by {@link DBHelper} when the icon of a feed changes.
+ */
+public class FeedIconCache {
+
+	@SuppressWarnings("unused")
+	private static final String TAG = FeedIconCache.class.getSimpleName();
+
+	private static final int ICON_SIZE_DP = 16;
+	private static final int MAX_CACHE_SIZE_KB = 4 * 1024;
+
+	private final LruCache<Integer, Entry> cache;
+	private final int iconSize;
+
+	private final ExecutorService loader = Executors.newSingleThreadExecutor();
+	private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+	// Incremented by remove(), a load which started before only puts its result into the cache if it didn't change
+	private final SparseIntArray generations = new SparseIntArray();
+
+	// Views waiting for an icon which is currently being loaded
+	private final Map<Integer, List<WeakReference<ImageView>>> waiting = new HashMap<>();
+
+	private static class InstanceHolder {
+		private static final FeedIconCache instance = new FeedIconCache();
+	}
+
+	public static FeedIconCache getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	private FeedIconCache() {
+		int maxSize = (int) Math.min(MAX_CACHE_SIZE_KB, Runtime.getRuntime().maxMemory() / 1024 / 32);
+		cache = new LruCache<Integer, Entry>(maxSize) {
+			@Override
+			protected int sizeOf(Integer key, Entry value) {
+				if (value.bitmap == null)
+					return 1;
+				return Math.max(1, value.bitmap.getByteCount() / 1024);
+			}
+		};
+
+		float density = MyApplication.context().getResources().getDisplayMetrics().density;
+		iconSize = Math.round(ICON_SIZE_DP * density);
+	}
+
+	/**
+	 * Shows the icon of the given feed in the view. If the icon is not in the cache yet the view is hidden and the icon
+	 * is loaded in the background.
+	 */
+	public void loadInto(ImageView view, int feedId) {
+		view.setTag(feedId);
+
+		Entry entry = cache.get(feedId);
+		if (entry != null) {
+			show(view, entry.bitmap);
+			return;
+		}
+
+		view.setVisibility(View.GONE);
+
+		synchronized (waiting) {
+			List<WeakReference<ImageView>> views = waiting.get(feedId);
+			if (views != null) {
+				// Already being loaded
+				views.add(new WeakReference<>(view));
+				return;
+			}
+			views = new ArrayList<>();
+			views.add(new WeakReference<>(view));
+			waiting.put(feedId, views);
+		}
+
+		loader.execute(new LoadTask(feedId));
+	}
+
+	/**
+	 * Removes the icon of the given feed from the cache, it will be loaded again on next access.
+	 */
+	public void remove(int feedId) {
+		synchronized (generations) {
+			generations.put(feedId, generations.get(feedId) + 1);
+			cache.remove(feedId);
+		}
+	}
+
+	public void clear() {
+		cache.evictAll();
+	}
+
+	private static void show(ImageView view, Bitmap bitmap) {
+		if (bitmap != null) {
+			view.setVisibility(View.VISIBLE);
+			view.setImageBitmap(bitmap);
+		} else {
+			view.setVisibility(View.GONE);
+		}
+	}
+
+	private Bitmap decode(byte[] icon) {
+		if (icon == null || icon.length == 0)
+			return null;
+
+		// Read size first so big icons can be subsampled while decoding
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeByteArray(icon, 0, icon.length, options);
+
+		int sampleSize = 1;
+		while (options.outWidth / (sampleSize * 2) >= iconSize && options.outHeight / (sampleSize * 2) >= iconSize)
+			sampleSize *= 2;
+
+		options.inJustDecodeBounds = false;
+		options.inSampleSize = sampleSize;
+		Bitmap bitmap = BitmapFactory.decodeByteArray(icon, 0, icon.length, options);
+		if (bitmap == null)
+			return null;
+
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		if (width > iconSize || height > iconSize) {
+			// Fit the longer side into the icon size and keep the aspect ratio
+			float scale = (float) iconSize / Math.max(width, height);
+			int scaledWidth = Math.max(1, Math.round(width * scale));
+			int scaledHeight = Math.max(1, Math.round(height * scale));
+			Bitmap scaled = Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+			if (scaled != bitmap)
+				bitmap.recycle();
+			bitmap = scaled;
+		}
+		return bitmap;
+	}
+
+	private class LoadTask implements Runnable {
+		private final int feedId;
+
+		private LoadTask(int feedId) {
+			this.feedId = feedId;
+		}
+
+		@Override
+		public void run() {
+			int generation;
+			synchronized (generations) {
+				generation = generations.get(feedId);
+			}
+
+			final Entry entry = new Entry(decode(DBHelper.getInstance().getFeedIcon(feedId)));
+
+			synchronized (generations) {
+				if (generations.get(feedId) != generation) {
+					// The icon has been replaced while it was read, the waiting views get the new one
+					loader.execute(new LoadTask(feedId));
+					return;
+				}
+				cache.put(feedId, entry);
+			}
+
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					List<WeakReference<ImageView>> views;
+					synchronized (waiting) {
+						views = waiting.remove(feedId);
+					}
+					if (views == null)
+						return;
+
+					for (WeakReference<ImageView> ref : views) {
+						ImageView view = ref.get();
+						// Views are recycled by the list, only show the icon if the view still displays this feed
+						if (view != null && Integer.valueOf(feedId).equals(view.getTag()))
+							show(view, entry.bitmap);
+					}
+				}
+			});
+		}
+	}
+
+	private static class Entry {
+		final Bitmap bitmap; // null if the feed has no icon
+
+		Entry(Bitmap bitmap) {
+			this.bitmap = bitmap;
+		}
+	}
+
+}
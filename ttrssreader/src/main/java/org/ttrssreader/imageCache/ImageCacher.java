@@ -20,8 +20,6 @@ package org.ttrssreader.imageCache;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.net.ConnectivityManager;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
 import org.ttrssreader.controllers.Controller;
@@ -31,6 +29,7 @@ import org.ttrssreader.gui.interfaces.ICacheEndListener;
 import org.ttrssreader.model.pojos.Article;
 import org.ttrssreader.model.pojos.Feed;
 import org.ttrssreader.model.pojos.RemoteFile;
+import org.ttrssreader.net.HttpClientFactory;
 import org.ttrssreader.utils.AsyncTask;
 import org.ttrssreader.utils.FileUtils;
 import org.ttrssreader.utils.StringSupport;
@@ -41,8 +40,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -53,8 +52,17 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 class ImageCacher extends AsyncTask<Void, Integer, Void> {
 
 	private static final String TAG = ImageCacher.class.getSimpleName();
@@ -64,6 +72,9 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 	private static final int ON_CACHE_INTERRUPTED = -2;
 	private static final int ON_CACHE_START = -3;
 
+	private static final int MAX_DOWNLOADS_PER_HOST = 2;
+	private static final long MAX_DOWNLOAD_TIME = 30 * Utils.MINUTE;
+
 	private ICacheEndListener parent;
 	ConnectivityManager cm;
 
@@ -75,10 +86,14 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 	private long cacheSizeMax;
 	private ImageCache imageCache;
 	private long folderSize;
-	private long downloaded = 0;
+	private volatile long downloaded = 0;
 	private int taskCount = 0;
 
+	private OkHttpClient client;
+
 	private final Map<Integer, DownloadImageTask> map = new HashMap<>();
+	// Limits the number of concurrent downloads from a single host:
+	private final Map<String, Semaphore> hostPermits = new HashMap<>();
 	// Cache values and insert them later:
 	Map<Integer, List<String>> articleFiles = new HashMap<>();
 	Map<String, Long> remoteFiles = new HashMap<>();
@@ -88,55 +103,6 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 		this.onlyArticles = onlyArticles;
 		this.networkType = networkType;
 		this.cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-
-		// Create Handler in a new Thread so all tasks are started in this new thread instead of the main UI-Thread
-		Thread myHandler = new MyHandler();
-		myHandler.start();
-	}
-
-	private static final Object LOCK_HANDLER = new Object();
-	private static Handler handler;
-	private static volatile Boolean handlerInitialized = false;
-
-	private static class MyHandler extends Thread {
-		// Source: http://mindtherobot.com/blog/159/android-guts-intro-to-loopers-and-handlers/
-		@Override
-		public void run() {
-			try {
-				Looper.prepare();
-				handler = new Handler();
-				synchronized (LOCK_HANDLER) {
-					handlerInitialized = true;
-					LOCK_HANDLER.notifyAll();
-				}
-				Looper.loop();
-			} catch (Throwable t) {
-				t.printStackTrace();
-			}
-		}
-	}
-
-	// This method is allowed to be called from any thread
-	private synchronized void requestStop() {
-		// Wait for the handler to be fully initialized:
-		long wait = Utils.SECOND * 2;
-		if (!handlerInitialized) {
-			synchronized (LOCK_HANDLER) {
-				while (!handlerInitialized && wait > 0) {
-					try {
-						wait = wait - 300;
-						LOCK_HANDLER.wait(300);
-					} catch (InterruptedException e) {
-						// Empty!
-					}
-				}
-			}
-		}
-		handler.post(() -> {
-			Looper looper = Looper.myLooper();
-			if (looper != null)
-				looper.quitSafely();
-		});
 	}
 
 	@Override
@@ -152,7 +118,6 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 
 		// Cleanup
 		publishProgress(ON_CACHE_END); // Call onCacheEnd()
-		requestStop();
 		return null;
 	}
 
@@ -273,6 +238,16 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 		taskCount = articles.size();
 		Log.d(TAG, "Articles count for image caching: " + taskCount);
 
+		// Short timeouts on top of the shared client, pool and dispatcher are still shared
+		client = HttpClientFactory.getInstance().getClient().newBuilder()
+				.connectTimeout(2, TimeUnit.SECONDS)
+				.readTimeout(1, TimeUnit.SECONDS)
+				.build();
+
+		// Articles are handed to the pool in the order they were queried, each article is processed by one worker
+		int threads = Math.max(1, Controller.getInstance().cacheImageThreads());
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
 		int count = 0;
 		for (Article article : articles) {
 			if (count++ % 5 == 0 && checkCancelRequested())
@@ -298,8 +273,10 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 
 			if (!set.isEmpty()) {
 				DownloadImageTask task = new DownloadImageTask(articleId, StringSupport.setToArray(set));
-				handler.post(task);
-				map.put(articleId, task);
+				synchronized (map) {
+					map.put(articleId, task);
+				}
+				pool.execute(task);
 			} else {
 				DBHelper.getInstance().updateArticleCachedImages(articleId, 0);
 			}
@@ -310,32 +287,35 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 			}
 		}
 
+		// No more tasks, wait for the running ones to finish
+		pool.shutdown();
 		long timeWait = System.currentTimeMillis();
-		while (!map.isEmpty()) {
-			if (count++ % 5 == 0 && checkCancelRequested())
-				break;
-			synchronized (map) {
-				try {
+		try {
+			while (!pool.awaitTermination(Utils.SECOND, TimeUnit.MILLISECONDS)) {
+				if (checkCancelRequested() || System.currentTimeMillis() - timeWait > MAX_DOWNLOAD_TIME) {
 					// Only wait for 30 Minutes, then stop all running tasks
-					int minutes = (int) ((System.currentTimeMillis() - timeWait) / Utils.MINUTE);
-					if (minutes > 30) {
+					synchronized (map) {
 						for (DownloadImageTask task : map.values()) {
 							task.cancel();
 						}
-						break;
 					}
-					map.wait(Utils.SECOND);
-					map.notifyAll();
-				} catch (InterruptedException e) {
-					Log.d(TAG, "Got an InterruptedException!");
+					pool.shutdownNow();
+					break;
 				}
 			}
+		} catch (InterruptedException e) {
+			Log.d(TAG, "Got an InterruptedException!");
+			pool.shutdownNow();
 		}
 
 		/* Insert cached values, clone map before to avoid ConcurrentModificationException if threads have not
 		cancelled yet. Ignore still running threads. */
-		Map<Integer, List<String>> articleFilesCopy = new HashMap<>(articleFiles);
-		Map<String, Long> remoteFilesCopy = new HashMap<>(remoteFiles);
+		Map<Integer, List<String>> articleFilesCopy;
+		Map<String, Long> remoteFilesCopy;
+		synchronized (map) {
+			articleFilesCopy = new HashMap<>(articleFiles);
+			remoteFilesCopy = new HashMap<>(remoteFiles);
+		}
 		DBHelper.getInstance().insertArticleFiles(articleFilesCopy);
 		DBHelper.getInstance().markRemoteFilesCached(remoteFilesCopy);
 
@@ -369,7 +349,7 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 			long size = 0;
 			try {
 				for (String url : fileUrls) {
-					long urlSize = downloadToFile(url, imageCache.getCacheFile(url), maxFileSize, minFileSize);
+					long urlSize = downloadToFileLimited(url, imageCache.getCacheFile(url), maxFileSize, minFileSize);
 					if (urlSize > 0) {
 						size += urlSize;
 						finishedFileUrls.add(url);
@@ -382,15 +362,13 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 				t.printStackTrace();
 			} finally {
 				articleFilesLocal.put(articleId, finishedFileUrls);
-				if (size > 0)
-					downloaded += size;
 
 				synchronized (map) {
+					downloaded += size;
 					articleFiles.putAll(articleFilesLocal);
 					remoteFiles.putAll(remoteFilesLocal);
 
 					map.remove(articleId);
-					map.notifyAll();
 				}
 			}
 		}
@@ -400,6 +378,35 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 		}
 	}
 
+	/**
+	 * Same as {@link #downloadToFile(String, File, long, long)} but waits until less than
+	 * {@link #MAX_DOWNLOADS_PER_HOST} downloads from the same host are running.
+	 */
+	private long downloadToFileLimited(String downloadUrl, File file, long maxSize, long minSize) throws InterruptedException {
+		String host;
+		try {
+			host = new URL(downloadUrl).getHost();
+		} catch (MalformedURLException e) {
+			host = "";
+		}
+
+		Semaphore permits;
+		synchronized (hostPermits) {
+			permits = hostPermits.get(host);
+			if (permits == null) {
+				permits = new Semaphore(MAX_DOWNLOADS_PER_HOST, true);
+				hostPermits.put(host, permits);
+			}
+		}
+
+		permits.acquire();
+		try {
+			return downloadToFile(downloadUrl, file, maxSize, minSize);
+		} finally {
+			permits.release();
+		}
+	}
+
 	/**
 	 * Downloads a given URL directly to a file, when maxSize bytes are reached the download is stopped and the file is
 	 * deleted.
@@ -421,20 +428,21 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 		long byteWritten = 0;
 		boolean error = false;
 		InputStream is = null;
+		Response response = null;
 
 		try (FileOutputStream fos = new FileOutputStream(file)) {
 			if (checkCancelRequested())
 				throw new InterruptedIOException("Download was cancelled.");
 
-			URL url = new URL(downloadUrl);
-			URLConnection connection = Controller.getInstance().openConnection(url);
-
-			connection.setConnectTimeout((int) (Utils.SECOND * 2));
-			connection.setReadTimeout((int) Utils.SECOND);
+			Request request = new Request.Builder().url(downloadUrl).build();
+			response = client.newCall(request).execute();
+			ResponseBody body = response.body();
+			if (!response.isSuccessful() || body == null)
+				throw new IOException("Server returned status: " + response.code());
 
 			// Check filesize if available from header
 			try {
-				long length = Long.parseLong(connection.getHeaderField("Content-Length"));
+				long length = Long.parseLong(response.header("Content-Length"));
 
 				if (length <= 0) {
 					byteWritten = length;
@@ -457,7 +465,7 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 				if (!file.exists() && !file.createNewFile())
 					Log.i(TAG, "File could not be created: " + file.getAbsolutePath());
 
-				is = connection.getInputStream();
+				is = body.byteStream();
 
 				int size = (int) Utils.KB * 8;
 				byte[] buf = new byte[size];
@@ -487,6 +495,8 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 				} catch (IOException ignored) {
 				}
 			}
+			if (response != null)
+				response.close();
 		}
 
 		if (error)
@@ -506,6 +516,8 @@ class ImageCacher extends AsyncTask<Void, Integer, Void> {
 	 */
 	private void purgeCache() {
 		long time = System.currentTimeMillis();
+		// Files of articles which have been deleted go first, no lookup of their articles is necessary for that
+		DBHelper.getInstance().purgeOrphanedRemoteFiles();
 		folderSize = DBHelper.getInstance().getCachedFilesSize();
 
 		if (folderSize > cacheSizeMax) {
@@ -19,7 +19,6 @@ package org.ttrssreader.model;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.graphics.BitmapFactory;
 import android.graphics.Typeface;
 import android.view.View;
 import android.view.ViewGroup;
@@ -27,9 +26,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import org.ttrssreader.R;
-import org.ttrssreader.controllers.DBHelper;
+import org.ttrssreader.imageCache.FeedIconCache;
 import org.ttrssreader.model.pojos.Article;
-import org.ttrssreader.model.pojos.Feed;
 import org.ttrssreader.utils.DateUtils;
 
 import java.util.Date;
@@ -87,15 +85,6 @@ public class FeedHeadlineAdapter extends MainAdapter {
 		}
 	}
 
-	private static void setFeedImage(ImageView icon, Feed f) {
-		if (f.icon != null) {
-			icon.setVisibility(View.VISIBLE);
-			icon.setImageBitmap(BitmapFactory.decodeByteArray(f.icon, 0, f.icon.length));
-		} else {
-			icon.setVisibility(View.GONE);
-		}
-	}
-
 	@Override
 	public View newView(Context context, Cursor cursor, ViewGroup parent) {
 		return View.inflate(context, R.layout.item_feedheadline, null);
@@ -117,10 +106,9 @@ public class FeedHeadlineAdapter extends MainAdapter {
 		}
 
 		final Article a = getArticle(cursor);
-		final Feed f = DBHelper.getInstance().getFeed(a.feedId);
 
 		setImage(holder.icon, a);
-		setFeedImage(holder.feedicon, f);
+		FeedIconCache.getInstance().loadInto(holder.feedicon, a.feedId);
 
 		holder.title.setText(a.title);
 		if (a.isUnread)
@@ -42,31 +42,36 @@ class FeedHeadlineCursorHelper extends MainCursorHelper {
 
 	@Override
 	public Cursor createCursor(SQLiteDatabase db, boolean overrideDisplayUnread, boolean buildSafeQuery) {
+		boolean displayUnread = Controller.getInstance().onlyUnread();
+		boolean invertSortArticles = Controller.getInstance().invertSortArticlelist();
+
+		if (overrideDisplayUnread)
+			displayUnread = false;
 
-		String query;
+		String from;
 		if (feedId > -10)
-			query = buildFeedQuery(overrideDisplayUnread, buildSafeQuery);
+			from = buildFeedSelection(displayUnread);
 		else
-			query = buildLabelQuery(overrideDisplayUnread, buildSafeQuery);
+			from = buildLabelSelection(displayUnread);
+
+		String lastOpenedArticlesList = "";
+		if (!buildSafeQuery)
+			lastOpenedArticlesList = Utils.separateItems(Controller.getInstance().lastOpenedArticles, ",");
 
-		return db.rawQuery(query, null);
+		return new PagedHeadlineCursor(db, from, lastOpenedArticlesList, invertSortArticles);
 	}
 
-	private String buildFeedQuery(boolean overrideDisplayUnread, boolean buildSafeQuery) {
-		String lastOpenedArticlesList = Utils.separateItems(Controller.getInstance().lastOpenedArticles, ",");
+	@Override
+	boolean hasUnread(Cursor cursor) {
+		if (cursor instanceof PagedHeadlineCursor)
+			return ((PagedHeadlineCursor) cursor).hasUnread();
+		return super.hasUnread(cursor);
+	}
 
-		boolean displayUnread = Controller.getInstance().onlyUnread();
+	private String buildFeedSelection(boolean displayUnread) {
 		boolean displayCachedImages = Controller.getInstance().onlyDisplayCachedImages();
-		boolean invertSortArticles = Controller.getInstance().invertSortArticlelist();
-
-		if (overrideDisplayUnread)
-			displayUnread = false;
 
 		StringBuilder query = new StringBuilder();
-		query.append(" SELECT ");
-		query.append(" a._id AS _id, a.feedId, a.title, a.isUnread AS unread, a.updateDate, ");
-		query.append(" a.isStarred, a.isPublished, a.note, f.title AS feedTitle ");
-		query.append(" FROM ");
 		query.append(DBHelper.TABLE_ARTICLES).append(" a, ");
 		query.append(DBHelper.TABLE_FEEDS).append(" f ");
 		query.append("WHERE a.feedId=f._id ");
@@ -106,60 +111,17 @@ class FeedHeadlineCursorHelper extends MainCursorHelper {
 				}
 		}
 
-		if (lastOpenedArticlesList.length() > 0 && !buildSafeQuery) {
-			query.append(" UNION SELECT ");
-			query.append(" c._id AS _id, c.feedId, c.title, c.isUnread AS unread, c.updateDate, ");
-			query.append(" c.isStarred, c.isPublished, c.note, d.title AS feedTitle ");
-			query.append(" FROM ");
-			query.append(DBHelper.TABLE_ARTICLES).append(" c, ");
-			query.append(DBHelper.TABLE_FEEDS).append(" d ");
-			query.append("WHERE c.feedId=d._id AND c._id IN (").append(lastOpenedArticlesList).append(" ) ");
-		}
-
-		query.append(" ORDER BY a.updateDate ");
-		query.append(invertSortArticles ? "ASC" : "DESC");
-		query.append(" LIMIT 1000 ");
 		return query.toString();
 	}
 
-	private String buildLabelQuery(boolean overrideDisplayUnread, boolean buildSafeQuery) {
-		String lastOpenedArticlesList = Utils.separateItems(Controller.getInstance().lastOpenedArticles, ",");
-
-		boolean displayUnread = Controller.getInstance().onlyUnread();
-		boolean invertSortArticles = Controller.getInstance().invertSortArticlelist();
-
-		if (overrideDisplayUnread)
-			displayUnread = false;
-
+	private String buildLabelSelection(boolean displayUnread) {
 		StringBuilder query = new StringBuilder();
-		query.append("SELECT ");
-		query.append(" a._id AS _id, a.feedId, a.title, a.isUnread AS unread, a.updateDate, ");
-		query.append(" a.isStarred, a.isPublished, a.note, f.title AS feedTitle ");
-		query.append(" FROM ");
 		query.append(DBHelper.TABLE_FEEDS).append(" f, ");
 		query.append(DBHelper.TABLE_ARTICLES).append(" a, ");
-		query.append(DBHelper.TABLE_ARTICLES2LABELS).append(" a2l, ");
-		query.append(DBHelper.TABLE_FEEDS).append(" l ");
-		query.append("WHERE f._id=a.feedId AND a._id=a2l.articleId AND a2l.labelId=l._id");
+		query.append(DBHelper.TABLE_ARTICLES2LABELS).append(" a2l ");
+		query.append("WHERE f._id=a.feedId AND a._id=a2l.articleId");
 		query.append(" AND a2l.labelId=").append(feedId);
-		query.append(displayUnread ? " AND isUnread>0" : "");
-
-		if (lastOpenedArticlesList.length() > 0 && !buildSafeQuery) {
-			query.append(" UNION SELECT ");
-			query.append(" b._id AS _id, b.feedId, b.title, b.isUnread AS unread, b.updateDate, ");
-			query.append(" b.isStarred, b.isPublished, b.note, f.title AS feedTitle ");
-			query.append(" FROM ");
-			query.append(DBHelper.TABLE_FEEDS).append(" f, ");
-			query.append(DBHelper.TABLE_ARTICLES).append(" b, ");
-			query.append(DBHelper.TABLE_ARTICLES2LABELS).append(" b2m, ");
-			query.append(DBHelper.TABLE_FEEDS).append(" m ");
-			query.append("WHERE f._id=a.feedId AND b2m.labelId=m._id AND b2m.articleId=b._id");
-			query.append(" AND b._id IN (").append(lastOpenedArticlesList).append(" )");
-		}
-
-		query.append(" ORDER BY updateDate ");
-		query.append(invertSortArticles ? "ASC" : "DESC");
-		query.append(" LIMIT 1000 ");
+		query.append(displayUnread ? " AND a.isUnread>0" : "");
 		return query.toString();
 	}
 
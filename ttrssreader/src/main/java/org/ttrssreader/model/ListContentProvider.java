@@ -38,20 +38,24 @@ public class ListContentProvider extends ContentProvider {
 	private static final int CATS = 1;
 	private static final int FEEDS = 2;
 	private static final int HEADLINES = 3;
+	private static final int SEARCH = 4;
 
 	// Params
 	public static final String PARAM_CAT_ID = "categoryId";
 	public static final String PARAM_FEED_ID = "feedId";
 	public static final String PARAM_SELECT_FOR_CAT = "selectArticlesForCategory";
+	public static final String PARAM_SEARCH_QUERY = "query";
 
 	// Public information:
 	private static final String BASE_PATH_CATEGORIES = "categories";
 	private static final String BASE_PATH_FEEDS = "feeds";
 	private static final String BASE_PATH_HEADLINES = "headlines";
+	private static final String BASE_PATH_SEARCH = "search";
 
 	public static final Uri CONTENT_URI_CAT = Uri.parse("content://" + AUTHORITY + "/" + BASE_PATH_CATEGORIES);
 	public static final Uri CONTENT_URI_FEED = Uri.parse("content://" + AUTHORITY + "/" + BASE_PATH_FEEDS);
 	public static final Uri CONTENT_URI_HEAD = Uri.parse("content://" + AUTHORITY + "/" + BASE_PATH_HEADLINES);
+	public static final Uri CONTENT_URI_SEARCH = Uri.parse("content://" + AUTHORITY + "/" + BASE_PATH_SEARCH);
 
 
 	private static final UriMatcher sURIMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -61,6 +65,7 @@ public class ListContentProvider extends ContentProvider {
 		sURIMatcher.addURI(AUTHORITY, BASE_PATH_CATEGORIES, CATS);
 		sURIMatcher.addURI(AUTHORITY, BASE_PATH_FEEDS, FEEDS);
 		sURIMatcher.addURI(AUTHORITY, BASE_PATH_HEADLINES, HEADLINES);
+		sURIMatcher.addURI(AUTHORITY, BASE_PATH_SEARCH, SEARCH);
 	}
 
 	@Override
@@ -100,6 +105,9 @@ public class ListContentProvider extends ContentProvider {
 			case HEADLINES:
 				cursorHelper = new FeedHeadlineCursorHelper(feedId, categoryId, selectArticlesForCategory);
 				break;
+			case SEARCH:
+				cursorHelper = new SearchCursorHelper(uri.getQueryParameter(PARAM_SEARCH_QUERY));
+				break;
 			default:
 				throw new IllegalArgumentException("Unknown URI: " + uri);
 		}
@@ -55,16 +55,32 @@ public abstract class MainAdapter extends SimpleCursorAdapter {
 	}
 
 	public final List<Integer> getIds() {
+		return getIds(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxCount the maximum number of ids to return
+	 * @return the ids of the first maxCount items
+	 */
+	public final List<Integer> getIds(int maxCount) {
 		List<Integer> ret = new ArrayList<>();
 		Cursor cur = getCursor();
 		if (cur == null)
 			return ret;
 
+		// Paged cursors provide their ids directly, don't load all rows just to read the first column
+		int[] ids = cur.getExtras().getIntArray(PagedHeadlineCursor.EXTRA_IDS);
+		if (ids != null) {
+			for (int i = 0; i < ids.length && ret.size() < maxCount; i++) {
+				ret.add(ids[i]);
+			}
+			return ret;
+		}
+
 		if (cur.moveToFirst()) {
-			while (!cur.isAfterLast()) {
+			do {
 				ret.add(cur.getInt(0));
-				cur.move(1);
-			}
+			} while (ret.size() < maxCount && cur.moveToNext());
 		}
 		return ret;
 	}
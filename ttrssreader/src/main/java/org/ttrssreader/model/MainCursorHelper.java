@@ -51,7 +51,7 @@ abstract class MainCursorHelper {
 				// (categoryId == -2 || feedId >= 0): Normal feeds
 				// (categoryId == 0 || feedId == Integer.MIN_VALUE): Uncategorized Feeds
 				if ((categoryId == -2 || feedId >= 0) || (categoryId == 0 || feedId == Integer.MIN_VALUE)) {
-					if (Controller.getInstance().onlyUnread() && !checkUnread(cursor)) {
+					if (Controller.getInstance().onlyUnread() && !hasUnread(cursor)) {
 
 						// Close old cursor safely
 						if (cursor != null && !cursor.isClosed())
@@ -80,7 +80,7 @@ abstract class MainCursorHelper {
 	 * @param cursor the cursor.
 	 * @return true if there are unread articles in the dataset, else false.
 	 */
-	private static boolean checkUnread(Cursor cursor) {
+	boolean hasUnread(Cursor cursor) {
 		if (cursor == null || cursor.isClosed())
 			return false; // Check null or closed
 
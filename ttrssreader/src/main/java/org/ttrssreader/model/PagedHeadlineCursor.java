@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.model;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.util.Log;
+
+import org.ttrssreader.controllers.DBHelper;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cursor over the headlines of a feed, category or label which loads its rows in windows of {@link #PAGE_SIZE} as
+ * they are accessed. When the cursor is created only the ordered ids of the articles are read, the other columns are
+ * queried by id for the window containing the requested position. This keeps the first query cheap and there is no
+ * upper limit for the number of headlines, while count and order stay fixed even if articles are deleted or change
+ * while the list is displayed.
+ * <p>
+ * Pinned articles (the articles opened from this list) are always part of the result even if they don't match the
+ * filter anymore, e.g. because they have been marked read. Their ids are merged into the snapshot once instead of
+ * adding a UNION to the query.
+ * <p>
+ * The ids are also available through {@link #getExtras()} with the key {@link #EXTRA_IDS} so the whole list of
+ * articles can be retrieved without loading every row.
+ */
+class PagedHeadlineCursor extends AbstractCursor {
+
+	@SuppressWarnings("unused")
+	private static final String TAG = PagedHeadlineCursor.class.getSimpleName();
+
+	static final int PAGE_SIZE = 100;
+	static final String EXTRA_IDS = "org.ttrssreader.extra.ARTICLE_IDS";
+
+	// @formatter:off
+	private static final String SELECT_COLUMNS = "SELECT"
+			+ " a._id, a.feedId, a.title, a.isUnread, a.updateDate,"
+			+ " a.isStarred, a.isPublished, a.note, f.title";
+	// @formatter:on
+
+	private static final int COL_ID = 0;
+	private static final int COL_FEED_ID = 1;
+	private static final int COL_TITLE = 2;
+	private static final int COL_UNREAD = 3;
+	private static final int COL_UPDATE_DATE = 4;
+	private static final int COL_STARRED = 5;
+	private static final int COL_PUBLISHED = 6;
+	private static final int COL_NOTE = 7;
+	private static final int COL_FEED_TITLE = 8;
+
+	private final SQLiteDatabase db;
+	private final String from;
+	private final boolean ascending;
+
+	private final int[] ids;
+	private final long[] dates;
+	private final Row[] rows;
+	private final Bundle extras = new Bundle();
+	private boolean pinnedUnread = false;
+	private boolean changeNotified = false;
+
+	/**
+	 * @param db        the database to query
+	 * @param from      FROM and WHERE clause selecting the articles, the tables must be aliased "a" for articles and
+	 *                  "f" for their feeds
+	 * @param pinnedIds comma-separated ids of articles which are always displayed, may be empty
+	 * @param ascending sort oldest articles first
+	 */
+	PagedHeadlineCursor(SQLiteDatabase db, String from, String pinnedIds, boolean ascending) {
+		this.db = db;
+		this.ascending = ascending;
+
+		String direction = ascending ? " ASC" : " DESC";
+		String order = " ORDER BY a.updateDate" + direction + ", a._id" + direction;
+
+		Snapshot pinned;
+		if (pinnedIds.length() > 0) {
+			this.from = from + " AND a._id NOT IN (" + pinnedIds + ")";
+			pinned = querySnapshot("SELECT a._id, a.updateDate, a.isUnread FROM " + DBHelper.TABLE_ARTICLES
+					+ " a WHERE a._id IN (" + pinnedIds + ")" + order);
+			pinnedUnread = pinned.unread;
+		} else {
+			this.from = from;
+			pinned = new Snapshot(0);
+		}
+		Snapshot matching = querySnapshot("SELECT a._id, a.updateDate, 0 FROM " + this.from + order);
+
+		// Merge the pinned articles into the list, both are sorted by (updateDate, _id)
+		int count = matching.size + pinned.size;
+		ids = new int[count];
+		dates = new long[count];
+		rows = new Row[count];
+		int m = 0;
+		int p = 0;
+		for (int i = 0; i < count; i++) {
+			Snapshot next;
+			int pos;
+			if (p >= pinned.size || (m < matching.size && compare(matching, m, pinned, p) <= 0)) {
+				next = matching;
+				pos = m++;
+			} else {
+				next = pinned;
+				pos = p++;
+			}
+			ids[i] = next.ids[pos];
+			dates[i] = next.dates[pos];
+		}
+		extras.putIntArray(EXTRA_IDS, ids);
+
+		// Load the first window right away, the cursor is created on a background thread by the loader
+		if (count > 0)
+			loadPage(0);
+	}
+
+	/**
+	 * @return true if at least one of the articles in this cursor is unread, without loading all of them.
+	 */
+	boolean hasUnread() {
+		if (pinnedUnread)
+			return true;
+
+		Cursor c = null;
+		try {
+			c = db.rawQuery("SELECT EXISTS (SELECT 1 FROM " + from + " AND a.isUnread>0)", null);
+			return c.moveToFirst() && c.getInt(0) > 0;
+		} finally {
+			if (c != null)
+				c.close();
+		}
+	}
+
+	private Snapshot querySnapshot(String sql) {
+		Cursor c = null;
+		try {
+			c = db.rawQuery(sql, null);
+			Snapshot ret = new Snapshot(c.getCount());
+			while (c.moveToNext()) {
+				ret.ids[ret.size] = c.getInt(0);
+				ret.dates[ret.size] = c.getLong(1);
+				ret.unread |= c.getInt(2) != 0;
+				ret.size++;
+			}
+			return ret;
+		} finally {
+			if (c != null)
+				c.close();
+		}
+	}
+
+	/**
+	 * Loads the window of articles containing the given position. Articles which have been deleted since the ids were
+	 * read are replaced by an empty row and the observers of this cursor are notified so the list gets reloaded.
+	 */
+	private void loadPage(int position) {
+		int start = position - position % PAGE_SIZE;
+		int end = Math.min(start + PAGE_SIZE, ids.length);
+
+		StringBuilder idList = new StringBuilder();
+		for (int i = start; i < end; i++) {
+			if (i > start)
+				idList.append(",");
+			idList.append(ids[i]);
+		}
+
+		Map<Integer, Row> loaded = new HashMap<>();
+		Cursor c = null;
+		try {
+			c = db.rawQuery(SELECT_COLUMNS + " FROM " + DBHelper.TABLE_ARTICLES + " a, " + DBHelper.TABLE_FEEDS
+					+ " f WHERE a.feedId=f._id AND a._id IN (" + idList + ")", null);
+			while (c.moveToNext()) {
+				Row row = new Row();
+				row.id = c.getInt(COL_ID);
+				row.feedId = c.getInt(COL_FEED_ID);
+				row.title = c.getString(COL_TITLE);
+				row.unread = c.getInt(COL_UNREAD) != 0;
+				row.updateDate = c.getLong(COL_UPDATE_DATE);
+				row.starred = c.getInt(COL_STARRED) != 0;
+				row.published = c.getInt(COL_PUBLISHED) != 0;
+				row.note = c.getString(COL_NOTE);
+				row.feedTitle = c.getString(COL_FEED_TITLE);
+				loaded.put(row.id, row);
+			}
+		} finally {
+			if (c != null)
+				c.close();
+		}
+
+		boolean missing = false;
+		for (int i = start; i < end; i++) {
+			Row row = loaded.get(ids[i]);
+			if (row == null) {
+				row = new Row();
+				row.id = ids[i];
+				row.updateDate = dates[i];
+				row.title = "";
+				row.feedTitle = "";
+				missing = true;
+			}
+			rows[i] = row;
+		}
+
+		if (missing && !changeNotified) {
+			Log.d(TAG, "Articles have been removed since the list was loaded, requesting reload");
+			changeNotified = true;
+			onChange(false);
+		}
+	}
+
+	private int compare(Snapshot s1, int pos1, Snapshot s2, int pos2) {
+		long d1 = s1.dates[pos1];
+		long d2 = s2.dates[pos2];
+		int ret = d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+		if (ret == 0) {
+			int id1 = s1.ids[pos1];
+			int id2 = s2.ids[pos2];
+			ret = id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+		}
+		return ascending ? ret : -ret;
+	}
+
+	@Override
+	public boolean onMove(int oldPosition, int newPosition) {
+		if (rows[newPosition] == null)
+			loadPage(newPosition);
+		return true;
+	}
+
+	@Override
+	public int getCount() {
+		return ids.length;
+	}
+
+	@Override
+	public Bundle getExtras() {
+		return extras;
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return FeedHeadlineCursorHelper.FEEDHEADLINE_COLUMNS;
+	}
+
+	private Row current() {
+		checkPosition();
+		return rows[getPosition()];
+	}
+
+	@Override
+	public String getString(int column) {
+		Row row = current();
+		switch (column) {
+			case COL_TITLE:
+				return row.title;
+			case COL_NOTE:
+				return row.note;
+			case COL_FEED_TITLE:
+				return row.feedTitle;
+			default:
+				return String.valueOf(getLong(column));
+		}
+	}
+
+	@Override
+	public long getLong(int column) {
+		Row row = current();
+		switch (column) {
+			case COL_ID:
+				return row.id;
+			case COL_FEED_ID:
+				return row.feedId;
+			case COL_UNREAD:
+				return row.unread ? 1 : 0;
+			case COL_UPDATE_DATE:
+				return row.updateDate;
+			case COL_STARRED:
+				return row.starred ? 1 : 0;
+			case COL_PUBLISHED:
+				return row.published ? 1 : 0;
+			default:
+				throw new IllegalArgumentException("Column " + column + " is not numeric");
+		}
+	}
+
+	@Override
+	public int getInt(int column) {
+		return (int) getLong(column);
+	}
+
+	@Override
+	public short getShort(int column) {
+		return (short) getLong(column);
+	}
+
+	@Override
+	public float getFloat(int column) {
+		return getLong(column);
+	}
+
+	@Override
+	public double getDouble(int column) {
+		return getLong(column);
+	}
+
+	@Override
+	public boolean isNull(int column) {
+		Row row = current();
+		switch (column) {
+			case COL_TITLE:
+				return row.title == null;
+			case COL_NOTE:
+				return row.note == null;
+			case COL_FEED_TITLE:
+				return row.feedTitle == null;
+			default:
+				return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		Arrays.fill(rows, null);
+	}
+
+	private static class Snapshot {
+		final int[] ids;
+		final long[] dates;
+		int size = 0;
+		boolean unread = false;
+
+		Snapshot(int capacity) {
+			ids = new int[capacity];
+			dates = new long[capacity];
+		}
+	}
+
+	private static class Row {
+		int id;
+		int feedId;
+		String title;
+		boolean unread;
+		long updateDate;
+		boolean starred;
+		boolean published;
+		String note;
+		String feedTitle;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.model;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.controllers.DBHelper;
+
+import java.util.Date;
+
+/**
+ * Searches the locally cached articles using the full-text index. Articles matching in the title are listed first,
+ * then articles with more matches, then newer articles.
+ */
+class SearchCursorHelper extends MainCursorHelper {
+
+	@SuppressWarnings("unused")
+	private static final String TAG = SearchCursorHelper.class.getSimpleName();
+	public static final String[] SEARCH_COLUMNS = new String[]{"_id", "feedId", "title", "unread", "updateDate", "isStarred", "isPublished", "note", "feedTitle", "snippet"};
+
+	private static final int SNIPPET_TOKENS = 12;
+
+	private String searchQuery;
+
+	SearchCursorHelper(String searchQuery) {
+		this.searchQuery = searchQuery == null ? "" : searchQuery;
+	}
+
+	@Override
+	public Cursor createCursor(SQLiteDatabase db, boolean overrideDisplayUnread, boolean buildSafeQuery) {
+		boolean displayUnread = Controller.getInstance().onlyUnread();
+		if (overrideDisplayUnread)
+			displayUnread = false;
+
+		// The query is passed to MATCH as it is so the user can use the FTS syntax. If that fails we search for the
+		// whole input as a phrase instead.
+		String match = buildSafeQuery ? toPhrase(searchQuery) : searchQuery;
+
+		Cursor cursor = db.rawQuery(buildQuery(displayUnread), new String[]{match, match});
+		try {
+			// A malformed MATCH expression is only reported when the query is executed, which has to happen here so
+			// makeQuery() can still fall back to the phrase search and not in the loader which gets the cursor.
+			cursor.getCount();
+		} catch (RuntimeException e) {
+			cursor.close();
+			throw e;
+		}
+		return cursor;
+	}
+
+	/**
+	 * @return the search input as a single FTS phrase, which is always a valid MATCH expression
+	 */
+	static String toPhrase(String searchQuery) {
+		return "\"" + searchQuery.replace("\"", " ") + "\"";
+	}
+
+	/**
+	 * @param displayUnread only list unread articles
+	 * @return the search query, the MATCH expression has to be bound to both parameters
+	 */
+	static String buildQuery(boolean displayUnread) {
+		String fts = DBHelper.TABLE_ARTICLES_FTS;
+
+		StringBuilder query = new StringBuilder();
+		query.append("SELECT ");
+		query.append(" a._id AS _id, a.feedId, a.title, a.isUnread AS unread, a.updateDate, ");
+		query.append(" a.isStarred, a.isPublished, a.note, f.title AS feedTitle, ");
+		query.append(" snippet(").append(fts).append(", '<b>', '</b>', '...', -1, ").append(SNIPPET_TOKENS).append(") AS snippet ");
+		query.append(" FROM ");
+		query.append(fts).append(", ");
+		query.append(DBHelper.TABLE_ARTICLES).append(" a, ");
+		query.append(DBHelper.TABLE_FEEDS).append(" f ");
+		query.append("WHERE ").append(fts).append(".docid=a._id AND a.feedId=f._id");
+		query.append(" AND ").append(fts).append(" MATCH ?");
+		query.append(displayUnread ? " AND a.isUnread>0" : "");
+
+		// offsets() contains four numbers per matching term, so the number of spaces grows with the number of matches
+		query.append(" ORDER BY a._id IN (SELECT docid FROM ").append(fts).append(" WHERE title MATCH ?) DESC, ");
+		query.append(" length(offsets(").append(fts).append(")) - length(replace(offsets(").append(fts).append("), ' ', '')) DESC, ");
+		query.append(" a.updateDate DESC");
+		query.append(" LIMIT 1000 ");
+		return query.toString();
+	}
+
+	@Override
+	Cursor createDummyCursor() {
+		MatrixCursor cursor = new MatrixCursor(SEARCH_COLUMNS, 0);
+		cursor.addRow(new Object[]{-1, -1, "error! check logcat.", 0, new Date().getTime(), 0, 0, "dummy note", "dummy title", ""});
+		return cursor;
+	}
+
+}
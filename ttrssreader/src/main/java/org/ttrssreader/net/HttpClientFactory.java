@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.net;
+
+import android.util.Log;
+
+import org.ttrssreader.controllers.ConnectionProfile;
+import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.preferences.Constants;
+import org.ttrssreader.utils.SSLUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509TrustManager;
+
+import androidx.annotation.NonNull;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Application-wide source for the OkHttpClient used by API calls, feed icons, image caching and media downloads.
+ * All clients returned from here share one connection pool and dispatcher, so connections (and HTTP/2 sessions)
+ * to the same server are kept alive and reused instead of doing a new TCP and TLS handshake for every download.
+ */
+public class HttpClientFactory {
+
+	private static final String TAG = HttpClientFactory.class.getSimpleName();
+
+	private static final int MAX_IDLE_CONNECTIONS = 8;
+	private static final long KEEP_ALIVE_MINUTES = 5;
+
+	private final OkHttpClient baseClient;
+
+	private final Object lock = new Object();
+	private OkHttpClient client = null;
+	private ConnectionProfile currentProfile = null;
+	private SSLSocketFactory currentSslSocketFactory = null;
+	private HostnameVerifier currentHostnameVerifier = null;
+
+	private static class InstanceHolder {
+		private static final HttpClientFactory instance = new HttpClientFactory();
+	}
+
+	public static HttpClientFactory getInstance() {
+		return InstanceHolder.instance;
+	}
+
+	private HttpClientFactory() {
+		OkHttpClient.Builder builder = new OkHttpClient.Builder();
+		builder.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+		builder.addInterceptor(new AuthInterceptor());
+		baseClient = builder.build();
+	}
+
+	/**
+	 * Returns the shared client for the current settings. If proxy or timeouts of the {@link ConnectionProfile} or the
+	 * SSL configuration from {@link SSLUtils} changed a new client is derived from the shared base client, keeping
+	 * connection pool and dispatcher.
+	 *
+	 * Callers needing other timeouts should use {@link OkHttpClient#newBuilder()} on the returned client which also
+	 * keeps the shared connection pool.
+	 */
+	public OkHttpClient getClient() {
+		ConnectionProfile profile = Controller.getInstance().connectionProfile();
+		SSLSocketFactory sslSocketFactory = SSLUtils.getSslSocketFactory();
+		X509TrustManager trustManager = SSLUtils.getTrustManager();
+		HostnameVerifier hostnameVerifier = SSLUtils.getHostnameVerifier();
+
+		synchronized (lock) {
+			// The profile is recreated for every change of a connection preference, most of them don't affect the client
+			if (client == null || !profile.hasSameClientSettings(currentProfile) || sslSocketFactory != currentSslSocketFactory || hostnameVerifier != currentHostnameVerifier) {
+				// Set longer timeouts for lazy loading servers
+				TimeUnit timeoutUnit = profile.lazyServer ? TimeUnit.MINUTES : TimeUnit.SECONDS;
+
+				OkHttpClient.Builder builder = baseClient.newBuilder();
+				builder.proxy(getProxy(profile));
+				builder.readTimeout(10, timeoutUnit);
+				if (sslSocketFactory != null && trustManager != null)
+					builder.sslSocketFactory(sslSocketFactory, trustManager);
+				if (hostnameVerifier != null)
+					builder.hostnameVerifier(hostnameVerifier);
+				client = builder.build();
+				Log.d(TAG, "Created new OkHttpClient for changed settings.");
+
+				currentProfile = profile;
+				currentSslSocketFactory = sslSocketFactory;
+				currentHostnameVerifier = hostnameVerifier;
+			}
+			return client;
+		}
+	}
+
+	private static Proxy getProxy(ConnectionProfile profile) {
+		if (profile.useProxy && !Constants.EMPTY.equals(profile.proxyHost))
+			return new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(profile.proxyHost, profile.proxyPort));
+		return Proxy.NO_PROXY;
+	}
+
+	/**
+	 * Adds HTTP-Basic Authentication to all requests going to the configured server.
+	 */
+	private static class AuthInterceptor implements Interceptor {
+		@Override
+		public Response intercept(@NonNull Chain chain) throws IOException {
+			Request request = chain.request();
+			if (request.header("Authorization") == null && Controller.getInstance().urlNeedsAuthentication(request.url().url())) {
+				ConnectionProfile profile = Controller.getInstance().connectionProfile();
+				request = request.newBuilder().header("Authorization", Credentials.basic(profile.httpUsername, profile.httpPassword)).build();
+			}
+			return chain.proceed(request);
+		}
+	}
+
+}
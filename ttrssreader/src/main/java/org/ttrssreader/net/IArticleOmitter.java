@@ -18,8 +18,7 @@
 package org.ttrssreader.net;
 
 import org.ttrssreader.model.pojos.Article;
-
-import java.util.Set;
+import org.ttrssreader.utils.IntSet;
 
 /**
  * this interface is supposed to be used inside parseArticleArray of JSONConnector. The {@code omitArticle} method will
@@ -42,5 +41,5 @@ public interface IArticleOmitter {
 	 *
 	 * @return a list of article ids.
 	 */
-	Set<Integer> getOmittedArticles();
+	IntSet getOmittedArticles();
 }
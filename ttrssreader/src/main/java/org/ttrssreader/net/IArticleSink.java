@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.net;
+
+import org.ttrssreader.model.pojos.Article;
+
+public interface IArticleSink {
+	/**
+	 * called for every article which was parsed completely and was not omitted by the filter
+	 *
+	 * @param a the parsed article, the sink takes ownership of it
+	 */
+	void put(Article a);
+
+	/**
+	 * Returns the amount of articles handed to this sink so far.
+	 *
+	 * @return amount of articles
+	 */
+	int size();
+}
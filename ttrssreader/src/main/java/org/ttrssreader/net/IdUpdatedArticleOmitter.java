@@ -21,10 +21,8 @@ import android.util.Log;
 
 import org.ttrssreader.controllers.DBHelper;
 import org.ttrssreader.model.pojos.Article;
-
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import org.ttrssreader.utils.IntLongMap;
+import org.ttrssreader.utils.IntSet;
 
 /**
  * the instance of this class will be used for filtering out already cached articles, which was not updated while
@@ -39,11 +37,11 @@ public class IdUpdatedArticleOmitter implements IArticleOmitter {
 	/**
 	 * map of article IDs to it's updated date
 	 */
-	public Map<Integer, Long> idUpdatedMap;
+	public IntLongMap idUpdatedMap;
 	/**
 	 * articles, that were skipped
 	 */
-	private Set<Integer> omittedArticles = new HashSet<>();
+	private IntSet omittedArticles = new IntSet();
 
 	public IdUpdatedArticleOmitter(final long sinceId) {
 		String selectSince = "_id >= " + sinceId;
@@ -84,8 +82,8 @@ public class IdUpdatedArticleOmitter implements IArticleOmitter {
 			case id:
 			case updated:
 				if (a.id > 0 && a.updated != null) {
-					Long updated = idUpdatedMap.get(a.id);
-					if (updated != null && a.updated.getTime() <= updated) {
+					long updated = idUpdatedMap.get(a.id, -1);
+					if (updated != -1 && a.updated.getTime() <= updated) {
 						omittedArticles.add(a.id);
 						ret = true;
 					}
@@ -97,7 +95,7 @@ public class IdUpdatedArticleOmitter implements IArticleOmitter {
 	}
 
 	@Override
-	public Set<Integer> getOmittedArticles() {
+	public IntSet getOmittedArticles() {
 		return omittedArticles;
 	}
 }
@@ -26,10 +26,9 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.MalformedJsonException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.ttrssreader.MyApplication;
 import org.ttrssreader.R;
+import org.ttrssreader.controllers.ConnectionProfile;
 import org.ttrssreader.controllers.Controller;
 import org.ttrssreader.controllers.Data;
 import org.ttrssreader.model.pojos.Article;
@@ -42,23 +41,22 @@ import org.ttrssreader.utils.Utils;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 
-import okhttp3.Credentials;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
+import androidx.annotation.NonNull;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Request;
-import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
@@ -139,8 +137,14 @@ public class JSONConnector {
 
 	private static final String VALUE = "value";
 
-	private static final int MAX_ID_LIST_LENGTH = 100;
-	private static final MediaType MEDIATYPE_JSON = MediaType.parse("application/json; charset=utf-8");
+	// tt-rss splits the list itself and uses it in a single IN clause, so this only bounds the size of one request
+	private static final int MAX_ID_LIST_LENGTH = 1000;
+	// Longer values (e.g. notes or shared content) are cut in the request log
+	private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+	// Maximum number of getHeadlines pages which are requested concurrently
+	private static final int MAX_PAGES_IN_FLIGHT = 3;
+	// Number of times a getHeadlines page is requested before the sync gives up
+	private static final int MAX_PAGE_ATTEMPTS = 3;
 
 	// session id as an IN parameter
 	private static final String SID = "sid";
@@ -149,126 +153,181 @@ public class JSONConnector {
 
 	private final Object loginLock = new Object();
 	private int apiLevel = -1;
-	private String currentSettings = "";
 
 	public static final int PARAM_LIMIT_MAX_VALUE = 200;
 
-	private OkHttpClient client;
+	private Reader doRequest(Map<String, String> params) {
+		return doRequest(params, null);
+	}
+
+	private Reader doRequest(Map<String, String> params, JsonRequestBody.IdList idList) {
+		try {
+			// Call Server:
+			Response response = HttpClientFactory.getInstance().getClient().newCall(buildRequest(params, idList)).execute();
+			return handleResponse(response);
+		} catch (Exception e) {
+			handleRequestException(e);
+		}
+		return null;
+	}
+
+	private Request buildRequest(Map<String, String> params, JsonRequestBody.IdList idList) {
+		if (sessionId != null)
+			params.put(SID, sessionId);
+
+		logRequest(params, idList);
+
+		// Build Request-Object, the body is streamed into the connection when the call is executed:
+		Request.Builder reqBuilder = new Request.Builder();
+		reqBuilder.url(Controller.getInstance().connectionProfile().hostname);
+		reqBuilder.post(new JsonRequestBody(params, idList));
+		// HTTP-Basic Authentication is added by the interceptor of the shared client
+
+		return reqBuilder.build();
+	}
 
-	public JSONConnector() {
-		initHttpClient();
+	private Reader handleResponse(Response response) {
+		// Check for HTTP Status codes:
+		int code = response.code();
+		if (!response.isSuccessful() || code >= 400 && code < 600) {
+			hasLastError = true;
+			lastError = "Server returned status: " + code + " (Message: " + response.message() + ")";
+			response.close();
+			return null;
+		}
+
+		// Read Response as stream:
+		ResponseBody body = response.body();
+		if (body != null)
+			return body.charStream();
+		return null;
+	}
+
+	private void handleRequestException(Exception e) {
+		hasLastError = true;
+		if (e instanceof JsonSyntaxException)
+			lastError = "JsonSyntaxException (Invalid JSON Data) in doRequest(): " + formatException(e);
+		else if (e instanceof SSLPeerUnverifiedException)
+			lastError = "SSLPeerUnverifiedException in doRequest(): " + formatException(e);
+		else
+			lastError = "Exception in doRequest(): " + formatException(e);
 	}
 
 	/**
-	 * TODO: Probably it would be better to listen for change events on preferences directly but this was the quick and easy way.
-	 *
-	 * The following preferences are checked for changes:
-	 * - useProxy
-	 * - proxyHost
-	 * - proxyPort
-	 * - lazyServer
-	 *
-	 * If any of these change we need to re-initialize the OkHttpClient, otherwise we can re-use the existing instance, shaving off some ms on every API request.
+	 * A request which has been handed to the dispatcher of the OkHttpClient and is executed in the background. The
+	 * response body is not read before {@link #getReader()} is called so the caller can process responses in the
+	 * order the requests were issued.
 	 */
-	private void initHttpClient() {
-		// Just build a string out of all settings involved here, then check against the old string to see if anything changed in between:
-		String newSettings = Controller.getInstance().useProxy() + Controller.getInstance().proxyHost() + Controller.getInstance().proxyPort() + Controller.getInstance().lazyServer();
-
-		if (!currentSettings.equals(newSettings)) {
-			// Set longer timeouts for lazy loading servers
-			TimeUnit timeoutUnit = Controller.getInstance().lazyServer() ? TimeUnit.MINUTES : TimeUnit.SECONDS;
-
-			// Build Client-Object:
-			OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder();
-			clientBuilder.proxy(getProxy());
-			clientBuilder.readTimeout(10, timeoutUnit);
-			this.client = clientBuilder.build();
-
-			// Store new settings
-			this.currentSettings = newSettings;
+	private class PendingRequest implements Callback {
+
+		private final Map<String, String> params;
+		private final int attempt;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private Call call;
+		private Response response;
+		private IOException exception;
+
+		private PendingRequest(Map<String, String> params, int attempt) {
+			this.params = params;
+			this.attempt = attempt;
 		}
-	}
 
-	private Reader doRequest(Map<String, String> params) {
-		try {
-			if (sessionId != null)
-				params.put(SID, sessionId);
-
-			JSONObject json = new JSONObject(params);
-			logRequest(json);
-
-			// Build Request-Object:
-			Request.Builder reqBuilder = new Request.Builder();
-			reqBuilder.url(Controller.getInstance().hostname());
-			reqBuilder.post(RequestBody.create(MEDIATYPE_JSON, json.toString()));
-
-			// HTTP-Basic Authentication
-			if (Controller.getInstance().useHttpAuth()) {
-				String user = Controller.getInstance().httpUsername();
-				String pw = Controller.getInstance().httpPassword();
-				reqBuilder.addHeader("Authorization", Credentials.basic(user, pw));
-			}
+		private void enqueue() {
+			call = HttpClientFactory.getInstance().getClient().newCall(buildRequest(params, null));
+			call.enqueue(this);
+		}
 
-			Request request = reqBuilder.build();
+		@Override
+		public void onFailure(@NonNull Call call, @NonNull IOException e) {
+			exception = e;
+			done.countDown();
+		}
 
-			// Call Server:
-			Response response = this.client.newCall(request).execute();
+		@Override
+		public void onResponse(@NonNull Call call, @NonNull Response response) {
+			synchronized (this) {
+				if (call.isCanceled())
+					response.close();
+				else
+					this.response = response;
+			}
+			done.countDown();
+		}
 
-			// Check for HTTP Status codes:
-			int code = response.code();
-			if (!response.isSuccessful() || code >= 400 && code < 600) {
-				hasLastError = true;
-				lastError = "Server returned status: " + code + " (Message: " + response.message() + ")";
+		/**
+		 * Blocks until the response headers have arrived. If the waiting thread is interrupted the request is
+		 * cancelled and the interrupt flag is set again.
+		 *
+		 * @return a reader for the response body or {@code null} if the request failed or the thread was interrupted
+		 */
+		private Reader getReader() {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				cancel();
+				Thread.currentThread().interrupt();
 				return null;
 			}
 
-			// Read Response as stream:
-			ResponseBody body = response.body();
-			if (body != null)
-				return body.charStream();
+			if (exception != null) {
+				handleRequestException(exception);
+				return null;
+			}
 
-		} catch (JsonSyntaxException e) {
-			hasLastError = true;
-			lastError = "JsonSyntaxException (Invalid JSON Data) in doRequest(): " + formatException(e);
-		} catch (SSLPeerUnverifiedException e) {
-			hasLastError = true;
-			lastError = "SSLPeerUnverifiedException in doRequest(): " + formatException(e);
-		} catch (Exception e) {
-			hasLastError = true;
-			lastError = "Exception in doRequest(): " + formatException(e);
+			synchronized (this) {
+				return response != null ? handleResponse(response) : null;
+			}
 		}
-		return null;
-	}
 
-	private Proxy getProxy() {
-		if (Controller.getInstance().useProxy()) {
-			String host = Controller.getInstance().proxyHost();
-			if (!Constants.EMPTY.equals(host)) {
-				int port = Controller.getInstance().proxyPort();
-				return new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(host, port));
+		private synchronized void cancel() {
+			if (call != null)
+				call.cancel();
+			if (response != null) {
+				response.close();
+				response = null;
 			}
 		}
-		return Proxy.NO_PROXY;
 	}
 
 	public void init() {
 		// Empty
 	}
 
-	private void logRequest(final JSONObject json) throws JSONException {
-		// Filter password and session-id
-		Object paramPw = json.remove(PARAM_PW);
-		Object paramSID = json.remove(SID);
-		Log.i(TAG, json.toString());
-		json.put(PARAM_PW, paramPw);
-		json.put(SID, paramSID);
+	private void logRequest(Map<String, String> params, JsonRequestBody.IdList idList) {
+		StringBuilder sb = new StringBuilder("{");
+		for (Map.Entry<String, String> entry : params.entrySet()) {
+			// Filter password and session-id
+			String key = entry.getKey();
+			if (PARAM_PW.equals(key) || SID.equals(key))
+				continue;
+
+			String value = entry.getValue();
+			if (value != null && value.length() > MAX_LOGGED_VALUE_LENGTH)
+				value = value.substring(0, MAX_LOGGED_VALUE_LENGTH) + "...";
+
+			if (sb.length() > 1)
+				sb.append(",");
+			sb.append(key).append("=").append(value);
+		}
+		if (idList != null) {
+			if (sb.length() > 1)
+				sb.append(",");
+			sb.append(idList.name).append("=[").append(idList.size()).append(" ids]");
+		}
+		Log.i(TAG, sb.append("}").toString());
 	}
 
 	private String readResult(Map<String, String> params) throws IOException {
-		return readResult(params, false, true);
+		return readResult(params, null, false, true);
 	}
 
 	private String readResult(Map<String, String> params, boolean login, boolean retry) throws IOException {
+		return readResult(params, null, login, retry);
+	}
+
+	private String readResult(Map<String, String> params, JsonRequestBody.IdList idList, boolean login,
+			boolean retry) throws IOException {
 
 		/*
 		Response response = doRequest(params);
@@ -292,7 +351,7 @@ public class JSONConnector {
 		*/
 
 		String ret = "";
-		Reader reader = doRequest(params);
+		Reader reader = doRequest(params, idList);
 		if (reader == null)
 			return null;
 
@@ -341,7 +400,7 @@ public class JSONConnector {
 						case NOT_LOGGED_IN:
 						case LOGIN_ERROR:
 							if (!login && retry && internalLogin())
-								return readResult(params, false, false); // Just do the same request again
+								return readResult(params, idList, false, false); // Just do the same request again
 							else
 								lastError = ctx.getString(R.string.Error_LoginFailed);
 							break;
@@ -377,8 +436,11 @@ public class JSONConnector {
 	}
 
 	private JsonReader prepareReader(Map<String, String> params, boolean firstCall) throws IOException {
+		return prepareReader(doRequest(params), params, firstCall);
+	}
+
+	private JsonReader prepareReader(Reader in, Map<String, String> params, boolean firstCall) throws IOException {
 		JsonReader reader = null;
-		Reader in = doRequest(params);
 		if (in == null)
 			return null;
 
@@ -458,11 +520,20 @@ public class JSONConnector {
 	 * @return true if the call was successful.
 	 */
 	private boolean doRequestNoAnswer(Map<String, String> params) {
+		return doRequestNoAnswer(params, null);
+	}
+
+	/**
+	 * Does an API-Call with an additional list of ids and ignores the result.
+	 *
+	 * @return true if the call was successful.
+	 */
+	private boolean doRequestNoAnswer(Map<String, String> params, JsonRequestBody.IdList idList) {
 		if (sessionNotAlive())
 			return false;
 
 		try {
-			String result = readResult(params);
+			String result = readResult(params, idList, false, true);
 
 			// Reset error, this is only for an api-bug which returns an empty result for updateFeed
 			if (result == null)
@@ -494,7 +565,8 @@ public class JSONConnector {
 	 * (ie. no username, no password, no user management)
 	 */
 	private boolean isSingleUser() {
-		return Controller.getInstance().useHttpAuth() && StringSupport.isEmpty(Controller.getInstance().username()) && StringSupport.isEmpty(Controller.getInstance().password());
+		ConnectionProfile profile = Controller.getInstance().connectionProfile();
+		return profile.useHttpAuth && StringSupport.isEmpty(profile.username) && StringSupport.isEmpty(profile.password);
 	}
 
 	/**
@@ -517,8 +589,9 @@ public class JSONConnector {
 			params.put(PARAM_OP, VALUE_LOGIN);
 
 			if (!isSingleUser()) {
-				params.put(PARAM_USER, Controller.getInstance().username());
-				params.put(PARAM_PW, Controller.getInstance().password());
+				ConnectionProfile profile = Controller.getInstance().connectionProfile();
+				params.put(PARAM_USER, profile.username);
+				params.put(PARAM_PW, profile.password);
 			}
 
 			try {
@@ -589,13 +662,13 @@ public class JSONConnector {
 	/**
 	 * parse articles from JSON-reader
 	 *
-	 * @param articles container, where parsed articles will be stored
-	 * @param reader   JSON-reader, containing articles (received from server)
-	 * @param filter   filter for articles, defining which articles should be omitted while parsing (may be {@code
-	 *                 null})
+	 * @param sink   sink, where parsed articles will be handed to as soon as they are complete
+	 * @param reader JSON-reader, containing articles (received from server)
+	 * @param filter filter for articles, defining which articles should be omitted while parsing (may be {@code
+	 *               null})
 	 * @return amount of processed articles
 	 */
-	private int parseArticleArray(final Set<Article> articles, JsonReader reader, IArticleOmitter filter) {
+	private int parseArticleArray(final IArticleSink sink, JsonReader reader, IArticleOmitter filter) {
 		long time = System.currentTimeMillis();
 		int count = 0;
 
@@ -609,13 +682,11 @@ public class JSONConnector {
 				reader.endObject();
 
 				if (!skipObject && article.id != -1 && article.title != null)
-					articles.add(article);
+					sink.put(article);
 
 				count++;
 			}
 			reader.endArray();
-		} catch (OutOfMemoryError e) {
-			Controller.getInstance().lowMemory(true); // Low memory detected
 		} catch (Exception e) {
 			Log.e(TAG, "Input data could not be read: " + e.getMessage() + " (" + e.getCause() + ")", e);
 		}
@@ -1025,7 +1096,7 @@ public class JSONConnector {
 	/**
 	 * Retrieves the specified articles.
 	 *
-	 * @param articles   container for retrieved articles
+	 * @param sink       sink for retrieved articles, articles are handed over one by one while parsing
 	 * @param id         the id of the feed/category
 	 * @param limit      the maximum number of articles to be fetched
 	 * @param viewMode   indicates wether only unread articles should be included (Possible values: all_articles,
@@ -1038,11 +1109,11 @@ public class JSONConnector {
 	 *                   {@code
 	 *                   null})
 	 */
-	public void getHeadlines(final Set<Article> articles, Integer id, int limit, String viewMode, boolean isCategory, Integer sinceId, String search, IArticleOmitter filter) {
+	public void getHeadlines(final IArticleSink sink, Integer id, int limit, String viewMode, boolean isCategory, Integer sinceId, String search, IArticleOmitter filter) {
 		long time = System.currentTimeMillis();
 		int offset = 0;
 		int count;
-		int maxSize = articles.size() + limit;
+		int maxSize = sink.size() + limit;
 
 		if (sessionNotAlive())
 			return;
@@ -1051,40 +1122,82 @@ public class JSONConnector {
 
 		makeLazyServerWork(id);
 
-		while (articles.size() < maxSize) {
+		// Request the following pages while the current one is parsed, responses are still processed in order so the
+		// filter sees the articles exactly as if the pages were fetched one after another.
+		int pagesInFlight = Math.max(1, Math.min(MAX_PAGES_IN_FLIGHT, (limit + limitParam - 1) / limitParam));
+		Deque<PendingRequest> pending = new ArrayDeque<>(pagesInFlight);
 
-			Map<String, String> params = new HashMap<>();
-			params.put(PARAM_OP, VALUE_GET_HEADLINES);
-			params.put(PARAM_FEED_ID, id + "");
-			params.put(PARAM_LIMIT, limitParam + "");
-			params.put(PARAM_SKIP, offset + "");
-			params.put(PARAM_VIEWMODE, viewMode);
-			params.put(PARAM_IS_CAT, (isCategory ? "1" : "0"));
-			params.put(PARAM_SHOW_CONTENT, "1");
-			params.put(PARAM_INC_ATTACHMENTS, "1");
-			if (sinceId > 0)
-				params.put(PARAM_SINCE_ID, sinceId + "");
-			if (search != null)
-				params.put(PARAM_SEARCH, search);
-
-			try (JsonReader reader = prepareReader(params)) {
-
-				if (hasLastError)
+		try {
+			while (sink.size() < maxSize) {
+
+				// The sync has been cancelled (e.g. AsyncTask.cancel(true)), waiting for a response fails immediately now
+				if (Thread.currentThread().isInterrupted()) {
+					Log.d(TAG, "getHeadlines: interrupted, dropping " + pending.size() + " pending pages");
 					return;
-				if (reader == null)
-					continue;
+				}
 
-				count = parseArticleArray(articles, reader, filter);
+				while (pending.size() < pagesInFlight) {
+					Map<String, String> params = new HashMap<>();
+					params.put(PARAM_OP, VALUE_GET_HEADLINES);
+					params.put(PARAM_FEED_ID, id + "");
+					params.put(PARAM_LIMIT, limitParam + "");
+					params.put(PARAM_SKIP, offset + "");
+					params.put(PARAM_VIEWMODE, viewMode);
+					params.put(PARAM_IS_CAT, (isCategory ? "1" : "0"));
+					params.put(PARAM_SHOW_CONTENT, "1");
+					params.put(PARAM_INC_ATTACHMENTS, "1");
+					if (sinceId > 0)
+						params.put(PARAM_SINCE_ID, sinceId + "");
+					if (search != null)
+						params.put(PARAM_SEARCH, search);
+
+					PendingRequest request = new PendingRequest(params, 1);
+					request.enqueue();
+					pending.addLast(request);
+					offset += limitParam;
+				}
 
-				if (count < limitParam)
-					break;
-				else
-					offset += count;
+				PendingRequest request = pending.removeFirst();
+				boolean retry = true;
 
-			} catch (IOException e) {
-				e.printStackTrace();
+				try (JsonReader reader = prepareReader(request.getReader(), request.params, true)) {
+
+					if (hasLastError)
+						return;
+
+					if (reader != null) {
+						retry = false;
+						count = parseArticleArray(sink, reader, filter);
+
+						if (count < limitParam)
+							break;
+					}
+
+				} catch (IOException e) {
+					e.printStackTrace();
+				} finally {
+					request.cancel();
+				}
+
+				if (retry && !Thread.currentThread().isInterrupted()) {
+					if (request.attempt >= MAX_PAGE_ATTEMPTS) {
+						hasLastError = true;
+						lastError = "getHeadlines: no valid response for skip=" + request.params.get(PARAM_SKIP)
+								+ " after " + request.attempt + " attempts";
+						return;
+					}
+
+					// Request the same page again before any of the following pages is processed
+					PendingRequest again = new PendingRequest(request.params, request.attempt + 1);
+					again.enqueue();
+					pending.addFirst(again);
+				}
+			}
+		} finally {
+			// Short page or enough articles: throw away responses for pages we don't need anymore
+			for (PendingRequest request : pending) {
+				request.cancel();
 			}
-			// Empty!
 		}
 
 		Log.d(TAG, "getHeadlines: " + (System.currentTimeMillis() - time) + "ms");
@@ -1101,13 +1214,13 @@ public class JSONConnector {
 		if (articlesIds.isEmpty())
 			return true;
 
-		for (String idList : StringSupport.convertListToString(articlesIds, MAX_ID_LIST_LENGTH)) {
+		int[] ids = toArray(articlesIds);
+		for (int from = 0; from < ids.length && ret; from += MAX_ID_LIST_LENGTH) {
 			Map<String, String> params = new HashMap<>();
 			params.put(PARAM_OP, VALUE_UPDATE_ARTICLE);
-			params.put(PARAM_ARTICLE_IDS, idList);
 			params.put(PARAM_MODE, articleState + "");
 			params.put(PARAM_FIELD, "2");
-			ret = ret && doRequestNoAnswer(params);
+			ret = doRequestNoAnswer(params, idChunk(ids, from));
 		}
 		return ret;
 	}
@@ -1124,13 +1237,13 @@ public class JSONConnector {
 		if (ids.size() == 0)
 			return true;
 
-		for (String idList : StringSupport.convertListToString(ids, MAX_ID_LIST_LENGTH)) {
+		int[] idArray = toArray(ids);
+		for (int from = 0; from < idArray.length && ret; from += MAX_ID_LIST_LENGTH) {
 			Map<String, String> params = new HashMap<>();
 			params.put(PARAM_OP, VALUE_UPDATE_ARTICLE);
-			params.put(PARAM_ARTICLE_IDS, idList);
 			params.put(PARAM_MODE, articleState + "");
 			params.put(PARAM_FIELD, "0");
-			ret = ret && doRequestNoAnswer(params);
+			ret = doRequestNoAnswer(params, idChunk(idArray, from));
 		}
 		return ret;
 	}
@@ -1163,13 +1276,13 @@ public class JSONConnector {
 		if (ids.size() == 0)
 			return true;
 		boolean ret = true;
-		for (String idList : StringSupport.convertListToString(ids, MAX_ID_LIST_LENGTH)) {
+		int[] idArray = toArray(ids);
+		for (int from = 0; from < idArray.length && ret; from += MAX_ID_LIST_LENGTH) {
 			Map<String, String> params = new HashMap<>();
 			params.put(PARAM_OP, VALUE_UPDATE_ARTICLE);
-			params.put(PARAM_ARTICLE_IDS, idList);
 			params.put(PARAM_MODE, articleState + "");
 			params.put(PARAM_FIELD, "1");
-			ret = ret && doRequestNoAnswer(params);
+			ret = doRequestNoAnswer(params, idChunk(idArray, from));
 		}
 		return ret;
 	}
@@ -1234,18 +1347,34 @@ public class JSONConnector {
 		if (articleIds.size() == 0)
 			return true;
 
-		for (String idList : StringSupport.convertListToString(articleIds, MAX_ID_LIST_LENGTH)) {
+		int[] ids = toArray(articleIds);
+		for (int from = 0; from < ids.length && ret; from += MAX_ID_LIST_LENGTH) {
 			Map<String, String> params = new HashMap<>();
 			params.put(PARAM_OP, VALUE_SET_LABELS);
-			params.put(PARAM_ARTICLE_IDS, idList);
 			params.put(VALUE_LABEL_ID, labelId + "");
 			params.put(VALUE_ASSIGN, (assign ? "1" : "0"));
-			ret = ret && doRequestNoAnswer(params);
+			ret = doRequestNoAnswer(params, idChunk(ids, from));
 		}
 
 		return ret;
 	}
 
+	private static int[] toArray(Set<Integer> ids) {
+		int[] ret = new int[ids.size()];
+		int i = 0;
+		for (Integer id : ids) {
+			ret[i++] = id;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the article ids starting at index from, at most MAX_ID_LIST_LENGTH of them
+	 */
+	private static JsonRequestBody.IdList idChunk(int[] ids, int from) {
+		return new JsonRequestBody.IdList(PARAM_ARTICLE_IDS, ids, from, Math.min(ids.length, from + MAX_ID_LIST_LENGTH));
+	}
+
 	public boolean shareToPublished(String title, String url, String content) {
 		Map<String, String> params = new HashMap<>();
 		params.put(PARAM_OP, VALUE_SHARE_TO_PUBLISHED);
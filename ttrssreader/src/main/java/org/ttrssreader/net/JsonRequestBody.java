@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.net;
+
+import java.io.IOException;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body which writes the parameters of an API call as a flat JSON object directly into the sink of the
+ * connection. In contrast to building a JSONObject and serializing it, no intermediate strings are created, so even
+ * large lists of article ids only cost the bytes which are actually sent.
+ */
+class JsonRequestBody extends RequestBody {
+
+	private static final MediaType MEDIATYPE_JSON = MediaType.parse("application/json; charset=utf-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	// Valid in JSON but not in JavaScript, escaped like gson does
+	private static final char LINE_SEPARATOR = (char) 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = (char) 0x2029;
+
+	private final Map<String, String> params;
+	private final IdList idList;
+
+	/**
+	 * @param params the parameters of the call, all values are written as JSON strings
+	 * @param idList an optional list of ids which is written as comma-separated string, may be null
+	 */
+	JsonRequestBody(Map<String, String> params, IdList idList) {
+		this.params = params;
+		this.idList = idList;
+	}
+
+	@Override
+	public MediaType contentType() {
+		return MEDIATYPE_JSON;
+	}
+
+	@Override
+	public void writeTo(@NonNull BufferedSink sink) throws IOException {
+		boolean first = true;
+		sink.writeByte('{');
+
+		for (Map.Entry<String, String> entry : params.entrySet()) {
+			if (entry.getValue() == null)
+				continue;
+			if (!first)
+				sink.writeByte(',');
+			writeString(sink, entry.getKey());
+			sink.writeByte(':');
+			writeString(sink, entry.getValue());
+			first = false;
+		}
+
+		if (idList != null) {
+			if (!first)
+				sink.writeByte(',');
+			writeString(sink, idList.name);
+			sink.writeByte(':');
+			sink.writeByte('"');
+			for (int i = idList.from; i < idList.to; i++) {
+				if (i > idList.from)
+					sink.writeByte(',');
+				sink.writeDecimalLong(idList.ids[i]);
+			}
+			sink.writeByte('"');
+		}
+
+		sink.writeByte('}');
+	}
+
+	/**
+	 * Writes the value as quoted and escaped JSON string. Runs of characters which don't need escaping are handed
+	 * to the sink in one piece.
+	 */
+	private static void writeString(BufferedSink sink, String value) throws IOException {
+		sink.writeByte('"');
+
+		int start = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR)
+				continue;
+
+			if (i > start)
+				sink.writeUtf8(value, start, i);
+			start = i + 1;
+
+			switch (c) {
+				case '"':
+					sink.writeUtf8("\\\"");
+					break;
+				case '\\':
+					sink.writeUtf8("\\\\");
+					break;
+				case '\n':
+					sink.writeUtf8("\\n");
+					break;
+				case '\r':
+					sink.writeUtf8("\\r");
+					break;
+				case '\t':
+					sink.writeUtf8("\\t");
+					break;
+				default:
+					sink.writeUtf8("\\u");
+					sink.writeByte(HEX[(c >> 12) & 0xF]);
+					sink.writeByte(HEX[(c >> 8) & 0xF]);
+					sink.writeByte(HEX[(c >> 4) & 0xF]);
+					sink.writeByte(HEX[c & 0xF]);
+					break;
+			}
+		}
+
+		if (length > start)
+			sink.writeUtf8(value, start, length);
+		sink.writeByte('"');
+	}
+
+	/**
+	 * A slice of an array of ids which is sent as one comma-separated parameter, e.g. "article_ids".
+	 */
+	static class IdList {
+
+		final String name;
+		final int[] ids;
+		final int from;
+		final int to;
+
+		/**
+		 * @param name the name of the parameter
+		 * @param ids  the ids, the array is not copied
+		 * @param from the first index to be written (inclusive)
+		 * @param to   the last index to be written (exclusive)
+		 */
+		IdList(String name, int[] ids, int from, int to) {
+			this.name = name;
+			this.ids = ids;
+			this.from = from;
+			this.to = to;
+		}
+
+		int size() {
+			return to - from;
+		}
+	}
+
+}
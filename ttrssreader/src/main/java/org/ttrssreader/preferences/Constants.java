@@ -141,6 +141,9 @@ public class Constants {
 	public static final String CACHE_FOLDER_MAX_SIZE = "CacheFolderMaxSizePreference";
 	public static final String CACHE_IMAGE_MAX_SIZE = "CacheImageMaxSizePreference";
 	public static final String CACHE_IMAGE_MIN_SIZE = "CacheImageMinSizePreference";
+	public static final String CACHE_IMAGE_THREADS = "CacheImageThreadsPreference";
+	public static final String ARTICLE_MAX_AGE = "ArticleMaxAgePreference";
+	public static final String ARTICLE_LIMIT_PER_FEED = "ArticleLimitPerFeedPreference";
 	public static final String DELETE_DB_SCHEDULED = "DeleteDBScheduledPreference";
 	public static final String CACHE_IMAGES_ON_STARTUP = "CacheImagesOnStartupPreference";
 	public static final String CACHE_IMAGES_ONLY_WIFI = "CacheImagesOnlyWifiPreference";
@@ -152,6 +155,9 @@ public class Constants {
 	public static final int CACHE_FOLDER_MAX_SIZE_DEFAULT = 80;
 	public static final int CACHE_IMAGE_MAX_SIZE_DEFAULT = 6 * (int) Utils.MB; // 6 MB
 	public static final int CACHE_IMAGE_MIN_SIZE_DEFAULT = 32 * (int) Utils.KB; // 64 KB
+	public static final int CACHE_IMAGE_THREADS_DEFAULT = 4;
+	public static final int ARTICLE_MAX_AGE_DEFAULT = 0; // Days, 0 keeps articles regardless of their age
+	public static final int ARTICLE_LIMIT_PER_FEED_DEFAULT = 0; // 0 means no limit per feed
 	public static final boolean DELETE_DB_SCHEDULED_DEFAULT = false;
 	public static final boolean CACHE_IMAGES_ON_STARTUP_DEFAULT = false;
 	public static final boolean CACHE_IMAGES_ONLY_WIFI_DEFAULT = false;
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hyphenation with Liang's algorithm using the pattern files of Hyphenator.js from {@code assets/patterns}. Soft
+ * hyphens are inserted into the html of an article while it is rendered in the background, so the WebView doesn't
+ * have to run Hyphenator.js and reflow the page after it has been displayed.
+ * <p>
+ * The patterns of a language are parsed once into a trie which is stored in a few flat arrays. The rules for words,
+ * leftmin/rightmin, exceptions and character substitutions follow Hyphenator.js.
+ */
+public class Hyphenator {
+
+	private static final String TAG = Hyphenator.class.getSimpleName();
+
+	public static final char SOFT_HYPHEN = '\u00AD';
+
+	private static final String PATTERN_DIR = "patterns/";
+	// Default of Hyphenator.js
+	private static final int MIN_WORD_LENGTH = 6;
+	private static final int MAX_ENTITY_LENGTH = 10;
+
+	// Content of these elements is not hyphenated, same as "dontHyphenate" in Hyphenator.js without the void elements
+	private static final Set<String> SKIP_TAGS = new HashSet<>(Arrays.asList("script", "code", "pre", "samp", "kbd",
+			"var", "abbr", "acronym", "sub", "sup", "button", "option", "label", "textarea", "math", "svg", "style"));
+
+	private static final Pattern COMMENT_LINE = Pattern.compile("^\\s*//.*$", Pattern.MULTILINE);
+	private static final Pattern LEFTMIN = Pattern.compile("leftmin\\s*:\\s*(\\d+)");
+	private static final Pattern RIGHTMIN = Pattern.compile("rightmin\\s*:\\s*(\\d+)");
+	private static final Pattern SPECIAL_CHARS = Pattern.compile("specialChars\\s*:\\s*([\"'])(.*?)\\1");
+	private static final Pattern PATTERNS = Pattern.compile("patterns\\s*:\\s*\\{([^}]*)\\}", Pattern.DOTALL);
+	private static final Pattern PATTERN_ENTRY = Pattern.compile("(\\d+)\\s*:\\s*([\"'])(.*?)\\2");
+	private static final Pattern EXCEPTIONS = Pattern.compile("exceptions\\s*:\\s*([\"'])(.*?)\\1");
+	private static final Pattern SUBSTITUTIONS = Pattern.compile("charSubstitution\\s*:\\s*\\{([^}]*)\\}", Pattern.DOTALL);
+	private static final Pattern SUBSTITUTION_ENTRY = Pattern.compile("([\"'])(.)\\1\\s*:\\s*([\"'])(.)\\3");
+
+	// Languages whose patterns couldn't be loaded are stored with a null value
+	private static final Map<String, Hyphenator> instances = new HashMap<>();
+
+	private int leftMin = 2;
+	private int rightMin = 2;
+	private String specialChars = "";
+	private final Map<String, String> exceptions = new HashMap<>();
+	private final Map<Character, Character> substitutions = new HashMap<>();
+
+	// Trie, node 0 is the root. Children of a node are a linked list of siblings.
+	private char[] nodeChar = new char[1024];
+	private int[] firstChild = new int[1024];
+	private int[] nextSibling = new int[1024];
+	// Offset of the points of a node in pointPool or -1, the first byte at the offset is the number of points
+	private int[] nodePoints = new int[1024];
+	private int nodeCount = 1;
+	private byte[] pointPool = new byte[4096];
+	private int pointPoolSize = 0;
+
+	private Hyphenator() {
+		firstChild[0] = -1;
+		nextSibling[0] = -1;
+		nodePoints[0] = -1;
+	}
+
+	/**
+	 * Returns the hyphenator for the given language, the patterns are loaded from the assets on the first call. This
+	 * may take some time so it should not be called from the UI thread.
+	 *
+	 * @param context  the context to access the assets
+	 * @param language the language as used for the pattern files, e.g. "de" or "en-us"
+	 * @return the hyphenator or null if there are no usable patterns for the language
+	 */
+	public static Hyphenator getInstance(Context context, String language) {
+		synchronized (instances) {
+			if (instances.containsKey(language))
+				return instances.get(language);
+
+			Hyphenator ret = null;
+			InputStream in = null;
+			try {
+				long time = System.currentTimeMillis();
+				in = context.getAssets().open(PATTERN_DIR + language + ".js");
+				ret = parse(readFully(in));
+				Log.d(TAG, String.format("Loaded %s hyphenation nodes for %s in %sms", ret.nodeCount, language,
+						System.currentTimeMillis() - time));
+			} catch (IOException | RuntimeException e) {
+				Log.w(TAG, "Couldn't load hyphenation patterns for " + language + ": " + e.getMessage());
+			} finally {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (IOException ignored) {
+					}
+				}
+			}
+
+			instances.put(language, ret);
+			return ret;
+		}
+	}
+
+	private static String readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toString("UTF-8");
+	}
+
+	/**
+	 * Parses a pattern file in the format of Hyphenator.js.
+	 *
+	 * @param js the content of the file
+	 * @return the hyphenator for the patterns
+	 * @throws IllegalArgumentException if the file contains no patterns
+	 */
+	static Hyphenator parse(String js) {
+		js = COMMENT_LINE.matcher(js).replaceAll("");
+		Hyphenator ret = new Hyphenator();
+
+		Matcher m = LEFTMIN.matcher(js);
+		if (m.find())
+			ret.leftMin = Integer.parseInt(m.group(1));
+		m = RIGHTMIN.matcher(js);
+		if (m.find())
+			ret.rightMin = Integer.parseInt(m.group(1));
+		m = SPECIAL_CHARS.matcher(js);
+		if (m.find())
+			ret.specialChars = m.group(2);
+
+		m = PATTERNS.matcher(js);
+		if (!m.find())
+			throw new IllegalArgumentException("No patterns found");
+
+		Matcher entry = PATTERN_ENTRY.matcher(m.group(1));
+		while (entry.find()) {
+			// All patterns of one entry have the same length (letters and digits) and are simply concatenated
+			int length = Integer.parseInt(entry.group(1));
+			String patterns = entry.group(3);
+			for (int i = 0; i + length <= patterns.length(); i += length) {
+				ret.addPattern(patterns, i, i + length);
+			}
+		}
+		if (ret.nodeCount <= 1)
+			throw new IllegalArgumentException("No patterns found");
+
+		m = EXCEPTIONS.matcher(js);
+		if (m.find()) {
+			for (String exception : m.group(2).split(",")) {
+				exception = exception.trim();
+				if (exception.length() > 0)
+					ret.exceptions.put(exception.replace("-", ""), exception.replace('-', SOFT_HYPHEN));
+			}
+		}
+
+		m = SUBSTITUTIONS.matcher(js);
+		if (m.find()) {
+			Matcher subst = SUBSTITUTION_ENTRY.matcher(m.group(1));
+			while (subst.find()) {
+				ret.substitutions.put(subst.group(2).charAt(0), subst.group(4).charAt(0));
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Adds one pattern like "a1b2c" to the trie. Runs of digits are the value of the position between two letters,
+	 * positions without digits have the value 0.
+	 */
+	private void addPattern(String s, int start, int end) {
+		int letters = 0;
+		for (int i = start; i < end; i++) {
+			if (!isDigit(s.charAt(i)))
+				letters++;
+		}
+
+		byte[] points = new byte[letters + 1];
+		int node = 0;
+		int pos = 0;
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if (isDigit(c)) {
+				value = value * 10 + (c - '0');
+			} else {
+				points[pos++] = (byte) value;
+				value = 0;
+				node = getOrAddChild(node, c);
+			}
+		}
+		points[pos] = (byte) value;
+
+		ensurePoolCapacity(points.length + 1);
+		nodePoints[node] = pointPoolSize;
+		pointPool[pointPoolSize++] = (byte) points.length;
+		System.arraycopy(points, 0, pointPool, pointPoolSize, points.length);
+		pointPoolSize += points.length;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private int getChild(int node, char c) {
+		for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+			if (nodeChar[child] == c)
+				return child;
+		}
+		return -1;
+	}
+
+	private int getOrAddChild(int node, char c) {
+		int child = getChild(node, c);
+		if (child != -1)
+			return child;
+
+		if (nodeCount == nodeChar.length) {
+			int capacity = nodeCount * 2;
+			nodeChar = Arrays.copyOf(nodeChar, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			nodePoints = Arrays.copyOf(nodePoints, capacity);
+		}
+
+		child = nodeCount++;
+		nodeChar[child] = c;
+		firstChild[child] = -1;
+		nodePoints[child] = -1;
+		nextSibling[child] = firstChild[node];
+		firstChild[node] = child;
+		return child;
+	}
+
+	private void ensurePoolCapacity(int additional) {
+		if (pointPoolSize + additional > pointPool.length)
+			pointPool = Arrays.copyOf(pointPool, Math.max(pointPool.length * 2, pointPoolSize + additional));
+	}
+
+	private boolean isWordChar(char c) {
+		return Character.isLetter(c) || (c != '-' && specialChars.indexOf(c) != -1);
+	}
+
+	/**
+	 * Inserts soft hyphens into a single word.
+	 *
+	 * @param word the word, must not contain spaces or hyphens
+	 * @return the word with soft hyphens at all allowed positions
+	 */
+	public String hyphenateWord(String word) {
+		String exception = exceptions.get(word);
+		if (exception != null)
+			return exception;
+
+		// Word with boundary markers, lower case and with substitutions applied for the lookup in the trie
+		int length = word.length() + 2;
+		char[] w = new char[length];
+		w[0] = '_';
+		w[length - 1] = '_';
+		for (int i = 0; i < word.length(); i++) {
+			char c = Character.toLowerCase(word.charAt(i));
+			if (c == '\'')
+				c = '\u2019'; // The patterns use RIGHT SINGLE QUOTATION MARK
+			Character subst = substitutions.get(c);
+			w[i + 1] = subst != null ? subst : c;
+		}
+
+		int[] points = new int[length + 1];
+		for (int i = 0; i < length; i++) {
+			int node = 0;
+			for (int j = i; j < length; j++) {
+				node = getChild(node, w[j]);
+				if (node == -1)
+					break;
+
+				int offset = nodePoints[node];
+				if (offset != -1) {
+					int count = pointPool[offset];
+					for (int k = 0; k < count; k++) {
+						points[i + k] = Math.max(points[i + k], pointPool[offset + 1 + k]);
+					}
+				}
+			}
+		}
+
+		StringBuilder sb = new StringBuilder(word.length() + 8);
+		for (int i = 1; i < length - 1; i++) {
+			if (i > leftMin && i < length - rightMin && points[i] % 2 == 1)
+				sb.append(SOFT_HYPHEN);
+			sb.append(word.charAt(i - 1));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Inserts soft hyphens into the words of the text nodes of a html fragment. Tags, comments, entities, urls, mail
+	 * addresses and the content of elements like pre, code or script are left alone.
+	 *
+	 * @param html the html fragment
+	 * @return the fragment with soft hyphens
+	 */
+	public String hyphenateHtml(String html) {
+		if (html == null || html.isEmpty())
+			return html;
+
+		StringBuilder out = new StringBuilder(html.length() + html.length() / 8);
+		int skipDepth = 0;
+		int length = html.length();
+		int i = 0;
+
+		while (i < length) {
+			char c = html.charAt(i);
+
+			if (c == '<') {
+				int end;
+				if (html.startsWith("<!--", i)) {
+					end = html.indexOf("-->", i + 4);
+					end = end == -1 ? length : end + 3;
+				} else {
+					end = findTagEnd(html, i);
+					String name = tagName(html, i, end);
+					if (SKIP_TAGS.contains(name)) {
+						if (html.charAt(i + 1) == '/')
+							skipDepth = Math.max(0, skipDepth - 1);
+						else if (html.charAt(end - 2) != '/')
+							skipDepth++;
+					}
+				}
+				out.append(html, i, end);
+				i = end;
+				continue;
+			}
+
+			// Text up to the next tag
+			int end = html.indexOf('<', i);
+			if (end == -1)
+				end = length;
+			if (skipDepth > 0)
+				out.append(html, i, end);
+			else
+				hyphenateText(html, i, end, out);
+			i = end;
+		}
+
+		return out.toString();
+	}
+
+	private static int findTagEnd(String html, int start) {
+		char quote = 0;
+		for (int i = start + 1; i < html.length(); i++) {
+			char c = html.charAt(i);
+			if (quote != 0) {
+				if (c == quote)
+					quote = 0;
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '>') {
+				return i + 1;
+			}
+		}
+		return html.length();
+	}
+
+	private static String tagName(String html, int start, int end) {
+		int i = start + 1;
+		if (i < end && html.charAt(i) == '/')
+			i++;
+		int nameStart = i;
+		while (i < end && Character.isLetterOrDigit(html.charAt(i)))
+			i++;
+		return html.substring(nameStart, i).toLowerCase(Locale.ENGLISH);
+	}
+
+	private void hyphenateText(String text, int start, int end, StringBuilder out) {
+		int i = start;
+		while (i < end) {
+			char c = text.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				out.append(c);
+				i++;
+				continue;
+			}
+
+			// Whitespace separated token, urls, mail addresses and already hyphenated words are left alone
+			int tokenEnd = i;
+			while (tokenEnd < end && !Character.isWhitespace(text.charAt(tokenEnd)))
+				tokenEnd++;
+			if (isExcludedToken(text, i, tokenEnd)) {
+				out.append(text, i, tokenEnd);
+				i = tokenEnd;
+				continue;
+			}
+
+			while (i < tokenEnd) {
+				c = text.charAt(i);
+				if (c == '&') {
+					int entityEnd = text.indexOf(';', i);
+					if (entityEnd != -1 && entityEnd < tokenEnd && entityEnd - i <= MAX_ENTITY_LENGTH) {
+						out.append(text, i, entityEnd + 1);
+						i = entityEnd + 1;
+						continue;
+					}
+				}
+
+				if (!isWordChar(c)) {
+					out.append(c);
+					i++;
+					continue;
+				}
+
+				int wordEnd = i;
+				while (wordEnd < tokenEnd && isWordChar(text.charAt(wordEnd)))
+					wordEnd++;
+				if (wordEnd - i >= MIN_WORD_LENGTH)
+					out.append(hyphenateWord(text.substring(i, wordEnd)));
+				else
+					out.append(text, i, wordEnd);
+				i = wordEnd;
+			}
+		}
+	}
+
+	private static boolean isExcludedToken(String text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c == '@' || c == SOFT_HYPHEN || (c == '&' && text.startsWith("&shy;", i)))
+				return true;
+			if (c == ':' && text.startsWith("//", i + 1))
+				return true;
+		}
+		return text.startsWith("www.", start);
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive int keys to primitive long values using open addressing, a replacement for
+ * {@code HashMap<Integer, Long>} which doesn't allocate boxed keys, values and entries. {@link Integer#MIN_VALUE}
+ * marks free slots and can't be used as key.
+ */
+public class IntLongMap {
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private long[] values;
+	private int size = 0;
+
+	public IntLongMap() {
+		this(16);
+	}
+
+	public IntLongMap(int expectedSize) {
+		int capacity = IntSet.capacityFor(expectedSize);
+		keys = new int[capacity];
+		values = new long[capacity];
+		Arrays.fill(keys, FREE);
+	}
+
+	public void put(int key, long value) {
+		if (key == FREE)
+			throw new IllegalArgumentException("Integer.MIN_VALUE can't be used as key of an IntLongMap");
+
+		int mask = keys.length - 1;
+		int i = IntSet.slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key) {
+				values[i] = value;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size * 2 > keys.length)
+			rehash(keys.length << 1);
+	}
+
+	/**
+	 * @return the value stored for the key or {@code defaultValue} if there is none
+	 */
+	public long get(int key, long defaultValue) {
+		if (key == FREE)
+			return defaultValue;
+
+		int mask = keys.length - 1;
+		int i = IntSet.slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key)
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return defaultValue;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == FREE)
+			return false;
+
+		int mask = keys.length - 1;
+		int i = IntSet.slot(key, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == key)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new int[capacity];
+		values = new long[capacity];
+		Arrays.fill(keys, FREE);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE)
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of primitive ints using open addressing, so adding or looking up IDs doesn't allocate an Integer (and a map
+ * entry) for every element like {@code HashSet<Integer>} does. {@link Integer#MIN_VALUE} marks free slots and can't
+ * be stored.
+ */
+public class IntSet {
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int size = 0;
+
+	public IntSet() {
+		this(16);
+	}
+
+	public IntSet(int expectedSize) {
+		keys = new int[capacityFor(expectedSize)];
+		Arrays.fill(keys, FREE);
+	}
+
+	static int capacityFor(int expectedSize) {
+		// keep the load factor at or below 0.5 so probe sequences stay short
+		int capacity = 8;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	static int slot(int key, int mask) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * @return {@code true} if the value wasn't contained before
+	 */
+	public boolean add(int value) {
+		if (value == FREE)
+			throw new IllegalArgumentException("Integer.MIN_VALUE can't be stored in an IntSet");
+
+		int mask = keys.length - 1;
+		int i = slot(value, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+		keys[i] = value;
+		if (++size * 2 > keys.length)
+			rehash(keys.length << 1);
+		return true;
+	}
+
+	public void addAll(IntSet other) {
+		for (int key : other.keys) {
+			if (key != FREE)
+				add(key);
+		}
+	}
+
+	public boolean contains(int value) {
+		if (value == FREE)
+			return false;
+
+		int mask = keys.length - 1;
+		int i = slot(value, mask);
+		while (keys[i] != FREE) {
+			if (keys[i] == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the values in no particular order
+	 */
+	public int[] toArray() {
+		int[] ret = new int[size];
+		int n = 0;
+		for (int key : keys) {
+			if (key != FREE)
+				ret[n++] = key;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return all values separated by the separator, e.g. for "IN (...)" clauses
+	 */
+	public String join(String separator) {
+		List<String> ret = join(separator, Integer.MAX_VALUE);
+		return ret.isEmpty() ? "" : ret.get(0);
+	}
+
+	/**
+	 * Splits the values into Strings with maxCount values each, e.g. for statements which may only contain a
+	 * limited number of IDs.
+	 *
+	 * @return the values separated by the separator, empty if there are no values
+	 */
+	public List<String> join(String separator, int maxCount) {
+		List<String> ret = new ArrayList<>();
+		StringBuilder sb = new StringBuilder(Math.min(size, maxCount) * 8);
+		int count = 0;
+		for (int key : keys) {
+			if (key == FREE)
+				continue;
+			if (count > 0)
+				sb.append(separator);
+			sb.append(key);
+
+			if (++count == maxCount) {
+				ret.add(sb.toString());
+				sb.setLength(0);
+				count = 0;
+			}
+		}
+
+		if (count > 0)
+			ret.add(sb.toString());
+
+		return ret;
+	}
+
+	private void rehash(int capacity) {
+		int[] old = keys;
+		keys = new int[capacity];
+		Arrays.fill(keys, FREE);
+		size = 0;
+		for (int key : old) {
+			if (key != FREE)
+				add(key);
+		}
+	}
+
+}
@@ -47,6 +47,11 @@ public class SSLUtils {
 
 	private static final String TAG = SSLUtils.class.getSimpleName();
 
+	// Remember the current configuration so it can be applied to the OkHttpClient as well:
+	private static volatile SSLSocketFactory sslSocketFactory = null;
+	private static volatile X509TrustManager trustManager = null;
+	private static volatile HostnameVerifier hostnameVerifier = null;
+
 	public static void initSslSocketFactory(KeyManager[] km, TrustManager[] tm) throws KeyManagementException, NoSuchAlgorithmException {
 
 		SSLContext ctx = SSLContext.getInstance("TLS");
@@ -54,6 +59,41 @@ public class SSLUtils {
 		SSLSocketFactory factory = ctx.getSocketFactory();
 
 		HttpsURLConnection.setDefaultSSLSocketFactory(factory);
+
+		try {
+			trustManager = findTrustManager(tm);
+			sslSocketFactory = factory;
+		} catch (GeneralSecurityException e) {
+			Log.w(TAG, "Couldn't find X509TrustManager, keeping default SSL configuration for OkHttp.", e);
+		}
+	}
+
+	/**
+	 * Returns the first X509TrustManager from the given array or the system default one if the array is null.
+	 */
+	private static X509TrustManager findTrustManager(TrustManager[] tm) throws GeneralSecurityException {
+		if (tm == null) {
+			TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			tmf.init((KeyStore) null);
+			tm = tmf.getTrustManagers();
+		}
+		for (TrustManager t : tm) {
+			if (t instanceof X509TrustManager)
+				return (X509TrustManager) t;
+		}
+		throw new GeneralSecurityException("No X509TrustManager available.");
+	}
+
+	public static SSLSocketFactory getSslSocketFactory() {
+		return sslSocketFactory;
+	}
+
+	public static X509TrustManager getTrustManager() {
+		return trustManager;
+	}
+
+	public static HostnameVerifier getHostnameVerifier() {
+		return hostnameVerifier;
 	}
 
 	public static void initPrivateKeystore(String password) throws GeneralSecurityException {
@@ -117,14 +157,16 @@ public class SSLUtils {
 	public static void trustAllHost() {
 		Log.i(TAG, "Enabling SSLUtils to trust all HOSTS.");
 		try {
-			HttpsURLConnection.setDefaultHostnameVerifier(new HostnameVerifier() {
+			HostnameVerifier verifier = new HostnameVerifier() {
 				@SuppressLint("BadHostnameVerifier")
 				@Override
 				public boolean verify(String hostname, SSLSession session) {
 					// This thing is supposed to return true since it specifically ignores all errors!
 					return true;
 				}
-			});
+			};
+			HttpsURLConnection.setDefaultHostnameVerifier(verifier);
+			hostnameVerifier = verifier;
 		} catch (Exception e) {
 			// Empty, HostnameVerifier cannot be null.
 		}
@@ -132,8 +174,6 @@ public class SSLUtils {
 
 	public static void trustClientCert() throws NoSuchAlgorithmException, KeyManagementException {
 		KeyManager km = new KeyChainKeyManager();
-		SSLContext sslContext = SSLContext.getInstance("TLS");
-		sslContext.init(new KeyManager[]{km}, null, null);
-		HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
+		initSslSocketFactory(new KeyManager[]{km}, null);
 	}
 }
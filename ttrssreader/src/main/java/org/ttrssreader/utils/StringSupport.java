@@ -17,22 +17,28 @@
 
 package org.ttrssreader.utils;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 // contains code from the Apache Software foundation
 public class StringSupport {
 
+	private static final Pattern HTML_SCRIPT_STYLE = Pattern.compile("<(script|style)[^>]*>.*?</\\1>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern HTML_TAG = Pattern.compile("<[^>]*>");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
 	/**
-	 * Splits the ids into Sets of Strings with maxCount ids each.
+	 * Splits the ids into Strings with maxCount comma-separated ids each.
 	 *
 	 * @param values   the set of ids to be split
 	 * @param maxCount the maximum length of each list
-	 * @return a set of Strings with comma-separated ids
+	 * @return a list of Strings with comma-separated ids
 	 */
-	public static <T> Set<String> convertListToString(Collection<T> values, int maxCount) {
-		Set<String> ret = new HashSet<>();
+	public static <T> List<String> convertListToString(Collection<T> values, int maxCount) {
+		List<String> ret = new ArrayList<>();
 		if (values == null || values.isEmpty())
 			return ret;
 
@@ -40,20 +46,19 @@ public class StringSupport {
 		int count = 0;
 
 		for (T t : values) {
+			if (count > 0)
+				sb.append(",");
 			sb.append(t);
 
-			if (count == maxCount) {
-				ret.add(sb.substring(0, sb.length() - 1));
-				sb = new StringBuilder();
+			if (++count == maxCount) {
+				ret.add(sb.toString());
+				sb.setLength(0);
 				count = 0;
-			} else {
-				sb.append(",");
-				count++;
 			}
 		}
 
-		if (sb.length() > 0)
-			ret.add(sb.substring(0, sb.length() - 1));
+		if (count > 0)
+			ret.add(sb.toString());
 
 		return ret;
 	}
@@ -71,4 +76,21 @@ public class StringSupport {
 		return string == null || string.isEmpty();
 	}
 
+	/**
+	 * Removes markup from the given html so only the text remains, e.g. for the full-text search index. This is
+	 * much cheaper than Html.fromHtml() and only decodes the most common entities.
+	 *
+	 * @param html the html content of an article
+	 * @return the plain text with whitespace collapsed
+	 */
+	public static String stripHtml(String html) {
+		if (isEmpty(html))
+			return "";
+
+		String text = HTML_SCRIPT_STYLE.matcher(html).replaceAll(" ");
+		text = HTML_TAG.matcher(text).replaceAll(" ");
+		text = text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&#39;", "'").replace("&amp;", "&");
+		return WHITESPACE.matcher(text).replaceAll(" ").trim();
+	}
+
 }
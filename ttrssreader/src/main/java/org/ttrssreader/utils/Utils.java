@@ -46,6 +46,7 @@ import android.widget.Toast;
 
 import org.ttrssreader.R;
 import org.ttrssreader.controllers.Controller;
+import org.ttrssreader.net.HttpClientFactory;
 import org.ttrssreader.preferences.Constants;
 
 import java.io.BufferedReader;
@@ -63,8 +64,6 @@ import java.util.Set;
 import java.util.regex.Pattern;
 
 import androidx.annotation.RequiresApi;
-import okhttp3.Credentials;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -101,6 +100,11 @@ public class Utils {
 	 */
 	public static final long CLEANUP_TIME = DAY;
 
+	/**
+	 * The time after which the incrementally maintained unread counters are recalculated from scratch
+	 */
+	public static final long COUNTER_CHECK_TIME = HOUR;
+
 	/**
 	 * The Pattern to match image-urls inside HTML img-tags.
 	 */
@@ -544,15 +548,9 @@ public class Utils {
 			Request.Builder reqBuilder = new Request.Builder();
 			reqBuilder.url(url);
 
-			// HTTP-Basic Authentication
-			if (Controller.getInstance().useHttpAuth()) {
-				String user = Controller.getInstance().httpUsername();
-				String pw = Controller.getInstance().httpPassword();
-				reqBuilder.addHeader("Authorization", Credentials.basic(user, pw));
-			}
-
+			// Use the shared client so connections to the same server are reused for all icons
 			Request request = reqBuilder.build();
-			Response response = new OkHttpClient().newCall(request).execute();
+			Response response = HttpClientFactory.getInstance().getClient().newCall(request).execute();
 
 			// download the file
 			try (ResponseBody body = response.body()) {
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the set-based statements of {@link DBHelper#recalculateCounters()} with the loops they replaced, which
+ * updated every feed and category on its own, on 5000 articles in 300 feeds. Both have to produce the same counters,
+ * the timings are printed for comparison.
+ */
+public class CounterRecalculationBenchmarkTest {
+
+	private static final int CATEGORIES = 20;
+	private static final int FEEDS = 300;
+	private static final int LABELS = 10;
+	private static final int ARTICLES = 5000;
+	private static final long NOW = 100000000L;
+	private static final long FRESH_SINCE = NOW - 5000;
+	private static final int WARMUP = 5;
+	private static final int ROUNDS = 20;
+
+	private static final String FEED_COUNTERS = "SELECT _id, unread FROM feeds WHERE _id>=-10 ORDER BY _id";
+	private static final String CATEGORY_COUNTERS = "SELECT _id, unread FROM categories ORDER BY _id";
+
+	private TestDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withIndexes();
+		Random random = new Random(42);
+		db.beginTransaction();
+		for (int id : new int[]{Data.VCAT_STAR, Data.VCAT_PUB, Data.VCAT_FRESH, Data.VCAT_ALL}) {
+			db.exec("INSERT INTO categories (_id, title, unread) VALUES (?, 'Virtual', 0)", id);
+		}
+		for (int id = 0; id < CATEGORIES; id++) {
+			db.exec("INSERT INTO categories (_id, title, unread) VALUES (?, 'Category', 0)", id);
+		}
+		for (int id = 1; id <= FEEDS; id++) {
+			db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, ?, 'Feed', 0)", id, id % CATEGORIES);
+		}
+		for (int id = -1025; id > -1025 - LABELS; id--) {
+			db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, -2, 'Label', 0)", id);
+		}
+		for (int id = 1; id <= ARTICLES; id++) {
+			db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished)"
+							+ " VALUES (?, ?, 'Title', ?, ?, ?, ?)", id, 1 + random.nextInt(FEEDS),
+					random.nextInt(10) < 6 ? 1 : 0, NOW - random.nextInt(20000), random.nextInt(10) == 0 ? 1 : 0,
+					random.nextInt(20) == 0 ? 1 : 0);
+			if (id % 7 == 0)
+				db.exec(DBHelper.INSERT_LABEL, id, -1025 - random.nextInt(LABELS));
+		}
+		db.commit();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	/**
+	 * The statements of DBHelper.recalculateCounters() in one transaction.
+	 */
+	private void recalculateSetBased() throws Exception {
+		db.beginTransaction();
+		db.exec(DBHelper.RECALCULATE_FEEDS);
+		db.exec(DBHelper.RECALCULATE_LABELS);
+		db.exec(DBHelper.RECALCULATE_CATEGORIES);
+		db.exec(DBHelper.RECALCULATE_VIRTUAL_CATEGORIES, FRESH_SINCE);
+		db.commit();
+	}
+
+	/**
+	 * The former countResetFeedsAndCategories(), countFeedsWithUnread(), countCategoriesWithUnread() and
+	 * countSpecialCategories(), each in its own transaction. Labels weren't counted there.
+	 */
+	private void recalculatePerRow() throws Exception {
+		db.beginTransaction();
+		db.exec("UPDATE feeds SET unread=0");
+		db.exec("UPDATE categories SET unread=0");
+		db.commit();
+
+		long total = 0;
+		db.beginTransaction();
+		for (long[] row : db.queryRows("SELECT feedId, count(*) FROM articles WHERE isUnread>0 GROUP BY feedId")) {
+			total += row[1];
+			db.exec("UPDATE feeds SET unread=? WHERE _id=?", row[1], row[0]);
+		}
+		db.commit();
+
+		db.beginTransaction();
+		for (long[] row : db.queryRows("SELECT categoryId, sum(unread) FROM feeds WHERE categoryId>=0 GROUP BY categoryId")) {
+			db.exec("UPDATE categories SET unread=? WHERE _id=?", row[1], row[0]);
+		}
+		db.commit();
+
+		db.beginTransaction();
+		db.exec("UPDATE categories SET unread=? WHERE _id=?", total, Data.VCAT_ALL);
+		db.exec("UPDATE categories SET unread=? WHERE _id=?",
+				db.queryLong("SELECT count(*) FROM articles WHERE isUnread>0 AND updateDate>?", FRESH_SINCE), Data.VCAT_FRESH);
+		db.exec("UPDATE categories SET unread=? WHERE _id=?",
+				db.queryLong("SELECT count(*) FROM articles WHERE isUnread>0 AND isPublished>0"), Data.VCAT_PUB);
+		db.exec("UPDATE categories SET unread=? WHERE _id=?",
+				db.queryLong("SELECT count(*) FROM articles WHERE isUnread>0 AND isStarred>0"), Data.VCAT_STAR);
+		db.commit();
+	}
+
+	private interface Recalculation {
+		void run() throws Exception;
+	}
+
+	/**
+	 * @return the median duration of the recalculation in microseconds
+	 */
+	private static long measure(Recalculation recalculation) throws Exception {
+		List<Long> durations = new ArrayList<>();
+		for (int round = 0; round < WARMUP + ROUNDS; round++) {
+			long start = System.nanoTime();
+			recalculation.run();
+			if (round >= WARMUP)
+				durations.add((System.nanoTime() - start) / 1000);
+		}
+		Collections.sort(durations);
+		return durations.get(ROUNDS / 2);
+	}
+
+	private void assertCounters(List<long[]> expected, List<long[]> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertArrayEquals(expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void compareWithPerRowUpdates() throws Exception {
+		long perRow = measure(this::recalculatePerRow);
+		List<long[]> feeds = db.queryRows(FEED_COUNTERS);
+		List<long[]> categories = db.queryRows(CATEGORY_COUNTERS);
+
+		long setBased = measure(this::recalculateSetBased);
+		assertCounters(feeds, db.queryRows(FEED_COUNTERS));
+		assertCounters(categories, db.queryRows(CATEGORY_COUNTERS));
+
+		System.out.println(String.format("Recalculating counters of %s articles in %s feeds: per row %s us, set-based"
+				+ " %s us (median of %s runs)", ARTICLES, FEEDS, perRow, setBased, ROUNDS));
+	}
+
+}
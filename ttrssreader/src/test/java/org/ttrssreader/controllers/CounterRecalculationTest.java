@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The statements of {@link DBHelper#recalculateCounters()} must produce the same counters as the triggers which keep
+ * them up to date while articles change.
+ */
+public class CounterRecalculationTest {
+
+	private static final int CATEGORY_1 = 1;
+	private static final int CATEGORY_2 = 2;
+	private static final int FEED_1 = 11;
+	private static final int FEED_2 = 12;
+	private static final int FEED_3 = 13;
+	private static final int EMPTY_FEED = 14;
+	private static final int LABEL = -1025;
+	private static final long NOW = 1000000;
+
+	private TestDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withCounterSchema();
+		for (int id : new int[]{CATEGORY_1, CATEGORY_2, Data.VCAT_STAR, Data.VCAT_PUB, Data.VCAT_FRESH, Data.VCAT_ALL}) {
+			db.exec("INSERT INTO categories (_id, title, unread) VALUES (?, 'Category', 0)", id);
+		}
+		insertFeed(FEED_1, CATEGORY_1);
+		insertFeed(FEED_2, CATEGORY_1);
+		insertFeed(FEED_3, CATEGORY_2);
+		insertFeed(EMPTY_FEED, CATEGORY_2);
+		insertFeed(LABEL, -2);
+
+		// id, feed, unread, starred, published, updateDate
+		insertArticle(1, FEED_1, true, false, false, NOW);
+		insertArticle(2, FEED_1, true, true, false, NOW - 10);
+		insertArticle(3, FEED_1, false, true, true, NOW);
+		insertArticle(4, FEED_2, true, false, true, NOW - 100);
+		insertArticle(5, FEED_3, true, false, false, NOW - 100);
+		insertArticle(6, FEED_3, false, false, false, NOW);
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 3, LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 5, LABEL);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	private void insertFeed(int id, int categoryId) throws Exception {
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, ?, 'Feed', 0)", id, categoryId);
+	}
+
+	private void insertArticle(int id, int feedId, boolean unread, boolean starred, boolean published, long updateDate)
+			throws Exception {
+		db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished)"
+				+ " VALUES (?, ?, 'Title', ?, ?, ?, ?)", id, feedId, unread ? 1 : 0, updateDate, starred ? 1 : 0,
+				published ? 1 : 0);
+	}
+
+	private void recalculate(long freshSince) throws Exception {
+		db.exec(DBHelper.RECALCULATE_FEEDS);
+		db.exec(DBHelper.RECALCULATE_LABELS);
+		db.exec(DBHelper.RECALCULATE_CATEGORIES);
+		db.exec(DBHelper.RECALCULATE_VIRTUAL_CATEGORIES, freshSince);
+	}
+
+	private long unread(String table, int id) throws Exception {
+		return db.queryLong("SELECT unread FROM " + table + " WHERE _id=?", id);
+	}
+
+	@Test
+	public void countsUnreadArticles() throws Exception {
+		db.exec("UPDATE feeds SET unread=42");
+		db.exec("UPDATE categories SET unread=42");
+		recalculate(NOW - 50);
+
+		assertEquals(2, unread(DBHelper.TABLE_FEEDS, FEED_1));
+		assertEquals(1, unread(DBHelper.TABLE_FEEDS, FEED_2));
+		assertEquals(1, unread(DBHelper.TABLE_FEEDS, FEED_3));
+		assertEquals(0, unread(DBHelper.TABLE_FEEDS, EMPTY_FEED));
+		assertEquals(2, unread(DBHelper.TABLE_FEEDS, LABEL));
+
+		assertEquals(3, unread(DBHelper.TABLE_CATEGORIES, CATEGORY_1));
+		assertEquals(1, unread(DBHelper.TABLE_CATEGORIES, CATEGORY_2));
+		assertEquals(4, unread(DBHelper.TABLE_CATEGORIES, Data.VCAT_ALL));
+		assertEquals(2, unread(DBHelper.TABLE_CATEGORIES, Data.VCAT_FRESH));
+		assertEquals(1, unread(DBHelper.TABLE_CATEGORIES, Data.VCAT_PUB));
+		assertEquals(1, unread(DBHelper.TABLE_CATEGORIES, Data.VCAT_STAR));
+	}
+
+	@Test
+	public void matchesCountersOfTriggers() throws Exception {
+		// Change some articles after the initial inserts so the triggers have to do some work
+		db.exec("UPDATE articles SET isUnread=0 WHERE _id=?", 2);
+		db.exec("UPDATE articles SET isUnread=1, isStarred=1 WHERE _id=?", 6);
+		db.exec("DELETE FROM articles WHERE _id=?", 5);
+
+		String feeds = "SELECT unread FROM feeds ORDER BY _id";
+		// The triggers don't maintain the "fresh articles" which depend on the current time
+		String categories = "SELECT unread FROM categories WHERE _id<>" + Data.VCAT_FRESH + " ORDER BY _id";
+		List<Long> feedsByTriggers = db.queryLongs(feeds);
+		List<Long> categoriesByTriggers = db.queryLongs(categories);
+
+		recalculate(NOW);
+		assertEquals(feedsByTriggers, db.queryLongs(feeds));
+		assertEquals(categoriesByTriggers, db.queryLongs(categories));
+	}
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Readers must not wait for writers, but nobody may use the database while it is opened, closed or deleted.
+ */
+public class DatabaseLockTest {
+
+	private static final long WAIT_MS = 200;
+
+	private final DatabaseLock lock = new DatabaseLock();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Takes a lock on another thread and keeps it until {@link #release()} is called.
+	 */
+	private class Holder {
+		private final CountDownLatch acquired = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final Future<?> future;
+
+		Holder(final Runnable lockAction, final Runnable unlockAction) {
+			future = executor.submit(() -> {
+				lockAction.run();
+				try {
+					acquired.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					unlockAction.run();
+				}
+				return null;
+			});
+		}
+
+		boolean awaitAcquired() throws InterruptedException {
+			return acquired.await(WAIT_MS, TimeUnit.MILLISECONDS);
+		}
+
+		void release() throws Exception {
+			release.countDown();
+			future.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private Holder reader() {
+		return new Holder(lock::lockRead, lock::unlockRead);
+	}
+
+	private Holder writer() {
+		return new Holder(lock::lockWrite, lock::unlockWrite);
+	}
+
+	private Holder exclusive() {
+		return new Holder(lock::lockExclusive, lock::unlockExclusive);
+	}
+
+	@Test
+	public void readerDoesNotWaitForWriter() throws Exception {
+		Holder writer = writer();
+		assertTrue(writer.awaitAcquired());
+
+		Holder reader = reader();
+		assertTrue(reader.awaitAcquired());
+
+		reader.release();
+		writer.release();
+	}
+
+	@Test
+	public void writersAreSerialised() throws Exception {
+		Holder first = writer();
+		assertTrue(first.awaitAcquired());
+
+		Holder second = writer();
+		assertFalse(second.awaitAcquired());
+
+		first.release();
+		assertTrue(second.awaitAcquired());
+		second.release();
+	}
+
+	@Test
+	public void exclusiveWaitsForReaderAndWriter() throws Exception {
+		Holder reader = reader();
+		Holder writer = writer();
+		assertTrue(reader.awaitAcquired());
+		assertTrue(writer.awaitAcquired());
+
+		Holder exclusive = exclusive();
+		assertFalse(exclusive.awaitAcquired());
+
+		reader.release();
+		assertFalse(exclusive.awaitAcquired());
+
+		writer.release();
+		assertTrue(exclusive.awaitAcquired());
+		exclusive.release();
+	}
+
+	@Test
+	public void readerAndWriterWaitForExclusive() throws Exception {
+		Holder exclusive = exclusive();
+		assertTrue(exclusive.awaitAcquired());
+
+		Holder reader = reader();
+		Holder writer = writer();
+		assertFalse(reader.awaitAcquired());
+		assertFalse(writer.awaitAcquired());
+
+		exclusive.release();
+		assertTrue(reader.awaitAcquired());
+		assertTrue(writer.awaitAcquired());
+		reader.release();
+		writer.release();
+	}
+
+	@Test
+	public void writerCanReadWhileExclusiveIsWaiting() throws Exception {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch exclusiveQueued = new CountDownLatch(1);
+		Future<?> writer = executor.submit(() -> {
+			lock.lockWrite();
+			try {
+				writing.countDown();
+				exclusiveQueued.await();
+				// e.g. insertArticles() looking up stored articles inside its transaction
+				lock.lockRead();
+				lock.unlockRead();
+			} finally {
+				lock.unlockWrite();
+			}
+			return null;
+		});
+		assertTrue(writing.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+		Holder exclusive = exclusive();
+		assertFalse(exclusive.awaitAcquired());
+		exclusiveQueued.countDown();
+
+		try {
+			writer.get(WAIT_MS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			fail("Writer deadlocked while the database was about to be closed");
+		}
+		assertTrue(exclusive.awaitAcquired());
+		exclusive.release();
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test for the headline list while a sync stores articles: one thread ingests 1000 articles in a single
+ * transaction like {@link DBHelper#insertArticles}, another one keeps running the headline query like the UI does.
+ * With write-ahead logging and {@link DatabaseLock} the reader has to proceed on the last committed state instead of
+ * waiting for the transaction. The read latencies are printed for comparison.
+ */
+public class IngestReadLatencyTest {
+
+	private static final int ARTICLES = 1000;
+	private static final int FEED = 1;
+	private static final int EXISTING = 100;
+	private static final long TIMEOUT_S = 30;
+
+	private static final String HEADLINES = "SELECT _id FROM " + DBHelper.TABLE_ARTICLES
+			+ " WHERE feedId=? ORDER BY updateDate DESC LIMIT 100";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DatabaseLock lock = new DatabaseLock();
+	private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+	private TestDatabase writer;
+	private TestDatabase reader;
+
+	@Before
+	public void setUp() throws Exception {
+		File file = new File(folder.getRoot(), "test.db");
+		writer = TestDatabase.open(file);
+		writer.exec("PRAGMA journal_mode=WAL");
+		writer.createCounterSchema();
+		writer.exec(DBHelper.CREATE_TABLE_ARTICLES_FTS);
+		writer.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, 0, 'Feed', 0)", FEED);
+		for (int id = 1; id <= EXISTING; id++) {
+			insertArticle(id);
+		}
+		reader = TestDatabase.open(file);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		reader.close();
+		writer.close();
+	}
+
+	private void insertArticle(int id) throws Exception {
+		String content = "<p>Content of article " + id + " with some more words to index</p>";
+		writer.exec(DBHelper.INSERT_ARTICLE, id, FEED, "Title " + id, 1, "http://example.com/" + id, "", (long) id,
+				content, 0, 0, "Author", null);
+		writer.exec(DBHelper.INSERT_ARTICLE_FTS, id, "Title " + id, "Author", content);
+	}
+
+	@Test
+	public void readsDoNotWaitForIngest() throws Exception {
+		final CountDownLatch ingesting = new CountDownLatch(1);
+		final CountDownLatch readDuringIngest = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		Future<Long> ingest = executor.submit(() -> {
+			long start = System.nanoTime();
+			lock.lockWrite();
+			try {
+				writer.beginTransaction();
+				for (int id = EXISTING + 1; id <= EXISTING + ARTICLES; id++) {
+					insertArticle(id);
+					if (id == EXISTING + ARTICLES / 2) {
+						// Keep the transaction open until the reader got through, fails if reads are blocked
+						ingesting.countDown();
+						assertTrue("Reader blocked by the ingest", readDuringIngest.await(TIMEOUT_S, TimeUnit.SECONDS));
+					}
+				}
+				writer.commit();
+			} finally {
+				lock.unlockWrite();
+				done.set(true);
+			}
+			return System.nanoTime() - start;
+		});
+
+		Future<List<Long>> reads = executor.submit(() -> {
+			List<Long> latencies = new ArrayList<>();
+			assertTrue(ingesting.await(TIMEOUT_S, TimeUnit.SECONDS));
+			while (!done.get()) {
+				long start = System.nanoTime();
+				List<Long> ids;
+				lock.lockRead();
+				try {
+					ids = reader.queryLongs(HEADLINES, FEED);
+				} finally {
+					lock.unlockRead();
+				}
+				latencies.add(System.nanoTime() - start);
+
+				if (readDuringIngest.getCount() > 0) {
+					// The writer waits for this read, so only the articles committed before are visible
+					assertEquals((long) EXISTING, (long) ids.get(0));
+					readDuringIngest.countDown();
+				}
+			}
+			return latencies;
+		});
+
+		long ingestNanos = ingest.get(TIMEOUT_S, TimeUnit.SECONDS);
+		List<Long> latencies = reads.get(TIMEOUT_S, TimeUnit.SECONDS);
+		assertFalse(latencies.isEmpty());
+		assertEquals(EXISTING + ARTICLES, reader.queryLong("SELECT count(*) FROM articles"));
+		assertEquals(EXISTING + ARTICLES, reader.queryLong("SELECT unread FROM feeds WHERE _id=?", FEED));
+
+		Collections.sort(latencies);
+		System.out.println(String.format("Ingest of %s articles: %s ms, %s reads meanwhile: median %s us, p99 %s us,"
+						+ " max %s us", ARTICLES, TimeUnit.NANOSECONDS.toMillis(ingestNanos), latencies.size(),
+				micros(latencies, 50), micros(latencies, 99), TimeUnit.NANOSECONDS.toMicros(latencies.get(latencies.size() - 1))));
+	}
+
+	private static long micros(List<Long> sorted, int percentile) {
+		return TimeUnit.NANOSECONDS.toMicros(sorted.get((sorted.size() - 1) * percentile / 100));
+	}
+
+}
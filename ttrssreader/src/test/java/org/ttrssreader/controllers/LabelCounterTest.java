@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ttrssreader.model.pojos.Label;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The unread counters of labels are maintained by triggers on articles2labels.
+ */
+public class LabelCounterTest {
+
+	private static final int FEED = 1;
+	private static final int LABEL = -1025;
+	private static final int OTHER_LABEL = -1026;
+
+	private TestDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withCounterSchema();
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, 0, 'Feed', 0)", FEED);
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, -2, 'Label', 0)", LABEL);
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, -2, 'Other', 0)", OTHER_LABEL);
+		insertArticle(1, true);
+		insertArticle(2, false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	private void insertArticle(int id, boolean unread) throws Exception {
+		db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished)"
+				+ " VALUES (?, ?, 'Title', ?, 0, 0, 0)", id, FEED, unread ? 1 : 0);
+	}
+
+	private long labelUnread() throws Exception {
+		return labelUnread(LABEL);
+	}
+
+	private long labelUnread(int label) throws Exception {
+		return db.queryLong("SELECT unread FROM feeds WHERE _id=?", label);
+	}
+
+	private static Set<Label> labels(int id) {
+		Label label = new Label();
+		label.id = id;
+		return Collections.singleton(label);
+	}
+
+	@Test
+	public void assignUnreadArticle() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		assertEquals(1, labelUnread());
+	}
+
+	@Test
+	public void assignReadArticle() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 2, LABEL);
+		assertEquals(0, labelUnread());
+	}
+
+	@Test
+	public void reassignExistingAssignment() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		// Every sync inserts the labels of all received articles again
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		assertEquals(1, labelUnread());
+		assertEquals(1, db.queryLong("SELECT count(*) FROM articles2labels"));
+	}
+
+	@Test
+	public void removeAssignment() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec("DELETE FROM articles2labels WHERE articleId=? AND labelId=?", 1, LABEL);
+		assertEquals(0, labelUnread());
+	}
+
+	@Test
+	public void markLabelledArticleRead() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec("UPDATE articles SET isUnread=0 WHERE _id=?", 1);
+		assertEquals(0, labelUnread());
+		db.exec("UPDATE articles SET isUnread=1 WHERE _id=?", 1);
+		assertEquals(1, labelUnread());
+	}
+
+	@Test
+	public void replaceLabelsOfArticle() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 1, OTHER_LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 2, OTHER_LABEL);
+
+		// The server only reports LABEL for article 1 anymore
+		db.exec("DELETE FROM articles2labels WHERE " + DBHelper.otherLabelsSelection(1, labels(LABEL)));
+		assertEquals(1, labelUnread(LABEL));
+		assertEquals(0, labelUnread(OTHER_LABEL));
+		assertEquals(1, db.queryLong("SELECT count(*) FROM articles2labels WHERE labelId=?", OTHER_LABEL));
+	}
+
+	@Test
+	public void removeAllLabelsOfArticle() throws Exception {
+		db.exec(DBHelper.INSERT_LABEL, 1, LABEL);
+		db.exec(DBHelper.INSERT_LABEL, 2, LABEL);
+
+		db.exec("DELETE FROM articles2labels WHERE " + DBHelper.otherLabelsSelection(1, Collections.<Label>emptySet()));
+		assertEquals(0, labelUnread());
+		assertEquals(1, db.queryLong("SELECT count(*) FROM articles2labels"));
+	}
+
+}
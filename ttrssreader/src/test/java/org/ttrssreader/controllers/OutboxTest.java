@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local status changes wait in the outbox (marked / notes) until they have been sent, data from the server must not
+ * overwrite them in the meantime.
+ */
+public class OutboxTest {
+
+	private static final int FEED = 1;
+	private static final int ARTICLE = 1;
+
+	private TestDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withCounterSchema();
+		db.exec(DBHelper.CREATE_TABLE_MARK);
+		db.exec(DBHelper.CREATE_TABLE_NOTES);
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (?, 0, 'Feed', 0)", FEED);
+		// the user has read the article, starred it and written a note, nothing has been sent yet
+		db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished, note)"
+				+ " VALUES (?, ?, 'Title', 0, 0, 1, 0, 'local')", ARTICLE, FEED);
+		db.exec("INSERT INTO marked (id, isUnread, isStarred) VALUES (?, 0, 1)", ARTICLE);
+		db.exec("INSERT INTO notes (_id, note) VALUES (?, 'local')", ARTICLE);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	private long column(String column) throws Exception {
+		return db.queryLong("SELECT " + column + " FROM articles WHERE _id=?", ARTICLE);
+	}
+
+	private int updateState(int unread, int starred, int published, String note) throws Exception {
+		return db.update(DBHelper.UPDATE_ARTICLE_STATE, unread, starred, published, note, ARTICLE);
+	}
+
+	@Test
+	public void stateUpdateKeepsUnsentChanges() throws Exception {
+		assertEquals(0, updateState(1, 0, 0, "server"));
+		assertEquals(0, column("isUnread"));
+		assertEquals(1, column("isStarred"));
+		assertEquals(0, db.queryLong("SELECT count(*) FROM articles WHERE note<>'local'"));
+		assertEquals(0, db.queryLong("SELECT unread FROM feeds WHERE _id=?", FEED));
+	}
+
+	@Test
+	public void stateUpdateWritesStatesWithoutChanges() throws Exception {
+		assertEquals(1, updateState(1, 0, 1, "server"));
+		assertEquals(0, column("isUnread"));
+		assertEquals(1, column("isPublished"));
+	}
+
+	@Test
+	public void stateUpdateWritesServerStateOnceSent() throws Exception {
+		db.exec("DELETE FROM marked");
+		db.exec("DELETE FROM notes");
+		assertEquals(1, updateState(1, 0, 0, "server"));
+		assertEquals(1, column("isUnread"));
+		assertEquals(0, column("isStarred"));
+		assertEquals(1, db.queryLong("SELECT count(*) FROM articles WHERE note='server'"));
+		assertEquals(1, db.queryLong("SELECT unread FROM feeds WHERE _id=?", FEED));
+	}
+
+	@Test
+	public void articleUpdateKeepsUnsentChanges() throws Exception {
+		db.update(DBHelper.UPDATE_ARTICLE, FEED, "New title", 1, "url", "comments", 1L, "content", 0, 1, "author",
+				"server", ARTICLE);
+		assertEquals(0, column("isUnread"));
+		assertEquals(1, column("isStarred"));
+		assertEquals(1, column("isPublished"));
+		assertEquals(1, column("updateDate"));
+		assertEquals(1, db.queryLong("SELECT count(*) FROM articles WHERE note='local' AND title='New title'"));
+	}
+
+	@Test
+	public void restoresUnsentReadStates() throws Exception {
+		// replacing the read state of all articles like cacheArticles() does
+		db.exec("UPDATE articles SET isUnread=1");
+		db.exec(DBHelper.RESTORE_UNSYNCHRONIZED_READ_STATES);
+		assertEquals(0, column("isUnread"));
+		assertEquals(0, db.queryLong("SELECT unread FROM feeds WHERE _id=?", FEED));
+	}
+
+}
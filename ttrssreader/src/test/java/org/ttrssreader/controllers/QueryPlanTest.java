@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The queries which run for every sync or list update must be answered from the indexes created in
+ * {@link DBHelper.OpenHelper#getIndexes()} instead of scanning the articles table. The statements are written like
+ * they are built in {@link DBHelper} and the headline cursor.
+ */
+public class QueryPlanTest {
+
+	private static TestDatabase db;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		db = TestDatabase.withIndexes();
+	}
+
+	@AfterClass
+	public static void tearDown() throws Exception {
+		db.close();
+	}
+
+	private static void assertUsesIndex(String index, String sql) throws Exception {
+		List<String> plan = db.queryPlan(sql);
+		boolean found = false;
+		for (String step : plan) {
+			// A full scan reads "SCAN articles" or "SCAN a", scanning an index reads "SCAN a USING INDEX ..."
+			assertFalse("Full table scan in " + plan + " for " + sql, step.startsWith("SCAN ") && !step.contains(" USING "));
+			if (step.contains(" INDEX " + index + " ") || step.endsWith(" INDEX " + index))
+				found = true;
+		}
+		assertTrue(index + " not used in " + plan + " for " + sql, found);
+	}
+
+	private static void assertNotSorted(String sql) throws Exception {
+		List<String> plan = db.queryPlan(sql);
+		for (String step : plan) {
+			assertFalse("Sorting in " + plan + " for " + sql, step.contains("TEMP B-TREE"));
+		}
+	}
+
+	// getUnreadCount()
+
+	@Test
+	public void unreadCountOfFeed() throws Exception {
+		assertUsesIndex("idx_articles_by_feed", "SELECT count(*) FROM articles WHERE isUnread>0 and feedId=?");
+	}
+
+	@Test
+	public void unreadCountOfCategory() throws Exception {
+		String sql = "SELECT count(*) FROM articles WHERE isUnread>0 and feedId in (select _id from feeds where categoryId=?)";
+		assertUsesIndex("idx_articles_by_feed", sql);
+		assertUsesIndex("idx_feeds_by_category", sql);
+	}
+
+	@Test
+	public void unreadCountOfFreshArticles() throws Exception {
+		assertUsesIndex("idx_articles_by_unread", "SELECT count(*) FROM articles WHERE isUnread>0 and updateDate>?");
+	}
+
+	@Test
+	public void unreadCountOfStarredAndPublished() throws Exception {
+		assertUsesIndex("idx_articles_by_starred", "SELECT count(*) FROM articles WHERE isUnread>0 and isStarred>0");
+		assertUsesIndex("idx_articles_by_published", "SELECT count(*) FROM articles WHERE isUnread>0 and isPublished>0");
+	}
+
+	// markRead()
+
+	@Test
+	public void markFeedRead() throws Exception {
+		assertUsesIndex("idx_articles_by_feed", "SELECT _id FROM articles WHERE  feedId IN (1)  and isUnread>0 ");
+	}
+
+	@Test
+	public void markCategoryRead() throws Exception {
+		String sql = "SELECT _id FROM articles WHERE  feedId IN (SELECT _id FROM feeds WHERE categoryId=1)  and isUnread>0 ";
+		assertUsesIndex("idx_articles_by_feed", sql);
+		assertUsesIndex("idx_feeds_by_category", sql);
+	}
+
+	// queryArticlesForImagecache()
+
+	@Test
+	public void articlesForImageCache() throws Exception {
+		assertUsesIndex("idx_articles_by_cachedimages",
+				"SELECT _id, content FROM articles WHERE cachedImages IS NULL AND isUnread>0 LIMIT 1000");
+	}
+
+	// Id snapshot of the headline cursor
+
+	@Test
+	public void headlinesOfFeed() throws Exception {
+		assertUsesIndex("idx_articles_by_feed", "SELECT a._id, a.updateDate, 0 FROM articles a, feeds f"
+				+ " WHERE a.feedId=f._id AND a.isUnread>0 AND a.feedId=1 ORDER BY a.updateDate DESC, a._id DESC");
+	}
+
+	@Test
+	public void headlinesOfCategory() throws Exception {
+		String sql = "SELECT a._id, a.updateDate, 0 FROM articles a, feeds f"
+				+ " WHERE a.feedId=f._id AND f.categoryId=3 ORDER BY a.updateDate DESC, a._id DESC";
+		assertUsesIndex("idx_articles_by_feed", sql);
+		assertUsesIndex("idx_feeds_by_category", sql);
+	}
+
+	@Test
+	public void headlinesOfAllArticles() throws Exception {
+		String sql = "SELECT a._id, a.updateDate, 0 FROM articles a, feeds f"
+				+ " WHERE a.feedId=f._id ORDER BY a.updateDate DESC, a._id DESC";
+		assertUsesIndex("idx_articles_by_updatedate", sql);
+		assertNotSorted(sql);
+	}
+
+	@Test
+	public void headlinesOfStarredArticles() throws Exception {
+		assertUsesIndex("idx_articles_by_starred", "SELECT a._id, a.updateDate, 0 FROM articles a, feeds f"
+				+ " WHERE a.feedId=f._id AND a.isStarred=1 ORDER BY a.updateDate DESC, a._id DESC");
+	}
+
+	@Test
+	public void headlinesOfLabel() throws Exception {
+		assertUsesIndex("idx_articles2labels_by_label", "SELECT a._id, a.updateDate, 0 FROM feeds f, articles a,"
+				+ " articles2labels a2l WHERE f._id=a.feedId AND a._id=a2l.articleId AND a2l.labelId=-1025"
+				+ " ORDER BY a.updateDate DESC, a._id DESC");
+	}
+
+	// Article retention
+
+	@Test
+	public void retentionWatermark() throws Exception {
+		String sql = "SELECT updateDate FROM articles WHERE isPublished=0 AND isStarred=0"
+				+ " ORDER BY updateDate DESC LIMIT 1 OFFSET 100";
+		assertUsesIndex("idx_articles_by_published", sql);
+		assertNotSorted(sql);
+	}
+
+	@Test
+	public void purgeBeforeWatermark() throws Exception {
+		assertUsesIndex("idx_articles_by_published",
+				"SELECT _id FROM articles WHERE isPublished=0 AND isStarred=0 AND updateDate<5 LIMIT 100");
+	}
+
+	@Test
+	public void purgeMarked() throws Exception {
+		assertUsesIndex("idx_articles_by_starred",
+				"UPDATE articles SET isStarred=0 WHERE isStarred>0 AND _id>5 AND _id NOT IN (1,2)");
+	}
+
+	@Test
+	public void remoteFilesOfArticles() throws Exception {
+		assertUsesIndex("idx_remotefile2article_by_article",
+				"SELECT remotefileId FROM remotefile2article WHERE articleId IN (1,2)");
+	}
+
+}
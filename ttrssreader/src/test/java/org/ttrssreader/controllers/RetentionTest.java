@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Purging by article limit has to keep exactly the configured amount of articles, see
+ * {@link DBHelper#getRetentionWatermark(Integer, int)} and {@link DBHelper#purgeArticlesBefore(Integer, long, int)}.
+ */
+public class RetentionTest {
+
+	private static final int FEED = 1;
+	private static final int OTHER_FEED = 2;
+
+	private TestDatabase db;
+	private int nextId = 1;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withIndexes();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	private void insertArticle(int feedId, long updateDate, boolean starred) throws Exception {
+		db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished)"
+				+ " VALUES (?, ?, 'Title', 0, ?, ?, 0)", nextId++, feedId, updateDate, starred ? 1 : 0);
+	}
+
+	private void insertArticles(int feedId, long... updateDates) throws Exception {
+		for (long updateDate : updateDates) {
+			insertArticle(feedId, updateDate, false);
+		}
+	}
+
+	/**
+	 * Runs the watermark query and deletes the articles before it like the retention does.
+	 *
+	 * @return the remaining update dates of the feed, newest first
+	 */
+	private List<Long> purge(Integer feedId, int keep) throws Exception {
+		List<Long> watermark = db.queryLongs(DBHelper.getRetentionWatermarkQuery(feedId, keep));
+		assertTrue(watermark.size() <= 1);
+		if (!watermark.isEmpty()) {
+			db.exec("DELETE FROM articles WHERE " + DBHelper.getRetentionSelection(feedId) + " AND updateDate<?",
+					watermark.get(0));
+		}
+
+		String sql = "SELECT updateDate FROM articles";
+		if (feedId != null)
+			sql += " WHERE feedId=" + feedId;
+		return db.queryLongs(sql + " ORDER BY updateDate DESC");
+	}
+
+	@Test
+	public void keepsExactlyTheLimit() throws Exception {
+		insertArticles(FEED, 1, 2, 3, 4, 5);
+		assertEquals(Arrays.asList(5L, 4L, 3L), purge(FEED, 3));
+	}
+
+	@Test
+	public void keepsAllArticlesBelowTheLimit() throws Exception {
+		insertArticles(FEED, 1, 2);
+		assertEquals(Arrays.asList(2L, 1L), purge(FEED, 3));
+		assertEquals(Arrays.asList(2L, 1L), purge(FEED, 2));
+	}
+
+	@Test
+	public void keepsArticlesWithTheSameDateAsTheLastKept() throws Exception {
+		insertArticles(FEED, 1, 2, 2, 3);
+		assertEquals(Arrays.asList(3L, 2L, 2L), purge(FEED, 2));
+	}
+
+	@Test
+	public void doesNotCountStarredArticles() throws Exception {
+		insertArticles(FEED, 2, 3, 5);
+		insertArticle(FEED, 1, true);
+		insertArticle(FEED, 4, true);
+		assertEquals(Arrays.asList(5L, 4L, 3L, 1L), purge(FEED, 2));
+	}
+
+	@Test
+	public void limitsEachFeedOnItsOwn() throws Exception {
+		insertArticles(FEED, 1, 2, 3);
+		insertArticles(OTHER_FEED, 4, 5, 6);
+		assertEquals(Arrays.asList(3L, 2L), purge(FEED, 2));
+		assertEquals(Arrays.asList(6L, 5L, 4L), purge(OTHER_FEED, 3));
+		assertEquals(Arrays.asList(6L, 5L, 4L, 3L), purge(null, 4));
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.controllers;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQLite database, in memory unless opened with {@link #open(File)}, for tests of the statements in {@link DBHelper}, runs on the JVM with sqlite-jdbc
+ * instead of the Android framework. Public so tests of the queries built in other packages can use it, too.
+ */
+public class TestDatabase implements AutoCloseable {
+
+	private final Connection connection;
+
+	TestDatabase() throws SQLException {
+		this("jdbc:sqlite::memory:");
+	}
+
+	private TestDatabase(String url) throws SQLException {
+		connection = DriverManager.getConnection(url);
+	}
+
+	/**
+	 * @return another connection to the database in the given file, for tests with concurrent readers and writers
+	 */
+	static TestDatabase open(File file) throws SQLException {
+		return new TestDatabase("jdbc:sqlite:" + file.getAbsolutePath());
+	}
+
+	/**
+	 * @return a database with the tables for categories, feeds, articles and labels and the counter triggers
+	 */
+	public static TestDatabase withCounterSchema() throws SQLException {
+		TestDatabase db = new TestDatabase();
+		db.createCounterSchema();
+		return db;
+	}
+
+	/**
+	 * create the tables for categories, feeds, articles and labels and the counter triggers
+	 */
+	void createCounterSchema() throws SQLException {
+		exec(DBHelper.CREATE_TABLE_CATEGORIES);
+		exec(DBHelper.CREATE_TABLE_FEEDS);
+		exec(DBHelper.CREATE_TABLE_ARTICLES);
+		exec(DBHelper.CREATE_TABLE_ARTICLES2LABELS);
+		for (String sql : DBHelper.OpenHelper.getCounterTriggers()) {
+			exec(sql);
+		}
+	}
+
+	/**
+	 * @return a database with the counter schema, the relation of articles to remote files and all indexes
+	 */
+	static TestDatabase withIndexes() throws SQLException {
+		TestDatabase db = withCounterSchema();
+		// Same primary key as in DBHelper.OpenHelper#createRemotefiles2Articles, the rest isn't needed for queries
+		db.exec("CREATE TABLE " + DBHelper.TABLE_REMOTEFILE2ARTICLE
+				+ " (remotefileId INTEGER, articleId INTEGER, PRIMARY KEY(remotefileId, articleId))");
+		for (String sql : DBHelper.OpenHelper.getIndexes()) {
+			db.exec(sql);
+		}
+		return db;
+	}
+
+	/**
+	 * @return a database with the counter schema and the full-text index of the articles
+	 */
+	public static TestDatabase withFullTextIndex() throws SQLException {
+		TestDatabase db = withCounterSchema();
+		db.exec(DBHelper.CREATE_TABLE_ARTICLES_FTS);
+		return db;
+	}
+
+	public void exec(String sql, Object... args) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, args);
+			statement.execute();
+		}
+	}
+
+	/**
+	 * @return the number of changed rows
+	 */
+	int update(String sql, Object... args) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, args);
+			return statement.executeUpdate();
+		}
+	}
+
+	long queryLong(String sql, Object... args) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, args);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (!rs.next())
+					throw new SQLException("No result for " + sql);
+				return rs.getLong(1);
+			}
+		}
+	}
+
+	public List<Long> queryLongs(String sql, Object... args) throws SQLException {
+		List<Long> ret = new ArrayList<>();
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, args);
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					ret.add(rs.getLong(1));
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return all columns of all rows
+	 */
+	List<long[]> queryRows(String sql, Object... args) throws SQLException {
+		List<long[]> ret = new ArrayList<>();
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			bind(statement, args);
+			try (ResultSet rs = statement.executeQuery()) {
+				int columns = rs.getMetaData().getColumnCount();
+				while (rs.next()) {
+					long[] row = new long[columns];
+					for (int i = 0; i < columns; i++) {
+						row[i] = rs.getLong(i + 1);
+					}
+					ret.add(row);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the details of all steps of the query plan
+	 */
+	List<String> queryPlan(String sql) throws SQLException {
+		List<String> ret = new ArrayList<>();
+		try (Statement statement = connection.createStatement();
+			 ResultSet rs = statement.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+			while (rs.next()) {
+				ret.add(rs.getString("detail"));
+			}
+		}
+		return ret;
+	}
+
+	void beginTransaction() throws SQLException {
+		connection.setAutoCommit(false);
+	}
+
+	void commit() throws SQLException {
+		connection.commit();
+		connection.setAutoCommit(true);
+	}
+
+	private static void bind(PreparedStatement statement, Object... args) throws SQLException {
+		for (int i = 0; i < args.length; i++) {
+			statement.setObject(i + 1, args[i]);
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		connection.close();
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+package org.ttrssreader.gui.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The index is queried with the image urls reported by the WebView, see {@link ImageCaptionIndex#getCaption(String)}.
+ */
+public class ImageCaptionIndexTest {
+
+	@Test
+	public void prefersTitleOverAltAndFigcaption() {
+		ImageCaptionIndex index = ImageCaptionIndex.build("<figure><img src='http://example.com/1.png' title='Title'"
+				+ " alt='Alt'><figcaption>Figure</figcaption></figure>"
+				+ "<figure><img src='http://example.com/2.png' alt='Alt'><figcaption>Figure</figcaption></figure>"
+				+ "<figure><img src='http://example.com/3.png'><figcaption>Figure</figcaption></figure>");
+		assertEquals("Title", index.getCaption("http://example.com/1.png"));
+		assertEquals("Alt", index.getCaption("http://example.com/2.png"));
+		assertEquals("Figure", index.getCaption("http://example.com/3.png"));
+	}
+
+	@Test
+	public void imagesWithoutCaption() {
+		assertSame(ImageCaptionIndex.EMPTY, ImageCaptionIndex.build("<p>No images</p>"));
+		assertSame(ImageCaptionIndex.EMPTY, ImageCaptionIndex.build("<img src='http://example.com/1.png'>"));
+		assertNull(ImageCaptionIndex.EMPTY.getCaption("http://example.com/1.png"));
+	}
+
+	@Test
+	public void resolvesRelativeUrlsLikeTheWebView() {
+		ImageCaptionIndex index = ImageCaptionIndex.build("<img src='images/1.png' alt='Relative'>");
+		assertEquals("Relative", index.getCaption("images/1.png"));
+		assertEquals("Relative", index.getCaption(MyWebView.BASE_URL + "images/1.png"));
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.model;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.ttrssreader.controllers.TestDatabase;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the search query on the full-text index, see {@link SearchCursorHelper#createCursor}.
+ */
+public class SearchCursorHelperTest {
+
+	private TestDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		db = TestDatabase.withFullTextIndex();
+		db.exec("INSERT INTO feeds (_id, categoryId, title, unread) VALUES (1, 0, 'Feed', 0)");
+		insertArticle(1, "Weather", "Rain and foo tomorrow", 1);
+		insertArticle(2, "Foo bar", "Nothing else", 2);
+		insertArticle(3, "Sports", "No match here", 3);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+	}
+
+	private void insertArticle(int id, String title, String content, long updateDate) throws Exception {
+		db.exec("INSERT INTO articles (_id, feedId, title, isUnread, updateDate, isStarred, isPublished)"
+				+ " VALUES (?, 1, ?, 1, ?, 0, 0)", id, title, updateDate);
+		db.exec("INSERT INTO articles_fts (docid, title, author, content) VALUES (?, ?, '', ?)", id, title, content);
+	}
+
+	private List<Long> search(String match) throws Exception {
+		return db.queryLongs(SearchCursorHelper.buildQuery(false), match, match);
+	}
+
+	@Test
+	public void listsTitleMatchesFirst() throws Exception {
+		assertEquals(Arrays.asList(2L, 1L), search("foo"));
+		assertEquals(Collections.singletonList(1L), search("rain foo"));
+	}
+
+	@Test
+	public void malformedMatchFailsWhenExecuted() throws Exception {
+		for (String input : new String[]{"foo\"", "AND", "(foo"}) {
+			try {
+				search(input);
+				fail("Expected malformed MATCH expression for " + input);
+			} catch (SQLException e) {
+				// expected, SearchCursorHelper falls back to the phrase
+			}
+			search(SearchCursorHelper.toPhrase(input));
+		}
+	}
+
+	@Test
+	public void phraseMatchesTheWholeInput() throws Exception {
+		assertEquals(Collections.singletonList(2L), search(SearchCursorHelper.toPhrase("foo\" bar")));
+		assertEquals(Collections.<Long>emptyList(), search(SearchCursorHelper.toPhrase("bar foo")));
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the memory allocated for the sync bookkeeping of 5000 articles by {@link IntSet} and {@link IntLongMap}
+ * with {@code HashSet<Integer>} and {@code HashMap<Integer, Long>}. The numbers are printed for comparison, the
+ * primitive collections only have to allocate less. Measured with the allocation counter of the HotSpot JVM, the
+ * test is skipped on other JVMs.
+ */
+public class AllocationBenchmarkTest {
+
+	private static final int IDS = 5000;
+	// article ids and update dates are far beyond the range of the Integer and Long caches
+	private static final int FIRST_ID = 1000000;
+	private static final long FIRST_DATE = 1500000000000L;
+	private static final int ROUNDS = 20;
+
+	private interface Fill {
+		Object run();
+	}
+
+	// the sets grow while the articles are parsed
+	private static final Fill HASH_SET = () -> {
+		Set<Integer> set = new HashSet<>();
+		for (int i = 0; i < IDS; i++) {
+			set.add(FIRST_ID + i);
+		}
+		return set;
+	};
+
+	private static final Fill INT_SET = () -> {
+		IntSet set = new IntSet();
+		for (int i = 0; i < IDS; i++) {
+			set.add(FIRST_ID + i);
+		}
+		return set;
+	};
+
+	// the map is created with the size of the cursor in DBHelper.getArticleIdUpdatedMap()
+	private static final Fill HASH_MAP = () -> {
+		Map<Integer, Long> map = new HashMap<>(IDS * 4 / 3 + 1);
+		for (int i = 0; i < IDS; i++) {
+			map.put(FIRST_ID + i, FIRST_DATE + i);
+		}
+		return map;
+	};
+
+	private static final Fill INT_LONG_MAP = () -> {
+		IntLongMap map = new IntLongMap(IDS);
+		for (int i = 0; i < IDS; i++) {
+			map.put(FIRST_ID + i, FIRST_DATE + i);
+		}
+		return map;
+	};
+
+	private static com.sun.management.ThreadMXBean threads() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	/**
+	 * @return the bytes allocated by the current thread for one run, the minimum of several rounds after a warm-up
+	 */
+	private static long allocatedBytes(Fill fill) {
+		com.sun.management.ThreadMXBean threads = threads();
+		long thread = Thread.currentThread().getId();
+		long min = Long.MAX_VALUE;
+		Object result = null;
+		for (int round = 0; round < ROUNDS * 2; round++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			result = fill.run();
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			if (round >= ROUNDS)
+				min = Math.min(min, allocated);
+		}
+		assertTrue(result != null);
+		return min;
+	}
+
+	private static void compare(String boxedName, Fill boxed, String primitiveName, Fill primitive) {
+		long boxedBytes = allocatedBytes(boxed);
+		long primitiveBytes = allocatedBytes(primitive);
+		System.out.println(String.format("%s ids: %s %s KiB, %s %s KiB", IDS, boxedName, boxedBytes / 1024,
+				primitiveName, primitiveBytes / 1024));
+		assertTrue(primitiveName + " allocates more than " + boxedName, primitiveBytes < boxedBytes);
+	}
+
+	@Test
+	public void intSetAllocatesLessThanHashSet() {
+		compare("HashSet<Integer>", HASH_SET, "IntSet", INT_SET);
+	}
+
+	@Test
+	public void intLongMapAllocatesLessThanHashMap() {
+		compare("HashMap<Integer, Long>", HASH_MAP, "IntLongMap", INT_LONG_MAP);
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Hyphenation of words and html with the patterns of Hyphenator.js, see {@link Hyphenator#parse(String)}.
+ */
+public class HyphenatorTest {
+
+	// Relative to the module directory, the working directory of the unit tests
+	private static final File PATTERNS = new File("src/main/assets/patterns/en-us.js");
+
+	private static Hyphenator english;
+
+	@BeforeClass
+	public static void loadPatterns() throws Exception {
+		english = Hyphenator.parse(new String(Files.readAllBytes(PATTERNS.toPath()), "UTF-8"));
+	}
+
+	/**
+	 * @return the text with visible hyphens instead of soft hyphens
+	 */
+	private static String show(String hyphenated) {
+		return hyphenated.replace(Hyphenator.SOFT_HYPHEN, '-');
+	}
+
+	/**
+	 * @return a pattern file which allows hyphens between all letters a and b
+	 */
+	private static String patterns(int leftMin, int rightMin, String extra) {
+		return "Hyphenator.languages['test'] = {\n"
+				+ "\t// a comment with patterns : { 3 : \"x1y\" }\n"
+				+ "\tleftmin : " + leftMin + ",\n"
+				+ "\trightmin : " + rightMin + ",\n"
+				+ "\tspecialChars : \"\",\n"
+				+ "\tpatterns : {\n"
+				+ "\t\t3 : \"a1bb1a\"\n"
+				+ "\t}" + extra + "\n"
+				+ "};";
+	}
+
+	@Test
+	public void hyphenatesKnownWords() {
+		assertEquals("hy-phen-ation", show(english.hyphenateWord("hyphenation")));
+		assertEquals("al-go-rithm", show(english.hyphenateWord("algorithm")));
+		assertEquals("char-ac-ters", show(english.hyphenateWord("characters")));
+		assertEquals("Hy-phen-ation", show(english.hyphenateWord("Hyphenation")));
+	}
+
+	@Test
+	public void keepsLeftMinAndRightMin() {
+		assertEquals("a-b-a-b-a-b-a-b", show(Hyphenator.parse(patterns(1, 1, "")).hyphenateWord("abababab")));
+		assertEquals("aba-b-a-b-ab", show(Hyphenator.parse(patterns(3, 2, "")).hyphenateWord("abababab")));
+		// en-us has rightmin 3
+		assertEquals("com-puter", show(english.hyphenateWord("computer")));
+	}
+
+	@Test
+	public void usesExceptions() {
+		Hyphenator hyphenator = Hyphenator.parse(patterns(1, 1, ",\n\texceptions : \"ab-abab, ba-ba\""));
+		assertEquals("ab-abab", show(hyphenator.hyphenateWord("ababab")));
+		assertEquals("ba-ba", show(hyphenator.hyphenateWord("baba")));
+		assertEquals("a-b-a-b", show(hyphenator.hyphenateWord("abab")));
+	}
+
+	@Test
+	public void usesSubstitutions() {
+		Hyphenator hyphenator = Hyphenator.parse(patterns(1, 1, ",\n\tcharSubstitution : {\n\t\t'ä' : 'a'\n\t}"));
+		assertEquals("ä-b-ä-b", show(hyphenator.hyphenateWord("äbäb")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsFileWithoutPatterns() {
+		Hyphenator.parse("Hyphenator.languages['test'] = { leftmin : 2, rightmin : 2 };");
+	}
+
+	@Test
+	public void hyphenatesTextButNotTags() {
+		assertEquals("<p class=\"hyphenation\" title='algorithm > hyphenation'>hy-phen-ation al-go-rithm</p>",
+				show(english.hyphenateHtml("<p class=\"hyphenation\" title='algorithm > hyphenation'>"
+						+ "hyphenation algorithm</p>")));
+		assertEquals("<!-- hyphenation -->short <b>hy-phen-ation</b>.",
+				show(english.hyphenateHtml("<!-- hyphenation -->short <b>hyphenation</b>.")));
+	}
+
+	@Test
+	public void keepsEntities() {
+		assertEquals("hy-phen-ation&amp;al-go-rithm &eacute;&nbsp;char-ac-ters",
+				show(english.hyphenateHtml("hyphenation&amp;algorithm &eacute;&nbsp;characters")));
+		assertEquals("hyphen&shy;ation", show(english.hyphenateHtml("hyphen&shy;ation")));
+	}
+
+	@Test
+	public void keepsUrlsAndMailAddresses() {
+		String html = "http://example.com/hyphenation www.hyphenation.org hyphenation@example.com";
+		assertEquals(html, english.hyphenateHtml(html));
+	}
+
+	@Test
+	public void skipsPreCodeAndScript() {
+		assertEquals("<pre>hyphenation <b>algorithm</b></pre>hy-phen-ation",
+				show(english.hyphenateHtml("<pre>hyphenation <b>algorithm</b></pre>hyphenation")));
+		assertEquals("<code><code>algorithm</code>hyphenation</code>al-go-rithm",
+				show(english.hyphenateHtml("<code><code>algorithm</code>hyphenation</code>algorithm")));
+		assertEquals("<script>var hyphenation = 1;</script><PRE>algorithm</PRE>hy-phen-ation",
+				show(english.hyphenateHtml("<script>var hyphenation = 1;</script><PRE>algorithm</PRE>hyphenation")));
+		// self-closing elements have no content to skip
+		assertEquals("<svg/>hy-phen-ation", show(english.hyphenateHtml("<svg/>hyphenation")));
+	}
+
+}
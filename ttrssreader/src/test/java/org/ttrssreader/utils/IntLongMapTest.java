@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntLongMapTest {
+
+	@Test
+	public void returnsDefaultForMissingKeys() {
+		IntLongMap map = new IntLongMap();
+		assertTrue(map.isEmpty());
+		assertEquals(-1L, map.get(1, -1L));
+		assertEquals(-1L, map.get(Integer.MIN_VALUE, -1L));
+		assertFalse(map.containsKey(1));
+	}
+
+	@Test
+	public void putOverwritesValue() {
+		IntLongMap map = new IntLongMap();
+		map.put(42, 1000L);
+		map.put(-3, Long.MAX_VALUE);
+		map.put(42, 2000L);
+
+		assertEquals(2, map.size());
+		assertEquals(2000L, map.get(42, -1L));
+		assertEquals(Long.MAX_VALUE, map.get(-3, -1L));
+		assertTrue(map.containsKey(-3));
+	}
+
+	@Test
+	public void keepsEntriesWhenGrowing() {
+		IntLongMap map = new IntLongMap(1);
+		for (int i = 0; i < 1000; i++) {
+			map.put(i, i * 1000L);
+		}
+
+		assertEquals(1000, map.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i * 1000L, map.get(i, -1L));
+		}
+		assertEquals(-1L, map.get(1000, -1L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsFreeMarker() {
+		new IntLongMap().put(Integer.MIN_VALUE, 1L);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, Nils Braden
+ *
+ * This file is part of ttrss-reader-fork. This program is free software; you
+ * can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation;
+ * either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details. You should have received a
+ * copy of the GNU General Public License along with this program; If
+ * not, see http://www.gnu.org/licenses/.
+ */
+
+
+package org.ttrssreader.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntSetTest {
+
+	@Test
+	public void addsEachValueOnce() {
+		IntSet set = new IntSet();
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(3));
+		assertTrue(set.add(-7));
+		assertTrue(set.add(0));
+		assertFalse(set.add(3));
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(3));
+		assertTrue(set.contains(-7));
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(4));
+		assertFalse(set.contains(Integer.MIN_VALUE));
+	}
+
+	@Test
+	public void keepsValuesWhenGrowing() {
+		IntSet set = new IntSet(1);
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(set.add(i * 31));
+		}
+
+		assertEquals(1000, set.size());
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(set.contains(i * 31));
+			assertFalse(set.contains(i * 31 + 1));
+		}
+	}
+
+	@Test
+	public void addAllMergesSets() {
+		IntSet set = new IntSet();
+		set.add(1);
+		set.add(2);
+		IntSet other = new IntSet();
+		other.add(2);
+		other.add(3);
+
+		set.addAll(other);
+
+		int[] values = set.toArray();
+		Arrays.sort(values);
+		assertArrayEquals(new int[]{1, 2, 3}, values);
+	}
+
+	@Test
+	public void joinsAllValues() {
+		IntSet set = new IntSet();
+		assertEquals("", set.join(","));
+
+		set.add(5);
+		assertEquals("5", set.join(","));
+
+		set.add(8);
+		set.add(13);
+		String[] parts = set.join(",").split(",");
+		Arrays.sort(parts);
+		assertArrayEquals(new String[]{"13", "5", "8"}, parts);
+	}
+
+	@Test
+	public void joinsIntoChunks() {
+		IntSet set = new IntSet();
+		assertEquals(0, set.join(",", 2).size());
+
+		for (int i = 1; i <= 5; i++) {
+			set.add(i);
+		}
+		List<String> chunks = set.join(",", 2);
+		assertEquals(3, chunks.size());
+		assertEquals(2, chunks.get(0).split(",").length);
+		assertEquals(2, chunks.get(1).split(",").length);
+		assertEquals(1, chunks.get(2).split(",").length);
+
+		String[] parts = (chunks.get(0) + "," + chunks.get(1) + "," + chunks.get(2)).split(",");
+		Arrays.sort(parts);
+		assertArrayEquals(new String[]{"1", "2", "3", "4", "5"}, parts);
+		assertEquals(1, set.join(",", 5).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsFreeMarker() {
+		new IntSet().add(Integer.MIN_VALUE);
+	}
+
+}